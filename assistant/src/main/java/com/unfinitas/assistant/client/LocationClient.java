@@ -1,34 +1,126 @@
 package com.unfinitas.assistant.client;
 
+import com.unfinitas.common.batch.RequestBatcher;
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.StopResolutionDTO;
+import com.unfinitas.common.dto.StopResolutionRequestDTO;
+import com.unfinitas.common.replica.LocationCatalogReplica;
+import com.unfinitas.common.replica.LocationReplicaSync;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.core.ParameterizedTypeReference;
+import reactor.core.publisher.Mono;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class LocationClient {
     private final WebClient webClient;
 
-    public LocationClient(@Value("${services.location.url}") final String locationUrl) {
-        this.webClient = WebClient.builder().baseUrl(locationUrl).build();
+    /**
+     * Concurrent {@link #resolveStopId} calls are merged into one {@code /resolve/batch} request per window.
+     */
+    private final RequestBatcher<String, String> stopIds;
+
+    /**
+     * In-process copy of the catalog kept current by {@link LocationReplicaSync}; names it cannot
+     * resolve still go to the location service.
+     */
+    private final LocationCatalogReplica replica;
+
+    /**
+     * Longest a chat request waits on the location service for stop IDs.
+     */
+    private final Duration readTimeout;
+
+    public LocationClient(
+            final LocationCatalogReplica replica,
+            @Value("${services.location.url}") final String locationUrl,
+            @Value("${services.location.batch.window}") final Duration batchWindow,
+            @Value("${services.location.batch.max-size}") final int batchMaxSize,
+            @Value("${services.location.max-response-size}") final DataSize maxResponseSize,
+            @Value("${services.http.connect-timeout}") final Duration connectTimeout,
+            @Value("${services.http.read-timeout}") final Duration readTimeout
+    ) {
+        this.replica = replica;
+        this.readTimeout = readTimeout;
+        // Same limits as the blocking clients in HttpClientConfig
+        final JdkClientHttpConnector connector = new JdkClientHttpConnector(HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build());
+        connector.setReadTimeout(readTimeout);
+        // A full change-feed read carries the whole catalog
+        this.webClient = WebClient.builder()
+                .baseUrl(locationUrl)
+                .clientConnector(connector)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxResponseSize.toBytes()))
+                .build();
+        this.stopIds = new RequestBatcher<>("location", batchWindow, batchMaxSize,
+                names -> fetchStopIds(names).toFuture());
     }
 
     public String resolveStopId(final String stopName) {
+        final String local = replica.resolveStopId(stopName);
+        if (local != null) {
+            return local;
+        }
         try {
-            final List<Map<String, Object>> response = webClient.get()
-                    .uri("/api/locations/search?name={name}", stopName)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-                    .block();
-
-            if (response != null && !response.isEmpty()) {
-                return (String) response.getFirst().get("stopId");
-            }
-            return null;
+            return stopIds.load(stopName)
+                    .orTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .join();
         } catch (final Exception e) {
             return null;
         }
     }
+
+    public LocationCatalogReplica replica() {
+        return replica;
+    }
+
+    /**
+     * The location change feed since the given version, for {@link LocationReplicaSync}.
+     */
+    public Mono<LocationChangesDTO> fetchChanges(final long since, final String epoch) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/api/locations/changes")
+                        .queryParam("since", since)
+                        .queryParamIfPresent("epoch", Optional.ofNullable(epoch))
+                        .build())
+                .retrieve()
+                .bodyToMono(LocationChangesDTO.class);
+    }
+
+    @PreDestroy
+    public void close() {
+        stopIds.close();
+    }
+
+    private Mono<Map<String, String>> fetchStopIds(final Collection<String> stopNames) {
+        return webClient.post()
+                .uri("/api/locations/resolve/batch")
+                .bodyValue(StopResolutionRequestDTO.builder().names(List.copyOf(stopNames)).build())
+                .retrieve()
+                .bodyToMono(StopResolutionDTO.class)
+                .map(resolved -> {
+                    final Map<String, String> result = new HashMap<>();
+                    if (resolved.getByName() != null) {
+                        resolved.getByName().forEach((name, location) -> {
+                            if (location.getStopId() != null) {
+                                result.put(name, location.getStopId());
+                            }
+                        });
+                    }
+                    return result;
+                });
+    }
 }
@@ -2,17 +2,22 @@ package com.unfinitas.assistant.client;
 
 import com.unfinitas.assistant.dto.ReminderCreateRequest;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.client.RestClient;
 
 @Component
 public class ReminderClient {
 
-    private final WebClient webClient;
+    private final RestClient restClient;
 
-    public ReminderClient(@Value("${services.reminder.url}") final String reminderUrl) {
-        this.webClient = WebClient.builder()
+    public ReminderClient(
+            @Value("${services.reminder.url}") final String reminderUrl,
+            final JdkClientHttpRequestFactory requestFactory
+    ) {
+        this.restClient = RestClient.builder()
                 .baseUrl(reminderUrl)
+                .requestFactory(requestFactory)
                 .build();
     }
 
@@ -35,11 +40,10 @@ public class ReminderClient {
                 .triggerTime(triggerTimeIso)
                 .build();
 
-        webClient.post()
+        restClient.post()
                 .uri("/api/reminders")
-                .bodyValue(body)
+                .body(body)
                 .retrieve()
-                .bodyToMono(Void.class)
-                .block(); // synchronous for simplicity
+                .toBodilessEntity();
     }
 }
@@ -2,11 +2,11 @@ package com.unfinitas.assistant.client;
 
 import com.unfinitas.assistant.model.DepartureInfo;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
-import tools.jackson.core.type.TypeReference;
-import tools.jackson.databind.ObjectMapper;
+import org.springframework.web.client.RestClient;
 
 import java.time.Instant;
 import java.util.List;
@@ -15,30 +15,30 @@ import java.util.Map;
 @Component
 public class TransitClient {
 
-    private final WebClient webClient;
+    private final RestClient restClient;
 
-    public TransitClient(@Value("${services.transit.url}") final String transitUrl) {
-        this.webClient = WebClient.builder().baseUrl(transitUrl).build();
+    public TransitClient(
+            @Value("${services.transit.url}") final String transitUrl,
+            final JdkClientHttpRequestFactory requestFactory
+    ) {
+        this.restClient = RestClient.builder()
+                .baseUrl(transitUrl)
+                .requestFactory(requestFactory)
+                .build();
     }
 
     public List<DepartureInfo> getNextDepartures(final String stopId, final int limit) {
-        final String json = webClient.get()
+        final List<Map<String, Object>> items = restClient.get()
                 .uri("/api/transit/departures?stopId={stopId}&limit={limit}", stopId, limit)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
-                .bodyToMono(String.class)
-                .block();
+                .body(new ParameterizedTypeReference<>() {
+                });
 
-        if (json == null || json.isBlank()) {
+        if (items == null) {
             return List.of();
         }
 
-        final ObjectMapper mapper = new ObjectMapper();
-        final List<Map<String, Object>> items = mapper.readValue(
-                json, new TypeReference<>() {
-                }
-        );
-
         return items.stream()
                 .map(m -> new DepartureInfo(
                         (String) m.get("route"),
@@ -0,0 +1,32 @@
+package com.unfinitas.assistant.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Blocking HTTP for the chat pipeline, which runs on virtual threads: a call through the JDK
+ * client parks the virtual thread instead of holding a platform thread while it waits.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public JdkClientHttpRequestFactory jdkClientHttpRequestFactory(
+            @Value("${services.http.connect-timeout}") final Duration connectTimeout,
+            @Value("${services.http.read-timeout}") final Duration readTimeout
+    ) {
+        final HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        final JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(readTimeout);
+        return factory;
+    }
+}
@@ -2,19 +2,154 @@ package com.unfinitas.assistant.controller;
 
 import com.unfinitas.assistant.model.ChatRequest;
 import com.unfinitas.assistant.model.ChatResponse;
+import com.unfinitas.assistant.model.DepartureInfo;
+import com.unfinitas.assistant.model.DepartureLine;
+import com.unfinitas.assistant.model.ParsedIntent;
+import com.unfinitas.assistant.model.ResolvedStop;
 import com.unfinitas.assistant.service.AssistantService;
-import lombok.RequiredArgsConstructor;
+import com.unfinitas.assistant.service.ChatAbandonedException;
+import com.unfinitas.assistant.service.ChatProgress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/chat")
-@RequiredArgsConstructor
+@Slf4j
 public class ChatController {
 
+    private static final String BUSY = "The assistant is busy, please try again in a moment";
+
     private final AssistantService assistantService;
+    private final AsyncTaskExecutor streamExecutor;
+    private final Duration streamTimeout;
+
+    /**
+     * Chats run on virtual threads, so the cap is what protects Gemini and the downstream
+     * services from a burst rather than the size of a thread pool.
+     */
+    private final Semaphore chatPermits;
+    private final int maxConcurrent;
+    private final Duration queueTimeout;
+    private final Counter rejected;
+
+    public ChatController(
+            final AssistantService assistantService,
+            final MeterRegistry meterRegistry,
+            @Qualifier("applicationTaskExecutor") final AsyncTaskExecutor streamExecutor,
+            @Value("${services.chat.max-concurrent}") final int maxConcurrent,
+            @Value("${services.chat.queue-timeout}") final Duration queueTimeout,
+            @Value("${services.chat.stream-timeout}") final Duration streamTimeout
+    ) {
+        this.assistantService = assistantService;
+        this.streamExecutor = streamExecutor;
+        this.streamTimeout = streamTimeout;
+        this.chatPermits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.queueTimeout = queueTimeout;
+        this.rejected = meterRegistry.counter("assistant.chat.rejected");
+        Gauge.builder("assistant.chat.in-flight", chatPermits, permits -> maxConcurrent - permits.availablePermits())
+                .register(meterRegistry);
+    }
 
     @PostMapping
-    public ChatResponse chat(@RequestBody final ChatRequest request) {
-        return assistantService.process(request.message());
+    public ResponseEntity<ChatResponse> chat(@RequestBody final ChatRequest request) throws InterruptedException {
+        if (!chatPermits.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            rejected.increment();
+            log.warn("Rejecting chat: {} already in progress", maxConcurrent);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(ChatResponse.error(BUSY));
+        }
+        try {
+            return ResponseEntity.ok(assistantService.process(request.message()));
+        } finally {
+            chatPermits.release();
+        }
+    }
+
+    /**
+     * Same answer as {@link #chat}, sent as server-sent events while it is worked out: an
+     * {@code intent} per request in the message once it is parsed, {@code stop} once a stop is
+     * resolved, one {@code departure} per line of the reply, and finally {@code reply} with the
+     * complete response. A busy assistant
+     * sends a single {@code error} event instead.
+     */
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestBody final ChatRequest request) {
+        final SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        streamExecutor.execute(() -> {
+            try {
+                if (!chatPermits.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    log.warn("Rejecting chat stream: {} already in progress", maxConcurrent);
+                    send(emitter, "error", ChatResponse.error(BUSY));
+                    emitter.complete();
+                    return;
+                }
+                try {
+                    final ChatResponse reply = assistantService.process(request.message(), new ChatProgress() {
+                        @Override
+                        public void intentParsed(final ParsedIntent intent) {
+                            send(emitter, "intent", intent);
+                        }
+
+                        @Override
+                        public void stopResolved(final String stopName, final String stopId) {
+                            send(emitter, "stop", new ResolvedStop(stopName, stopId));
+                        }
+
+                        @Override
+                        public void departure(final String stopName, final DepartureInfo departure, final String line) {
+                            send(emitter, "departure",
+                                    new DepartureLine(stopName, departure.route(), departure.departureTime(), line));
+                        }
+                    });
+                    send(emitter, "reply", reply);
+                    emitter.complete();
+                } finally {
+                    chatPermits.release();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.completeWithError(e);
+            } catch (final ChatAbandonedException e) {
+                // The client went away or the stream timed out; nothing left to send it
+                log.debug("Chat stream abandoned: {}", e.getCause().getMessage());
+                emitter.completeWithError(e.getCause());
+            } catch (final Exception e) {
+                log.error("Chat stream failed", e);
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Sends one event, or throws {@link ChatAbandonedException} if the stream can no longer take it,
+     * which stops {@link AssistantService} from working on an answer nobody will read.
+     */
+    private static void send(final SseEmitter emitter, final String event, final Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (final IOException | IllegalStateException e) {
+            // IllegalStateException: the emitter already completed, e.g. after the stream timeout
+            throw new ChatAbandonedException("Chat stream closed", e);
+        }
     }
 }
@@ -1,11 +1,26 @@
 package com.unfinitas.assistant.model;
 
-public record ChatResponse(String reply, boolean success) {
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A chat answer. A message with several requests in it is answered part by part in {@code parts},
+ * in the order asked, and {@code reply} joins their replies.
+ */
+public record ChatResponse(String reply, boolean success, List<ChatResponse> parts) {
     public static ChatResponse ok(final String reply) {
-        return new ChatResponse(reply, true);
+        return new ChatResponse(reply, true, List.of());
     }
 
     public static ChatResponse error(final String reply) {
-        return new ChatResponse(reply, false);
+        return new ChatResponse(reply, false, List.of());
+    }
+
+    /**
+     * Successful if any part is; the others are reported in their parts.
+     */
+    public static ChatResponse combined(final List<ChatResponse> parts) {
+        final String reply = parts.stream().map(ChatResponse::reply).collect(Collectors.joining("\n\n"));
+        return new ChatResponse(reply, parts.stream().anyMatch(ChatResponse::success), List.copyOf(parts));
     }
 }
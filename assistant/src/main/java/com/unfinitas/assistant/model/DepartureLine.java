@@ -0,0 +1,9 @@
+package com.unfinitas.assistant.model;
+
+import java.time.Instant;
+
+/**
+ * One departure from a stop as announced in a streamed reply, with the line of text that announces it.
+ */
+public record DepartureLine(String stopName, String route, Instant departureTime, String text) {
+}
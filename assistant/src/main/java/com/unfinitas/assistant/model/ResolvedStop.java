@@ -0,0 +1,4 @@
+package com.unfinitas.assistant.model;
+
+public record ResolvedStop(String stopName, String stopId) {
+}
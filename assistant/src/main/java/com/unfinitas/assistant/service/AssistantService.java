@@ -6,53 +6,221 @@ import com.unfinitas.assistant.client.TransitClient;
 import com.unfinitas.assistant.model.ChatResponse;
 import com.unfinitas.assistant.model.DepartureInfo;
 import com.unfinitas.assistant.model.ParsedIntent;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AssistantService {
 
     private static final DateTimeFormatter TIME_FORMAT =
             DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault());
 
+    /**
+     * Departures listed in a next-departure reply; also what {@link DeparturePrefetcher} fetches.
+     */
+    static final int DEPARTURES = 3;
+
     private final IntentParserService intentParser;
     private final TransitClient transitClient;
     private final LocationClient locationClient;
     private final ReminderClient reminderClient;
+    private final DeparturePrefetcher prefetcher;
+    private final int maxSubIntents;
+    private final Duration subIntentTimeout;
+
+    public AssistantService(
+            final IntentParserService intentParser,
+            final TransitClient transitClient,
+            final LocationClient locationClient,
+            final ReminderClient reminderClient,
+            final DeparturePrefetcher prefetcher,
+            @Value("${services.chat.max-sub-intents}") final int maxSubIntents,
+            @Value("${services.chat.sub-intent-timeout}") final Duration subIntentTimeout
+    ) {
+        this.intentParser = intentParser;
+        this.transitClient = transitClient;
+        this.locationClient = locationClient;
+        this.reminderClient = reminderClient;
+        this.prefetcher = prefetcher;
+        this.maxSubIntents = maxSubIntents;
+        this.subIntentTimeout = subIntentTimeout;
+    }
 
     public ChatResponse process(final String message) {
-        final ParsedIntent intent = intentParser.parse(message);
-        log.info("Parsed intent: {}", intent);
+        return process(message, ChatProgress.NONE);
+    }
 
+    /**
+     * Answers a message, reporting each stage to {@code progress} as soon as it completes.
+     * A message with several requests in it is answered in one part per request.
+     */
+    public ChatResponse process(final String message, final ChatProgress progress) {
+        try (final DeparturePrefetcher.Speculation speculation = prefetcher.start(message)) {
+            final List<ParsedIntent> intents = intentParser.parse(message);
+            log.info("Parsed intents: {}", intents);
+            intents.forEach(progress::intentParsed);
+            speculation.retain(intents.stream().map(ParsedIntent::stopName).filter(Objects::nonNull).toList());
+
+            if (intents.size() == 1) {
+                return answer(intents.getFirst(), speculation, progress);
+            }
+            return answerAll(intents, speculation, progress);
+        }
+    }
+
+    private ChatResponse answer(
+            final ParsedIntent intent,
+            final DeparturePrefetcher.Speculation speculation,
+            final ChatProgress progress
+    ) {
         return switch (intent.intent()) {
-            case NEXT_DEPARTURE -> handleNextDeparture(intent);
-            case SET_REMINDER -> handleSetReminder(intent);
+            case NEXT_DEPARTURE -> handleNextDeparture(intent, speculation, progress);
+            case SET_REMINDER -> handleSetReminder(intent, speculation, progress);
             case UNKNOWN -> ChatResponse.error(
                     "Sorry, I didn't understand. Try 'next bus from Keskustori'"
             );
         };
     }
 
-    private ChatResponse handleNextDeparture(final ParsedIntent intent) {
+    /**
+     * Answers each request of a compound message on its own virtual thread, so the message costs
+     * about as long as its slowest request rather than their sum. Requests still running after
+     * {@code services.chat.sub-intent-timeout} are interrupted, and the chat waits for them to
+     * wind down before replying, so no request acts after the reply is sent: one that finished
+     * anyway, say by creating its reminder, is reported as done, the others as timed out. Every
+     * blocking call under a request is interruptible or has its own timeout, which bounds that
+     * wait. An interrupted chat interrupts all requests; a request that finds the chat abandoned
+     * ends it, interrupting the others.
+     */
+    private ChatResponse answerAll(
+            final List<ParsedIntent> intents,
+            final DeparturePrefetcher.Speculation speculation,
+            final ChatProgress progress
+    ) {
+        if (intents.size() > maxSubIntents) {
+            log.warn("Answering the first {} of {} requests in one message", maxSubIntents, intents.size());
+        }
+        final List<ParsedIntent> answered = intents.subList(0, Math.min(maxSubIntents, intents.size()));
+        final List<Future<ChatResponse>> results = new ArrayList<>(answered.size());
+        final Set<Future<ChatResponse>> late = new HashSet<>();
+
+        try (final ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                final CompletionService<ChatResponse> completed = new ExecutorCompletionService<>(scope);
+                answered.forEach(intent -> results.add(completed.submit(() -> answer(intent, speculation, progress))));
+                final long deadline = System.nanoTime() + subIntentTimeout.toNanos();
+                for (int i = 0; i < results.size(); i++) {
+                    final Future<ChatResponse> done = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        break;
+                    }
+                    if (done.state() == Future.State.FAILED
+                            && done.exceptionNow() instanceof final ChatAbandonedException abandoned) {
+                        throw abandoned;
+                    }
+                }
+                results.stream().filter(result -> !result.isDone()).forEach(late::add);
+            } finally {
+                // Interrupts whatever is still running; closing the scope then waits for it
+                scope.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ChatResponse.error("Request was cancelled");
+        }
+
+        final List<ChatResponse> parts = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            parts.add(partOf(answered.get(i), results.get(i), late.contains(results.get(i))));
+        }
+        return ChatResponse.combined(parts);
+    }
+
+    /**
+     * The part of the reply for one finished request. A request that was interrupted at the
+     * deadline and failed because of it timed out; one that still succeeded reports what it did.
+     */
+    private static ChatResponse partOf(final ParsedIntent intent, final Future<ChatResponse> result, final boolean late) {
+        final String about = intent.stopName() == null ? "your request" : intent.stopName();
+        if (result.state() == Future.State.SUCCESS && (!late || result.resultNow().success())) {
+            return result.resultNow();
+        }
+        if (result.state() == Future.State.FAILED && !late) {
+            log.error("Error answering {}", intent, result.exceptionNow());
+            return ChatResponse.error("Failed to answer for " + about + ": " + result.exceptionNow().getMessage());
+        }
+        log.warn("Timed out answering {}", intent);
+        return ChatResponse.error("Timed out answering for " + about);
+    }
+
+    /**
+     * The stop's ID and its next departures, prefetched while the intent was parsed if the
+     * parse agreed on the stop, otherwise looked up now. {@code null} if the stop is unknown.
+     */
+    private StopDepartures lookUp(
+            final String stopName,
+            final int limit,
+            final DeparturePrefetcher.Speculation speculation
+    ) {
+        final Optional<DeparturePrefetcher.Prefetched> prefetched = speculation.claim(stopName);
+        if (prefetched.isPresent()) {
+            final DeparturePrefetcher.Prefetched found = prefetched.get();
+            if (found.stopId() == null) {
+                return null;
+            }
+            final List<DepartureInfo> departures = found.departures();
+            return new StopDepartures(found.stopId(), departures.subList(0, Math.min(limit, departures.size())));
+        }
+
+        final String stopId = locationClient.resolveStopId(stopName);
+        if (stopId == null) {
+            return null;
+        }
+        return new StopDepartures(stopId, transitClient.getNextDepartures(stopId, limit));
+    }
+
+    private record StopDepartures(
+            String stopId,
+            List<DepartureInfo> departures
+    ) {
+    }
+
+    private ChatResponse handleNextDeparture(
+            final ParsedIntent intent,
+            final DeparturePrefetcher.Speculation speculation,
+            final ChatProgress progress
+    ) {
         if (intent.stopName() == null) {
             return ChatResponse.error("Please specify a stop name");
         }
 
         try {
-            final String stopId = locationClient.resolveStopId(intent.stopName());
-            if (stopId == null) {
+            final StopDepartures found = lookUp(intent.stopName(), DEPARTURES, speculation);
+            if (found == null) {
                 return ChatResponse.error("Could not find stop: " + intent.stopName());
             }
+            progress.stopResolved(intent.stopName(), found.stopId());
 
-            final List<DepartureInfo> departures = transitClient.getNextDepartures(stopId, 3);
+            final List<DepartureInfo> departures = found.departures();
             if (departures.isEmpty()) {
                 return ChatResponse.ok("No upcoming departures from " + intent.stopName());
             }
@@ -62,22 +230,26 @@ public class AssistantService {
             );
 
             for (final DepartureInfo dep : departures) {
-                reply.append("• Line ")
-                        .append(dep.route())
-                        .append(" at ")
-                        .append(TIME_FORMAT.format(dep.departureTime()))
-                        .append("\n");
+                final String line = "• Line " + dep.route() + " at " + TIME_FORMAT.format(dep.departureTime());
+                progress.departure(intent.stopName(), dep, line);
+                reply.append(line).append("\n");
             }
 
             return ChatResponse.ok(reply.toString().trim());
 
+        } catch (final ChatAbandonedException e) {
+            throw e;
         } catch (final Exception e) {
             log.error("Error getting departures", e);
             return ChatResponse.error("Failed to get departures: " + e.getMessage());
         }
     }
 
-    private ChatResponse handleSetReminder(final ParsedIntent intent) {
+    private ChatResponse handleSetReminder(
+            final ParsedIntent intent,
+            final DeparturePrefetcher.Speculation speculation,
+            final ChatProgress progress
+    ) {
         if (intent.stopName() == null) {
             return ChatResponse.error("Please specify a stop name");
         }
@@ -86,12 +258,14 @@ public class AssistantService {
         }
 
         try {
-            final String stopId = locationClient.resolveStopId(intent.stopName());
-            if (stopId == null) {
+            final StopDepartures found = lookUp(intent.stopName(), 1, speculation);
+            if (found == null) {
                 return ChatResponse.error("Could not find stop: " + intent.stopName());
             }
+            final String stopId = found.stopId();
+            progress.stopResolved(intent.stopName(), stopId);
 
-            final List<DepartureInfo> departures = transitClient.getNextDepartures(stopId, 1);
+            final List<DepartureInfo> departures = found.departures();
             if (departures.isEmpty()) {
                 return ChatResponse.error("No upcoming departures from " + intent.stopName());
             }
@@ -127,6 +301,8 @@ public class AssistantService {
                             + " departs at " + TIME_FORMAT.format(nextDep.departureTime())
             );
 
+        } catch (final ChatAbandonedException e) {
+            throw e;
         } catch (final Exception e) {
             log.error("Error setting reminder", e);
             return ChatResponse.error("Failed to set reminder: " + e.getMessage());
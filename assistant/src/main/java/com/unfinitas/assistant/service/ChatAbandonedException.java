@@ -0,0 +1,12 @@
+package com.unfinitas.assistant.service;
+
+/**
+ * Thrown by a {@link ChatProgress} whose caller can no longer receive the answer, such as a
+ * stream client that disconnected. It ends the chat instead of being answered as a failure.
+ */
+public class ChatAbandonedException extends RuntimeException {
+
+    public ChatAbandonedException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,28 @@
+package com.unfinitas.assistant.service;
+
+import com.unfinitas.assistant.model.DepartureInfo;
+import com.unfinitas.assistant.model.ParsedIntent;
+
+/**
+ * Stages of a chat as {@link AssistantService} completes them, for callers that stream the answer
+ * instead of waiting for the whole reply. The requests of a compound message are answered
+ * concurrently, so their stages may be reported from several threads at once. A callback may
+ * throw {@link ChatAbandonedException} to stop the chat, including its unanswered requests.
+ */
+public interface ChatProgress {
+
+    ChatProgress NONE = new ChatProgress() {
+    };
+
+    default void intentParsed(final ParsedIntent intent) {
+    }
+
+    default void stopResolved(final String stopName, final String stopId) {
+    }
+
+    /**
+     * One departure from a stop and the line of the reply that announces it.
+     */
+    default void departure(final String stopName, final DepartureInfo departure, final String line) {
+    }
+}
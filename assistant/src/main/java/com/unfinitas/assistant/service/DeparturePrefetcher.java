@@ -0,0 +1,200 @@
+package com.unfinitas.assistant.service;
+
+import com.unfinitas.assistant.client.LocationClient;
+import com.unfinitas.assistant.client.TransitClient;
+import com.unfinitas.assistant.model.DepartureInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Looks up the stops a message names and their next departures while its intent is still being
+ * parsed, so that a parse that takes seconds is not followed by the location and transit calls.
+ * <p>
+ * Candidates are the catalog stops found in the message by {@link FastIntentParser}, at most
+ * {@code services.prefetch.max-candidates} of them. Once the message is parsed, lookups of stops
+ * the parsed intents do not name are cancelled and the departure calls they made are counted as
+ * wasted; each remaining lookup is claimed by the intent naming its stop.
+ * <p>
+ * Metrics: {@code assistant.prefetch.saved} is the lookup time taken off a chat by a claimed
+ * prefetch, {@code assistant.prefetch.claims} counts lookups by whether the parse used them, and
+ * {@code assistant.prefetch.wasted-calls} counts transit calls made for lookups nobody used.
+ */
+@Component
+@Slf4j
+public class DeparturePrefetcher {
+
+    private final LocationClient locationClient;
+    private final TransitClient transitClient;
+    private final FastIntentParser stopFinder;
+    private final boolean enabled;
+    private final int maxCandidates;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Timer saved;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter wastedCalls;
+
+    public DeparturePrefetcher(
+            final LocationClient locationClient,
+            final TransitClient transitClient,
+            final FastIntentParser stopFinder,
+            final MeterRegistry meterRegistry,
+            @Value("${services.prefetch.enabled}") final boolean enabled,
+            @Value("${services.prefetch.max-candidates}") final int maxCandidates
+    ) {
+        this.locationClient = locationClient;
+        this.transitClient = transitClient;
+        this.stopFinder = stopFinder;
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+        this.saved = Timer.builder("assistant.prefetch.saved")
+                .description("Stop and departure lookup time saved by prefetching during intent parsing")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.hits = meterRegistry.counter("assistant.prefetch.claims", "result", "used");
+        this.misses = meterRegistry.counter("assistant.prefetch.claims", "result", "wasted");
+        this.wastedCalls = meterRegistry.counter("assistant.prefetch.wasted-calls");
+    }
+
+    /**
+     * Starts looking up every candidate stop in {@code message}. The returned speculation must be
+     * closed, which cancels whatever was not claimed.
+     */
+    public Speculation start(final String message) {
+        final Map<String, Lookup> lookups = new LinkedHashMap<>();
+        if (enabled) {
+            for (final String stopName : stopFinder.stopsMentionedIn(MessageNormalizer.normalize(message))) {
+                if (lookups.size() == maxCandidates) {
+                    break;
+                }
+                lookups.put(MessageNormalizer.normalize(stopName), lookup(stopName));
+            }
+        }
+        return new Speculation(lookups);
+    }
+
+    private Lookup lookup(final String stopName) {
+        final AtomicInteger transitCalls = new AtomicInteger();
+        final long started = System.nanoTime();
+        final Future<Prefetched> result = executor.submit(() -> {
+            final String stopId = locationClient.resolveStopId(stopName);
+            if (stopId == null) {
+                return new Prefetched(null, List.of(), System.nanoTime() - started);
+            }
+            transitCalls.incrementAndGet();
+            final List<DepartureInfo> departures = transitClient.getNextDepartures(stopId, AssistantService.DEPARTURES);
+            return new Prefetched(stopId, departures, System.nanoTime() - started);
+        });
+        return new Lookup(result, transitCalls);
+    }
+
+    /**
+     * A stop and its departures, looked up ahead of the parse, and how long that took.
+     */
+    public record Prefetched(
+            String stopId,
+            List<DepartureInfo> departures,
+            long elapsedNanos
+    ) {
+    }
+
+    private record Lookup(
+            Future<Prefetched> result,
+            AtomicInteger transitCalls
+    ) {
+    }
+
+    /**
+     * The lookups started for one message. Safe to claim from the threads answering its intents.
+     */
+    public final class Speculation implements AutoCloseable {
+
+        private final Map<String, Lookup> lookups;
+
+        private Speculation(final Map<String, Lookup> lookups) {
+            this.lookups = lookups;
+        }
+
+        /**
+         * Cancels the lookups of stops other than {@code stopNames}, the stops the parse found.
+         */
+        public synchronized void retain(final Collection<String> stopNames) {
+            final Set<String> kept = stopNames.stream().map(MessageNormalizer::normalize).collect(Collectors.toSet());
+            lookups.entrySet().removeIf(entry -> {
+                if (kept.contains(entry.getKey())) {
+                    return false;
+                }
+                discard(entry.getValue());
+                return true;
+            });
+        }
+
+        /**
+         * The prefetched lookup of {@code stopName}, waiting for it if it is still running, or
+         * empty if none was started, another intent already claimed it, or it failed; the caller
+         * then looks the stop up itself.
+         */
+        public Optional<Prefetched> claim(final String stopName) {
+            final Lookup lookup;
+            synchronized (this) {
+                lookup = lookups.remove(MessageNormalizer.normalize(stopName));
+            }
+            if (lookup == null) {
+                return Optional.empty();
+            }
+            final long waitStarted = System.nanoTime();
+            try {
+                final Prefetched prefetched = lookup.result.get();
+                final long waited = System.nanoTime() - waitStarted;
+                saved.record(Math.max(0, prefetched.elapsedNanos() - waited), TimeUnit.NANOSECONDS);
+                hits.increment();
+                return Optional.of(prefetched);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                discard(lookup);
+                return Optional.empty();
+            } catch (final ExecutionException e) {
+                log.warn("Prefetch for stop {} failed, looking it up again: {}", stopName, e.getCause().getMessage());
+                discard(lookup);
+                return Optional.empty();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            lookups.values().forEach(DeparturePrefetcher.this::discard);
+            lookups.clear();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void discard(final Lookup lookup) {
+        lookup.result.cancel(true);
+        misses.increment();
+        wastedCalls.increment(lookup.transitCalls.get());
+    }
+}
@@ -0,0 +1,276 @@
+package com.unfinitas.assistant.service;
+
+import com.unfinitas.assistant.client.LocationClient;
+import com.unfinitas.assistant.model.Intent;
+import com.unfinitas.assistant.model.ParsedIntent;
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.replica.LocationCatalogReplica;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rule-based first stage of intent parsing for the phrasings most traffic uses, such as
+ * "next bus from Keskustori" or "remind me 5 minutes before the bus from Hervanta".
+ * <p>
+ * One automaton built from the cue phrases below and every stop name in the local location replica
+ * finds all cues and stop names in the normalized message in a single pass. A message is answered
+ * only when it is unambiguous: an intent cue (a reminder cue wins over a departure cue, since a
+ * reminder names the departure it is for), exactly one stop, and for reminders exactly one number
+ * of minutes. Anything else returns empty and goes to the model.
+ */
+@Component
+@Slf4j
+public class FastIntentParser {
+
+    private static final List<String> DEPARTURE_CUES = List.of(
+            "next bus", "next tram", "next train", "next departure", "next departures", "when is the next",
+            "when does the next", "departures from", "seuraava bussi", "seuraava ratikka", "seuraavat lahdot",
+            "milloin lahtee"
+    );
+    private static final List<String> REMINDER_CUES = List.of(
+            "remind me", "reminder", "muistuta", "muistutus"
+    );
+
+    /**
+     * Words that turn a request around ("don't remind me"); left to the model.
+     */
+    private static final Set<String> NEGATIONS = Set.of("dont", "don", "not", "cancel", "ala", "peru");
+
+    /**
+     * Finnish case endings a stop name may carry ("Keskustorilta"), after ä/ö are folded away.
+     */
+    private static final List<String> STOP_ENDINGS = List.of("lta", "lla", "lle", "sta", "ssa", "ksi", "na", "n");
+    private static final int MIN_STOP_NAME_LENGTH = 3;
+
+    private static final Pattern MINUTES = Pattern.compile(
+            "\\b(\\d{1,3}) ?(?:min|mins|minute|minutes|minuutti|minuuttia)\\b"
+    );
+
+    private final LocationCatalogReplica replica;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile Rules rules;
+
+    public FastIntentParser(final LocationClient locationClient) {
+        this.replica = locationClient.replica();
+        this.rules = Rules.build(-1, List.of());
+    }
+
+    public Optional<ParsedIntent> parse(final String message) {
+        final String text = MessageNormalizer.normalize(message);
+        if (text.isEmpty()) {
+            return Optional.empty();
+        }
+        if (negates(text)) {
+            return Optional.empty();
+        }
+
+        final Scan scan = scan(text);
+        final StopMention stop = onlyStop(text, scan.stops);
+        if (stop == null || scan.cues.isEmpty()) {
+            return Optional.empty();
+        }
+        final String stopName = stop.name();
+
+        if (scan.cues.contains(Phrase.Kind.REMINDER_CUE)) {
+            final Matcher minutes = MINUTES.matcher(text);
+            if (!minutes.find()) {
+                return Optional.empty();
+            }
+            final int value = Integer.parseInt(minutes.group(1));
+            if (minutes.find()) {
+                return Optional.empty();
+            }
+            return Optional.of(ParsedIntent.builder()
+                    .intent(Intent.SET_REMINDER)
+                    .stopName(stopName)
+                    .minutesBefore(value)
+                    .build());
+        }
+        return Optional.of(ParsedIntent.builder()
+                .intent(Intent.NEXT_DEPARTURE)
+                .stopName(stopName)
+                .build());
+    }
+
+    /**
+     * Whether a normalized message contains a word that turns the request around, such as
+     * "dont remind me" or "cancel my reminder". Its wording says little about its meaning then.
+     */
+    static boolean negates(final String text) {
+        for (final String word : text.split(" ")) {
+            if (NEGATIONS.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The one catalog stop a normalized message names, or empty if it names none or several.
+     */
+    public Optional<StopMention> stopMentionIn(final String text) {
+        return Optional.ofNullable(onlyStop(text, scan(text).stops));
+    }
+
+    /**
+     * Every catalog stop a normalized message names, in order of appearance and without repeats.
+     */
+    public List<String> stopsMentionedIn(final String text) {
+        return uncovered(scan(text).stops).stream()
+                .map(StopMention::name)
+                .distinct()
+                .toList();
+    }
+
+    private Scan scan(final String text) {
+        final Rules current = currentRules();
+        final Scan scan = new Scan(new HashSet<>(), new ArrayList<>());
+        current.automaton.forEachMatch(text, (index, start, end) -> {
+            final Phrase phrase = current.phrases.get(index);
+            if (!startsWord(text, start)) {
+                return;
+            }
+            if (phrase.kind == Phrase.Kind.STOP) {
+                if (endsStopWord(text, end)) {
+                    scan.stops.add(new StopMention(phrase.name, start, end));
+                }
+            } else if (endsWord(text, end)) {
+                scan.cues.add(phrase.kind);
+            }
+        });
+        return scan;
+    }
+
+    /**
+     * The rules for the replica's current catalog. The first caller to notice a new catalog
+     * version rebuilds them; callers meanwhile keep using the previous rules.
+     */
+    private Rules currentRules() {
+        final Rules current = rules;
+        final long version = replica.version();
+        if (current.version == version || !rebuilding.compareAndSet(false, true)) {
+            return current;
+        }
+        try {
+            final long started = System.nanoTime();
+            final Rules rebuilt = Rules.build(version, replica.locations());
+            rules = rebuilt;
+            log.info("Built fast-path intent rules for catalog version {} ({} phrases) in {} ms",
+                    version, rebuilt.phrases.size(), (System.nanoTime() - started) / 1_000_000);
+            return rebuilt;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * The single stop the message names, after dropping names found inside longer ones, or
+     * {@code null} if none or several. The returned mention spans to the end of the word, case
+     * ending included.
+     */
+    private static StopMention onlyStop(final String text, final List<StopMention> stops) {
+        StopMention found = null;
+        for (final StopMention stop : uncovered(stops)) {
+            if (found != null && !found.name().equals(stop.name())) {
+                return null;
+            }
+            found = stop;
+        }
+        if (found == null) {
+            return null;
+        }
+        final int wordEnd = text.indexOf(' ', found.end());
+        return new StopMention(found.name(), found.start(), wordEnd < 0 ? text.length() : wordEnd);
+    }
+
+    /**
+     * Mentions not found inside a longer one, "Hervanta" within "Hervanta keskus".
+     */
+    private static List<StopMention> uncovered(final List<StopMention> stops) {
+        return stops.stream()
+                .filter(stop -> stops.stream().noneMatch(other -> other != stop
+                        && other.start() <= stop.start() && other.end() >= stop.end()
+                        && other.end() - other.start() > stop.end() - stop.start()))
+                .toList();
+    }
+
+    private static boolean startsWord(final String text, final int start) {
+        return start == 0 || text.charAt(start - 1) == ' ';
+    }
+
+    private static boolean endsWord(final String text, final int end) {
+        return end == text.length() || text.charAt(end) == ' ';
+    }
+
+    private static boolean endsStopWord(final String text, final int end) {
+        if (endsWord(text, end)) {
+            return true;
+        }
+        for (final String ending : STOP_ENDINGS) {
+            if (text.startsWith(ending, end) && endsWord(text, end + ending.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A catalog stop named in a normalized message, by its catalog name and where it is in the text.
+     */
+    public record StopMention(
+            String name,
+            int start,
+            int end
+    ) {
+    }
+
+    private record Scan(
+            Set<Phrase.Kind> cues,
+            List<StopMention> stops
+    ) {
+    }
+
+    private record Phrase(
+            Kind kind,
+            String name
+    ) {
+        enum Kind {
+            DEPARTURE_CUE,
+            REMINDER_CUE,
+            STOP
+        }
+    }
+
+    private record Rules(
+            long version,
+            PhraseAutomaton automaton,
+            List<Phrase> phrases
+    ) {
+        static Rules build(final long version, final Iterable<LocationDTO> locations) {
+            final Map<String, Phrase> byText = new HashMap<>();
+            DEPARTURE_CUES.forEach(cue -> byText.put(cue, new Phrase(Phrase.Kind.DEPARTURE_CUE, cue)));
+            REMINDER_CUES.forEach(cue -> byText.put(cue, new Phrase(Phrase.Kind.REMINDER_CUE, cue)));
+            for (final LocationDTO location : locations) {
+                final String name = MessageNormalizer.normalize(location.getName());
+                if (name.length() >= MIN_STOP_NAME_LENGTH && location.getStopId() != null) {
+                    byText.putIfAbsent(name, new Phrase(Phrase.Kind.STOP, location.getName()));
+                }
+            }
+
+            final List<String> texts = new ArrayList<>(byText.keySet());
+            final List<Phrase> phrases = texts.stream().map(byText::get).toList();
+            return new Rules(version, new PhraseAutomaton(texts), phrases);
+        }
+    }
+}
@@ -1,16 +1,62 @@
 package com.unfinitas.assistant.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.unfinitas.assistant.client.LocationClient;
 import com.unfinitas.assistant.model.Intent;
 import com.unfinitas.assistant.model.ParsedIntent;
+import com.unfinitas.common.dto.LocationDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 @Service
 @Slf4j
 public class IntentParserService {
 
+    /**
+     * Words that may join several requests in one message ("next bus from Keskustori and remind
+     * me..."). The fast path and the semantic cache answer one intent per message, so such messages
+     * go to the model, which can split them.
+     */
+    private static final Set<String> CONJUNCTIONS = Set.of("and", "also", "then", "plus", "ja", "seka", "myos", "sitten");
+
     private final ChatClient chatClient;
+    private final LocationClient locationClient;
+    private final FastIntentParser fastParser;
+    private final SemanticIntentCache semanticCache;
+    private final boolean fastPathEnabled;
+
+    /**
+     * Parsed intents by normalized message, with the stop spelled as in the catalog, so repeated
+     * phrasings skip the model call entirely. Only successful parses are kept; a failed call is
+     * retried on the next identical message. Entries are futures so that a multi-second model call
+     * runs on the caller's thread outside any map lock, and concurrent identical messages wait for
+     * it instead of calling the model again.
+     */
+    private final AsyncCache<String, List<ParsedIntent>> intents;
+    private final boolean cacheEnabled;
+    private final Duration cacheWaitTimeout;
+
+    /**
+     * Parse latency by the path that answered; their counts give each path's share of traffic.
+     */
+    private final Timer fastPathTimer;
+    private final Timer cachedTimer;
+    private final Timer semanticTimer;
+    private final Timer modelTimer;
 
     private static final String SYSTEM_PROMPT = """
             You are a transit assistant intent parser. Parse the user message and extract:
@@ -21,39 +67,206 @@ public class IntentParserService {
             Respond ONLY in this exact JSON format, nothing else:
             {"intent":"NEXT_DEPARTURE","stopName":"Keskustori","minutesBefore":null}
             
+            If the message asks for several things, respond with a JSON array of such objects, one
+            per stop and intent, in the order asked. Resolve references like "the first" to the stop
+            they mean.
+            
             Examples:
             - "next bus from Keskustori" -> {"intent":"NEXT_DEPARTURE","stopName":"Keskustori","minutesBefore":null}
             - "when is the next tram from Koskipuisto" -> {"intent":"NEXT_DEPARTURE","stopName":"Koskipuisto","minutesBefore":null}
             - "remind me 5 minutes before bus from Hervanta" -> {"intent":"SET_REMINDER","stopName":"Hervanta","minutesBefore":5}
             - "hello" -> {"intent":"UNKNOWN","stopName":null,"minutesBefore":null}
+            - "next buses from Keskustori and Hervanta, and remind me 5 minutes before the first" -> [{"intent":"NEXT_DEPARTURE","stopName":"Keskustori","minutesBefore":null},{"intent":"NEXT_DEPARTURE","stopName":"Hervanta","minutesBefore":null},{"intent":"SET_REMINDER","stopName":"Keskustori","minutesBefore":5}]
             """;
 
-    public IntentParserService(final ChatClient.Builder chatClientBuilder) {
+    public IntentParserService(
+            final ChatClient.Builder chatClientBuilder,
+            final LocationClient locationClient,
+            final FastIntentParser fastParser,
+            final SemanticIntentCache semanticCache,
+            final MeterRegistry meterRegistry,
+            @Value("${services.intent-fast-path.enabled}") final boolean fastPathEnabled,
+            @Value("${services.intent-cache.enabled}") final boolean cacheEnabled,
+            @Value("${services.intent-cache.max-size}") final long cacheMaxSize,
+            @Value("${services.intent-cache.ttl}") final Duration cacheTtl,
+            @Value("${services.intent-cache.wait-timeout}") final Duration cacheWaitTimeout
+    ) {
         this.chatClient = chatClientBuilder.build();
+        this.locationClient = locationClient;
+        this.fastParser = fastParser;
+        this.semanticCache = semanticCache;
+        this.fastPathEnabled = fastPathEnabled;
+        this.cacheEnabled = cacheEnabled;
+        this.cacheWaitTimeout = cacheWaitTimeout;
+        this.intents = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, intents, "assistant.intents");
+
+        this.fastPathTimer = parseTimer(meterRegistry, "fast-path");
+        this.cachedTimer = parseTimer(meterRegistry, "cache");
+        this.semanticTimer = parseTimer(meterRegistry, "semantic-cache");
+        this.modelTimer = parseTimer(meterRegistry, "model");
     }
 
-    public ParsedIntent parse(final String message) {
-        log.info("Parsing message with Gemini: {}", message);
+    /**
+     * The requests in a message, in the order asked; usually one.
+     */
+    public List<ParsedIntent> parse(final String message) {
+        final long started = System.nanoTime();
+        final String key = MessageNormalizer.normalize(message);
+        final boolean compound = mayBeCompound(key);
+        if (fastPathEnabled && !compound) {
+            final Optional<ParsedIntent> fast = fastParser.parse(message);
+            if (fast.isPresent()) {
+                fastPathTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                log.info("Parsed on the fast path: {}", fast.get());
+                return List.of(fast.get());
+            }
+        }
 
+        // Recorded per caller: only the caller whose future went into the cache resolved the message
+        Timer answeredBy = modelTimer;
         try {
-            final String response = chatClient.prompt()
-                    .system(SYSTEM_PROMPT)
-                    .user(message)
-                    .call()
-                    .content();
-
-            log.info("Gemini response: {}", response);
-            return parseJsonResponse(response);
+            if (!cacheEnabled || key.isEmpty()) {
+                final Resolution resolution = resolve(message, compound);
+                answeredBy = resolution.answeredBy();
+                return resolution.intents();
+            }
+
+            final String cacheKey = compound ? key : canonicalKey(key);
+            final CompletableFuture<List<ParsedIntent>> loading = new CompletableFuture<>();
+            final CompletableFuture<List<ParsedIntent>> cached = intents.asMap().putIfAbsent(cacheKey, loading);
+            if (cached != null) {
+                answeredBy = cachedTimer;
+                return cached.get(cacheWaitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            try {
+                final Resolution resolution = resolve(message, compound);
+                answeredBy = resolution.answeredBy();
+                loading.complete(resolution.intents());
+                return resolution.intents();
+            } catch (final RuntimeException | Error e) {
+                // The cache drops a failed future, so the next identical message tries again
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of(ParsedIntent.builder().intent(Intent.UNKNOWN).build());
         } catch (final Exception e) {
             log.error("Error calling Gemini", e);
-            return ParsedIntent.builder().intent(Intent.UNKNOWN).build();
+            return List.of(ParsedIntent.builder().intent(Intent.UNKNOWN).build());
+        } finally {
+            answeredBy.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
         }
     }
 
-    private ParsedIntent parseJsonResponse(String json) {
-        try {
-            json = json.replace("```json", "").replace("```", "").trim();
+    /**
+     * The cache key with the stop the message names, if exactly one, replaced by its catalog name,
+     * so that "Keskustorilta" and "keskustori" share an entry.
+     */
+    private String canonicalKey(final String normalized) {
+        return fastParser.stopMentionIn(normalized)
+                .map(stop -> normalized.substring(0, stop.start())
+                        + MessageNormalizer.normalize(stop.name())
+                        + normalized.substring(stop.end()))
+                .orElse(normalized);
+    }
+
+    /**
+     * Parses a message the exact-match cache has not seen: from a similar earlier message if
+     * there is one, otherwise with the model.
+     */
+    private Resolution resolve(final String message, final boolean compound) {
+        final Optional<ParsedIntent> similar = compound ? Optional.empty() : semanticCache.lookup(message);
+        if (similar.isPresent()) {
+            log.info("Parsed from a similar cached message: {}", similar.get());
+            return new Resolution(List.of(similar.get()), semanticTimer);
+        }
+
+        final List<ParsedIntent> parsed = callModel(message);
+        if (parsed.size() == 1) {
+            semanticCache.put(message, parsed.getFirst());
+        }
+        return new Resolution(parsed, modelTimer);
+    }
+
+    private static boolean mayBeCompound(final String normalized) {
+        for (final String word : normalized.split(" ")) {
+            if (CONJUNCTIONS.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Timer parseTimer(final MeterRegistry meterRegistry, final String path) {
+        return Timer.builder("assistant.intent.parse")
+                .description("Intent parse latency by the path that answered")
+                .tag("path", path)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private List<ParsedIntent> callModel(final String message) {
+        log.info("Parsing message with Gemini: {}", message);
+
+        final String response = chatClient.prompt()
+                .system(SYSTEM_PROMPT)
+                .user(message)
+                .call()
+                .content();
+
+        log.info("Gemini response: {}", response);
+        return parseJsonResponse(response).stream().map(this::canonicalize).toList();
+    }
+
+    /**
+     * Replaces the stop name as the user typed it with the catalog's spelling when the local
+     * replica knows it, so every phrasing that shares a cache entry answers with the same name.
+     */
+    private ParsedIntent canonicalize(final ParsedIntent intent) {
+        if (intent.stopName() == null) {
+            return intent;
+        }
+        final String typed = MessageNormalizer.normalize(intent.stopName());
+        return locationClient.replica().findByName(intent.stopName())
+                .map(LocationDTO::getName)
+                .filter(name -> MessageNormalizer.normalize(name).equals(typed))
+                .map(name -> ParsedIntent.builder()
+                        .intent(intent.intent())
+                        .stopName(name)
+                        .minutesBefore(intent.minutesBefore())
+                        .build())
+                .orElse(intent);
+    }
 
+    /**
+     * One intent per JSON object in the reply, which is either a single object or an array of them.
+     */
+    private List<ParsedIntent> parseJsonResponse(final String response) {
+        final String json = response == null ? "" : response.replace("```json", "").replace("```", "").trim();
+        final List<ParsedIntent> parsed = new ArrayList<>();
+        int start = json.indexOf('{');
+        while (start >= 0) {
+            final int end = json.indexOf('}', start);
+            if (end < 0) {
+                break;
+            }
+            parsed.add(parseJsonObject(json.substring(start, end + 1)));
+            start = json.indexOf('{', end);
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalStateException("No intent in JSON: " + json);
+        }
+        return parsed;
+    }
+
+    private ParsedIntent parseJsonObject(final String json) {
+        try {
             final String intent = extractJsonField(json, "intent");
             final String stopName = extractJsonField(json, "stopName");
             final String minutesBefore = extractJsonField(json, "minutesBefore");
@@ -64,8 +277,8 @@ public class IntentParserService {
                     .minutesBefore("null".equals(minutesBefore) ? null : Integer.parseInt(minutesBefore))
                     .build();
         } catch (final Exception e) {
-            log.error("Failed to parse JSON: {}", json, e);
-            return ParsedIntent.builder().intent(Intent.UNKNOWN).build();
+            // Thrown rather than answered with UNKNOWN so that a garbled reply is not cached
+            throw new IllegalStateException("Failed to parse JSON: " + json, e);
         }
     }
 
@@ -86,4 +299,10 @@ public class IntentParserService {
             return json.substring(start, end).trim();
         }
     }
+
+    private record Resolution(
+            List<ParsedIntent> intents,
+            Timer answeredBy
+    ) {
+    }
 }
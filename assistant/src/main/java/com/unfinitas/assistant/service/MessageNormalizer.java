@@ -0,0 +1,27 @@
+package com.unfinitas.assistant.service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical form of a chat message for cache keys: lower case, diacritics and punctuation removed,
+ * whitespace collapsed. "Next bus from Keskustori?" and "next  bus from keskustori" normalize alike,
+ * and so do stop names typed with or without ä/ö.
+ */
+public final class MessageNormalizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private MessageNormalizer() {
+    }
+
+    public static String normalize(final String message) {
+        if (message == null) {
+            return "";
+        }
+        final String decomposed = Normalizer.normalize(message.toLowerCase(Locale.ROOT), Normalizer.Form.NFKD);
+        return SEPARATORS.matcher(MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ").strip();
+    }
+}
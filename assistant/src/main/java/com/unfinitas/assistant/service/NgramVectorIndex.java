@@ -0,0 +1,256 @@
+package com.unfinitas.assistant.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Fixed-capacity approximate nearest-neighbour index over short texts, embedded locally.
+ * <p>
+ * A text becomes a {@value #DIMENSIONS}-dimensional unit vector of signed hashed character
+ * trigrams and words, so paraphrases that share most of their wording land close together. Vectors
+ * are stored as half-precision floats in one direct buffer outside the heap. Lookup is random
+ * hyperplane LSH: {@value #TABLES} tables each hash a vector to the signs of {@value #BITS}
+ * projections, and only entries sharing a bucket with the query in some table are compared.
+ * <p>
+ * Every entry also carries a partition key chosen by the caller, hashed into its buckets, and a
+ * query names the partitions it may match. Templated messages cluster tightly, so without it one
+ * bucket would hold every "next bus from ..." ever cached. When full, the oldest entry is overwritten.
+ */
+final class NgramVectorIndex<V> {
+
+    static final int DIMENSIONS = 128;
+    private static final int TABLES = 10;
+    private static final int BITS = 8;
+    private static final int BUCKETS = 1 << 16;
+    private static final int BYTES_PER_VECTOR = DIMENSIONS * Short.BYTES;
+    private static final long HYPERPLANE_SEED = 0x5EED_1DEAL;
+
+    private final int capacity;
+    private final ByteBuffer vectors;
+    private final Object[] values;
+
+    /**
+     * Bucket of each slot in each table, {@code slot * TABLES + table}.
+     */
+    private final int[] signatures;
+    private final int[][][] buckets = new int[TABLES][BUCKETS][];
+    private final int[][] bucketSizes = new int[TABLES][BUCKETS];
+    private final float[][] hyperplanes = new float[TABLES * BITS][DIMENSIONS];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long written;
+
+    NgramVectorIndex(final int capacity) {
+        this.capacity = capacity;
+        this.vectors = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, BYTES_PER_VECTOR)).order(ByteOrder.nativeOrder());
+        this.values = new Object[capacity];
+        this.signatures = new int[Math.multiplyExact(capacity, TABLES)];
+
+        final Random random = new Random(HYPERPLANE_SEED);
+        for (final float[] plane : hyperplanes) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                plane[d] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return (int) Math.min(written, capacity);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The unit vector of a normalized text, or {@code null} if it has nothing to hash.
+     */
+    static float[] embed(final String text) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        final float[] vector = new float[DIMENSIONS];
+        final String padded = " " + text + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            add(vector, padded.charAt(i) * 31L * 31L + padded.charAt(i + 1) * 31L + padded.charAt(i + 2));
+        }
+        for (final String word : text.split(" ")) {
+            add(vector, word.hashCode() ^ 0x7FFF_0000_0000L);
+        }
+
+        double norm = 0;
+        for (final float component : vector) {
+            norm += component * component;
+        }
+        final float scale = (float) (1 / Math.sqrt(norm));
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] *= scale;
+        }
+        return vector;
+    }
+
+    void put(final float[] vector, final int partition, final V value) {
+        lock.writeLock().lock();
+        try {
+            final int slot = (int) (written++ % capacity);
+            if (values[slot] != null) {
+                for (int table = 0; table < TABLES; table++) {
+                    remove(table, signatures[slot * TABLES + table], slot);
+                }
+            }
+
+            final int offset = slot * BYTES_PER_VECTOR;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vectors.putShort(offset + d * Short.BYTES, Float.floatToFloat16(vector[d]));
+            }
+            values[slot] = value;
+            for (int table = 0; table < TABLES; table++) {
+                final int bucket = bucket(signature(vector, table), partition);
+                signatures[slot * TABLES + table] = bucket;
+                add(table, bucket, slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The value of the most similar entry in one of the {@code partitions} with cosine similarity
+     * at least {@code threshold} that {@code accept} agrees to, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    V nearest(final float[] vector, final int[] partitions, final float threshold, final Predicate<V> accept) {
+        final int[] signatures = new int[TABLES];
+        for (int table = 0; table < TABLES; table++) {
+            signatures[table] = signature(vector, table);
+        }
+
+        lock.readLock().lock();
+        try {
+            int candidates = 0;
+            for (final int partition : partitions) {
+                for (int table = 0; table < TABLES; table++) {
+                    candidates += bucketSizes[table][bucket(signatures[table], partition)];
+                }
+            }
+            final SlotSet seen = new SlotSet(candidates);
+
+            V best = null;
+            float bestSimilarity = threshold;
+            for (final int partition : partitions) {
+                for (int table = 0; table < TABLES; table++) {
+                    final int bucket = bucket(signatures[table], partition);
+                    final int[] slots = buckets[table][bucket];
+                    for (int i = 0; i < bucketSizes[table][bucket]; i++) {
+                        final int slot = slots[i];
+                        if (!seen.add(slot)) {
+                            continue;
+                        }
+                        final float similarity = dot(vector, slot);
+                        if (similarity >= bestSimilarity && (best == null || similarity > bestSimilarity)) {
+                            final V value = (V) values[slot];
+                            if (accept.test(value)) {
+                                best = value;
+                                bestSimilarity = similarity;
+                            }
+                        }
+                    }
+                }
+            }
+            return best;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private float dot(final float[] vector, final int slot) {
+        final int offset = slot * BYTES_PER_VECTOR;
+        float sum = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            sum += vector[d] * Float.float16ToFloat(vectors.getShort(offset + d * Short.BYTES));
+        }
+        return sum;
+    }
+
+    private int signature(final float[] vector, final int table) {
+        int signature = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            final float[] plane = hyperplanes[table * BITS + bit];
+            float projection = 0;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                projection += vector[d] * plane[d];
+            }
+            signature = signature << 1 | (projection >= 0 ? 1 : 0);
+        }
+        return signature;
+    }
+
+    private static int bucket(final int signature, final int partition) {
+        final int mixed = (partition * 0x9E3779B9) ^ signature;
+        return (mixed ^ mixed >>> 16) & (BUCKETS - 1);
+    }
+
+    private void add(final int table, final int bucket, final int slot) {
+        int[] slots = buckets[table][bucket];
+        final int size = bucketSizes[table][bucket];
+        if (slots == null) {
+            slots = buckets[table][bucket] = new int[4];
+        } else if (size == slots.length) {
+            slots = buckets[table][bucket] = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size] = slot;
+        bucketSizes[table][bucket] = size + 1;
+    }
+
+    private void remove(final int table, final int bucket, final int slot) {
+        final int[] slots = buckets[table][bucket];
+        final int size = bucketSizes[table][bucket];
+        for (int i = 0; i < size; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[size - 1];
+                bucketSizes[table][bucket] = size - 1;
+                return;
+            }
+        }
+    }
+
+    private static void add(final float[] vector, final long feature) {
+        long hash = feature * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 29;
+        final int dimension = (int) (hash & (DIMENSIONS - 1));
+        vector[dimension] += hash < 0 ? -1 : 1;
+    }
+
+    /**
+     * Slots already compared in one lookup; the same entry usually shares the query's bucket in
+     * several tables.
+     */
+    private static final class SlotSet {
+        private final int[] slots;
+
+        SlotSet(final int expected) {
+            slots = new int[Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) * 2];
+            Arrays.fill(slots, -1);
+        }
+
+        boolean add(final int slot) {
+            final int mask = slots.length - 1;
+            final int mixed = slot * 0x9E3779B9;
+            for (int at = (mixed ^ mixed >>> 16) & mask; ; at = (at + 1) & mask) {
+                if (slots[at] == slot) {
+                    return false;
+                }
+                if (slots[at] < 0) {
+                    slots[at] = slot;
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.unfinitas.assistant.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a fixed list of phrases: one left-to-right pass over a text reports
+ * every occurrence of every phrase, however many phrases there are.
+ * <p>
+ * The trie lives in flat arrays with transitions in an open-addressing table keyed by
+ * {@code (node, char)}, so a catalog of tens of thousands of stop names costs a few arrays rather
+ * than a map per node.
+ */
+final class PhraseAutomaton {
+
+    private static final int ROOT = 0;
+
+    private final int[] phraseLengths;
+    private final Transitions transitions = new Transitions();
+
+    private int[] parent = new int[64];
+    private char[] label = new char[64];
+    private int[] depth = new int[64];
+    private int[] phraseAt = new int[64];
+    private int[] fail;
+
+    /**
+     * Nearest node on the fail chain (excluding the node itself) that ends a phrase, or -1.
+     */
+    private int[] outputLink;
+    private int nodes = 1;
+
+    PhraseAutomaton(final List<String> phrases) {
+        phraseLengths = new int[phrases.size()];
+        phraseAt[ROOT] = -1;
+        for (int phrase = 0; phrase < phrases.size(); phrase++) {
+            insert(phrases.get(phrase), phrase);
+        }
+        link();
+    }
+
+    /**
+     * Calls {@code sink} for every phrase occurrence, in order of where it ends.
+     */
+    void forEachMatch(final String text, final MatchSink sink) {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int next = transitions.get(state, c);
+            while (next < 0 && state != ROOT) {
+                state = fail[state];
+                next = transitions.get(state, c);
+            }
+            state = next < 0 ? ROOT : next;
+
+            for (int node = phraseAt[state] >= 0 ? state : outputLink[state]; node >= 0; node = outputLink[node]) {
+                final int phrase = phraseAt[node];
+                sink.accept(phrase, i + 1 - phraseLengths[phrase], i + 1);
+            }
+        }
+    }
+
+    private void insert(final String phrase, final int index) {
+        phraseLengths[index] = phrase.length();
+        int node = ROOT;
+        for (int i = 0; i < phrase.length(); i++) {
+            final char c = phrase.charAt(i);
+            int child = transitions.get(node, c);
+            if (child < 0) {
+                child = addNode(node, c);
+            }
+            node = child;
+        }
+        if (phraseAt[node] < 0) {
+            phraseAt[node] = index;
+        }
+    }
+
+    private int addNode(final int from, final char c) {
+        if (nodes == parent.length) {
+            final int capacity = nodes * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            label = Arrays.copyOf(label, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            phraseAt = Arrays.copyOf(phraseAt, capacity);
+        }
+        final int node = nodes++;
+        parent[node] = from;
+        label[node] = c;
+        depth[node] = depth[from] + 1;
+        phraseAt[node] = -1;
+        transitions.put(from, c, node);
+        return node;
+    }
+
+    /**
+     * Fail and output links, breadth first so every node's parent is linked before the node.
+     */
+    private void link() {
+        fail = new int[nodes];
+        outputLink = new int[nodes];
+        outputLink[ROOT] = -1;
+
+        final int[] byDepth = breadthFirstOrder();
+        for (int i = 1; i < nodes; i++) {
+            final int node = byDepth[i];
+            final int from = parent[node];
+            final char c = label[node];
+
+            int target = ROOT;
+            if (from != ROOT) {
+                int state = fail[from];
+                int next = transitions.get(state, c);
+                while (next < 0 && state != ROOT) {
+                    state = fail[state];
+                    next = transitions.get(state, c);
+                }
+                target = next < 0 ? ROOT : next;
+            }
+            fail[node] = target;
+            outputLink[node] = phraseAt[target] >= 0 ? target : outputLink[target];
+        }
+    }
+
+    private int[] breadthFirstOrder() {
+        int maxDepth = 0;
+        for (int node = 0; node < nodes; node++) {
+            maxDepth = Math.max(maxDepth, depth[node]);
+        }
+        final int[] starts = new int[maxDepth + 2];
+        for (int node = 0; node < nodes; node++) {
+            starts[depth[node] + 1]++;
+        }
+        for (int d = 1; d < starts.length; d++) {
+            starts[d] += starts[d - 1];
+        }
+        final int[] order = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            order[starts[depth[node]]++] = node;
+        }
+        return order;
+    }
+
+    @FunctionalInterface
+    interface MatchSink {
+        void accept(int phrase, int start, int end);
+    }
+
+    /**
+     * Open-addressing map from {@code (node, char)} to child node.
+     */
+    private static final class Transitions {
+        private long[] keys = new long[128];
+        private int[] values = new int[128];
+        private int size;
+
+        int get(final int node, final char c) {
+            final long key = key(node, c);
+            final int mask = keys.length - 1;
+            for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+                if (keys[slot] == 0) {
+                    return -1;
+                }
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+        }
+
+        void put(final int node, final char c, final int child) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            insert(key(node, c), child);
+            size++;
+        }
+
+        private void insert(final long key, final int value) {
+            final int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != 0) {
+                    insert(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+
+        /**
+         * Offset by one so that no real key is 0, which marks an empty slot.
+         */
+        private static long key(final int node, final char c) {
+            return ((long) node << 16 | c) + 1;
+        }
+
+        private static int slot(final long key, final int mask) {
+            final long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ mixed >>> 32) & mask;
+        }
+    }
+}
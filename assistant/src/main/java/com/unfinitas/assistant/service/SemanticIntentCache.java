@@ -0,0 +1,142 @@
+package com.unfinitas.assistant.service;
+
+import com.unfinitas.assistant.model.Intent;
+import com.unfinitas.assistant.model.ParsedIntent;
+import com.unfinitas.assistant.service.FastIntentParser.StopMention;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reuses the parse of an earlier message that is worded differently but means the same thing:
+ * "when's the next bus at Keskustori?" answered from "next bus from keskustori pls".
+ * <p>
+ * Only messages naming exactly one catalog stop take part. The stop is cut out of the message
+ * before it is embedded into {@link NgramVectorIndex}, so similarity measures the wording around
+ * it, and entries are partitioned by stop, so a hit always has the same stop. The numbers in the
+ * new message must also be exactly the cached reminder's minutes, or none for an intent without
+ * minutes; "remind me 5 minutes before the next bus from X" never reuses "next bus from X".
+ * Messages with a negation ({@link FastIntentParser#negates}) are neither looked up nor stored:
+ * "dont remind me …" differs from "remind me …" by one word and scores close to it.
+ */
+@Component
+public class SemanticIntentCache {
+
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+\\b");
+    private static final String STOP_PLACEHOLDER = "#";
+
+    /**
+     * A message this close to a cached one with the same intent adds nothing but scan time.
+     */
+    private static final float DUPLICATE_SIMILARITY = 0.97f;
+
+    private final FastIntentParser stopFinder;
+    private final boolean enabled;
+    private final float threshold;
+    private final NgramVectorIndex<Entry> index;
+    private final Timer hits;
+    private final Timer misses;
+
+    public SemanticIntentCache(
+            final FastIntentParser stopFinder,
+            final MeterRegistry meterRegistry,
+            @Value("${services.intent-semantic-cache.enabled}") final boolean enabled,
+            @Value("${services.intent-semantic-cache.capacity}") final int capacity,
+            @Value("${services.intent-semantic-cache.threshold}") final float threshold
+    ) {
+        this.stopFinder = stopFinder;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.index = new NgramVectorIndex<>(enabled ? capacity : 1);
+        this.hits = lookupTimer(meterRegistry, "hit");
+        this.misses = lookupTimer(meterRegistry, "miss");
+        Gauge.builder("assistant.intents.semantic.size", index, NgramVectorIndex::size)
+                .register(meterRegistry);
+    }
+
+    public Optional<ParsedIntent> lookup(final String message) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        final long started = System.nanoTime();
+        final String text = MessageNormalizer.normalize(message);
+        final Entry found = FastIntentParser.negates(text) ? null : stopFinder.stopMentionIn(text)
+                .map(stop -> {
+                    final Set<Integer> numbers = numbers(text);
+                    return index.nearest(NgramVectorIndex.embed(masked(text, stop)), new int[]{partition(stop.name())},
+                            threshold, entry -> entry.fits(stop.name(), numbers));
+                })
+                .orElse(null);
+
+        (found != null ? hits : misses).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return Optional.ofNullable(found).map(Entry::intent);
+    }
+
+    public void put(final String message, final ParsedIntent intent) {
+        if (!enabled || intent.intent() == Intent.UNKNOWN || intent.stopName() == null) {
+            return;
+        }
+        final String text = MessageNormalizer.normalize(message);
+        if (FastIntentParser.negates(text)) {
+            return;
+        }
+        final String parsedStop = MessageNormalizer.normalize(intent.stopName());
+        final Optional<StopMention> mention = stopFinder.stopMentionIn(text)
+                .filter(stop -> MessageNormalizer.normalize(stop.name()).equals(parsedStop));
+        if (mention.isEmpty()) {
+            // The model read the stop differently from the catalog; nothing safe to key on
+            return;
+        }
+
+        final StopMention stop = mention.get();
+        final float[] vector = NgramVectorIndex.embed(masked(text, stop));
+        final int partition = partition(stop.name());
+        if (index.nearest(vector, new int[]{partition}, DUPLICATE_SIMILARITY, entry -> entry.intent().equals(intent)) == null) {
+            index.put(vector, partition, new Entry(intent, stop.name()));
+        }
+    }
+
+    private static String masked(final String text, final StopMention stop) {
+        return text.substring(0, stop.start()) + STOP_PLACEHOLDER + text.substring(stop.end());
+    }
+
+    private static int partition(final String stopName) {
+        return stopName.hashCode();
+    }
+
+    private static Timer lookupTimer(final MeterRegistry meterRegistry, final String result) {
+        return Timer.builder("assistant.intents.semantic.lookup")
+                .description("Semantic intent cache lookup latency by result")
+                .tag("result", result)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static Set<Integer> numbers(final String text) {
+        final Set<Integer> numbers = new TreeSet<>();
+        final Matcher matcher = NUMBER.matcher(text);
+        while (matcher.find() && numbers.size() < 4) {
+            numbers.add(matcher.group().length() > 6 ? -1 : Integer.parseInt(matcher.group()));
+        }
+        return numbers;
+    }
+
+    private record Entry(
+            ParsedIntent intent,
+            String stopName
+    ) {
+        boolean fits(final String stop, final Set<Integer> numbers) {
+            return stopName.equals(stop)
+                    && numbers.equals(intent.minutesBefore() == null ? Set.of() : Set.of(intent.minutesBefore()));
+        }
+    }
+}
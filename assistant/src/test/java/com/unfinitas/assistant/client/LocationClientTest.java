@@ -0,0 +1,105 @@
+package com.unfinitas.assistant.client;
+
+import com.sun.net.httpserver.HttpServer;
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.replica.LocationCatalogReplica;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationClientTest {
+
+    private static final String RESOLVED = """
+            {"byName": {
+              "Keskustori": {"id": "1", "name": "Keskustori", "stopId": "0001", "type": "STOP"},
+              "Hervanta": {"id": "2", "name": "Hervanta", "stopId": "0002", "type": "STOP"},
+              "Tori": {"id": "3", "name": "Tori", "type": "POI"}
+            }}
+            """;
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final LocationCatalogReplica replica = new LocationCatalogReplica();
+    private HttpServer server;
+    private int status = 200;
+    private LocationClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/locations/resolve/batch", exchange -> {
+            requests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            final byte[] body = RESOLVED.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        client = new LocationClient(
+                replica,
+                "http://localhost:" + server.getAddress().getPort(),
+                Duration.ofMillis(100),
+                100,
+                DataSize.ofMegabytes(1),
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(2)
+        );
+    }
+
+    @AfterEach
+    void stop() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void mergesConcurrentLookupsIntoOneRequest() {
+        final CompletableFuture<String> keskustori = CompletableFuture.supplyAsync(() -> client.resolveStopId("Keskustori"));
+        final CompletableFuture<String> hervanta = CompletableFuture.supplyAsync(() -> client.resolveStopId("Hervanta"));
+
+        assertEquals("0001", keskustori.join());
+        assertEquals("0002", hervanta.join());
+        assertEquals(1, requests.size());
+        assertTrue(requests.getFirst().contains("Keskustori") && requests.getFirst().contains("Hervanta"));
+    }
+
+    @Test
+    void answersFromTheReplicaWithoutARequest() {
+        replica.apply(LocationChangesDTO.builder()
+                .epoch("e1")
+                .version(1)
+                .full(true)
+                .upserts(List.of(LocationDTO.builder().id("1").name("Keskustori").stopId("0001").type("STOP").build()))
+                .build());
+
+        assertEquals("0001", client.resolveStopId("keskustori"));
+        assertEquals(List.of(), requests);
+    }
+
+    @Test
+    void resolvesNothingForNamesWithoutAStop() {
+        assertNull(client.resolveStopId("Tori"));
+        assertNull(client.resolveStopId("Pyynikki"));
+    }
+
+    @Test
+    void resolvesNothingWhenTheServiceFails() {
+        status = 500;
+
+        assertNull(client.resolveStopId("Keskustori"));
+    }
+}
@@ -0,0 +1,221 @@
+package com.unfinitas.assistant.controller;
+
+import com.unfinitas.assistant.model.ChatRequest;
+import com.unfinitas.assistant.model.ChatResponse;
+import com.unfinitas.assistant.model.DepartureInfo;
+import com.unfinitas.assistant.model.Intent;
+import com.unfinitas.assistant.model.ParsedIntent;
+import com.unfinitas.assistant.service.AssistantService;
+import com.unfinitas.assistant.service.ChatAbandonedException;
+import com.unfinitas.assistant.service.ChatProgress;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class ChatControllerTest {
+
+    private final AssistantService assistantService = mock(AssistantService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void stop() {
+        clients.shutdownNow();
+    }
+
+    @Test
+    void rejectsAChatOnceEveryPermitIsTakenForTheQueueTimeout() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(assistantService.process("first")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return ChatResponse.ok("first answer");
+        });
+        when(assistantService.process("second")).thenReturn(ChatResponse.ok("second answer"));
+        final ChatController controller = controller(1);
+
+        final CompletableFuture<ResponseEntity<ChatResponse>> first = chat(controller, "first");
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        assertEquals(1, registry.get("assistant.chat.in-flight").gauge().value());
+
+        final ResponseEntity<ChatResponse> busy = controller.chat(new ChatRequest("second"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, busy.getStatusCode());
+        assertEquals("1", busy.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertFalse(busy.getBody().success());
+        assertEquals("The assistant is busy, please try again in a moment", busy.getBody().reply());
+        assertEquals(1, registry.counter("assistant.chat.rejected").count());
+
+        release.countDown();
+        assertEquals("first answer", first.get(2, TimeUnit.SECONDS).getBody().reply());
+        assertEquals(0, registry.get("assistant.chat.in-flight").gauge().value());
+        assertEquals("second answer", controller.chat(new ChatRequest("second")).getBody().reply());
+    }
+
+    @Test
+    void queuesAChatUntilAPermitFreesUp() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(assistantService.process("first")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return ChatResponse.ok("first answer");
+        });
+        when(assistantService.process("second")).thenReturn(ChatResponse.ok("second answer"));
+        final ChatController controller = new ChatController(assistantService, registry,
+                new SimpleAsyncTaskExecutor(), 1, Duration.ofSeconds(5), Duration.ofSeconds(60));
+
+        chat(controller, "first");
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        final CompletableFuture<ResponseEntity<ChatResponse>> second = chat(controller, "second");
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+
+        release.countDown();
+        assertEquals(HttpStatus.OK, second.get(2, TimeUnit.SECONDS).getStatusCode());
+        assertEquals(0, registry.counter("assistant.chat.rejected").count());
+    }
+
+    @Test
+    void releasesThePermitWhenAChatFails() throws Exception {
+        when(assistantService.process("boom")).thenThrow(new IllegalStateException("Gemini is down"));
+        when(assistantService.process("hello")).thenReturn(ChatResponse.ok("hi"));
+        final ChatController controller = controller(1);
+
+        final CompletableFuture<ResponseEntity<ChatResponse>> failed = chat(controller, "boom");
+        assertTrue(failed.handle((response, e) -> e != null).get(2, TimeUnit.SECONDS));
+
+        assertEquals(HttpStatus.OK, controller.chat(new ChatRequest("hello")).getStatusCode());
+    }
+
+    @Test
+    void streamsEachStageOfTheChatBeforeTheReply() throws Exception {
+        when(assistantService.process(eq("next bus from keskustori"), any(ChatProgress.class))).thenAnswer(invocation -> {
+            final ChatProgress progress = invocation.getArgument(1);
+            progress.intentParsed(new ParsedIntent(Intent.NEXT_DEPARTURE, "Keskustori", null));
+            progress.stopResolved("Keskustori", "0001");
+            progress.departure("Keskustori", new DepartureInfo("3", Instant.parse("2024-05-15T08:04:00Z")),
+                    "Bus 3 leaves at 11:04");
+            return ChatResponse.ok("Bus 3 leaves at 11:04");
+        });
+        final MockMvc mvc = MockMvcBuilders.standaloneSetup(controller(1)).build();
+
+        final MvcResult started = mvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\": \"next bus from keskustori\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(2_000);
+
+        assertEquals(List.of("intent", "stop", "departure", "reply"), events(started));
+        final String body = started.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"stopId\":\"0001\""), body);
+        assertTrue(body.contains("\"text\":\"Bus 3 leaves at 11:04\""), body);
+    }
+
+    @Test
+    void streamsABusyErrorWhenEveryPermitIsTaken() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(assistantService.process("first")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return ChatResponse.ok("first answer");
+        });
+        final ChatController controller = controller(1);
+        chat(controller, "first");
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        final MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        try {
+            final MvcResult busy = mvc.perform(post("/api/chat/stream")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"message\": \"second\"}"))
+                    .andReturn();
+            busy.getAsyncResult(2_000);
+
+            assertEquals(List.of("error"), events(busy));
+            assertEquals(1, registry.counter("assistant.chat.rejected").count());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void stopsTheChatOnceTheStreamIsClosed() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final CompletableFuture<Throwable> thrown = new CompletableFuture<>();
+        when(assistantService.process(eq("next bus"), any(ChatProgress.class))).thenAnswer(invocation -> {
+            closed.await();
+            try {
+                invocation.<ChatProgress>getArgument(1).stopResolved("Keskustori", "0001");
+                thrown.complete(null);
+            } catch (final ChatAbandonedException e) {
+                thrown.complete(e);
+                throw e;
+            }
+            return ChatResponse.ok("never sent");
+        });
+        final ChatController controller = controller(1);
+
+        // The client went away, or the stream timed out
+        controller.stream(new ChatRequest("next bus")).complete();
+        closed.countDown();
+
+        assertInstanceOf(ChatAbandonedException.class, thrown.get(2, TimeUnit.SECONDS));
+        when(assistantService.process("hello")).thenReturn(ChatResponse.ok("hi"));
+        assertEquals(HttpStatus.OK, controller.chat(new ChatRequest("hello")).getStatusCode());
+    }
+
+    private ChatController controller(final int maxConcurrent) {
+        return new ChatController(assistantService, registry, new SimpleAsyncTaskExecutor(),
+                maxConcurrent, Duration.ofMillis(100), Duration.ofSeconds(60));
+    }
+
+    private CompletableFuture<ResponseEntity<ChatResponse>> chat(final ChatController controller, final String message) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return controller.chat(new ChatRequest(message));
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, clients);
+    }
+
+    private static List<String> events(final MvcResult result) throws Exception {
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8).lines()
+                .filter(line -> line.startsWith("event:"))
+                .map(line -> line.substring("event:".length()))
+                .toList();
+    }
+}
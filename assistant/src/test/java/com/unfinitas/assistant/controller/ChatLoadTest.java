@@ -0,0 +1,91 @@
+package com.unfinitas.assistant.controller;
+
+import com.unfinitas.assistant.model.ChatRequest;
+import com.unfinitas.assistant.model.ChatResponse;
+import com.unfinitas.assistant.service.AssistantService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chats sustained at once when every chat blocks on Gemini and the downstream services, served
+ * the way Tomcat serves them: by its default pool of 200 platform threads, or by a virtual
+ * thread per request ({@code spring.threads.virtual.enabled}). The chat cap is raised above the
+ * load so only the threads limit it.
+ */
+class ChatLoadTest {
+
+    private static final int CHATS = 1_000;
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final Duration CHAT_LATENCY = Duration.ofMillis(500);
+
+    @Test
+    void platformThreadsHoldAtMostThePoolSizeOfChats() throws Exception {
+        final Load load = run(Executors.newFixedThreadPool(TOMCAT_MAX_THREADS));
+
+        assertEquals(TOMCAT_MAX_THREADS, load.peakInFlight());
+    }
+
+    @Test
+    void virtualThreadsHoldEveryChatAtOnce() throws Exception {
+        final Load load = run(Executors.newVirtualThreadPerTaskExecutor());
+
+        assertTrue(load.peakInFlight() > TOMCAT_MAX_THREADS, load::toString);
+    }
+
+    private static Load run(final ExecutorService threads) throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final AssistantService assistantService = mock(AssistantService.class);
+        when(assistantService.process(anyString())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(CHAT_LATENCY);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return ChatResponse.ok("answer");
+        });
+        final ChatController controller = new ChatController(assistantService, new SimpleMeterRegistry(),
+                new SimpleAsyncTaskExecutor(), CHATS, Duration.ofSeconds(30), Duration.ofSeconds(60));
+
+        final long start = System.nanoTime();
+        try (threads) {
+            final List<Future<HttpStatus>> chats = new ArrayList<>();
+            for (int chat = 0; chat < CHATS; chat++) {
+                chats.add(threads.submit(() ->
+                        HttpStatus.valueOf(controller.chat(new ChatRequest("next bus")).getStatusCode().value())));
+            }
+            for (final Future<HttpStatus> chat : chats) {
+                assertEquals(HttpStatus.OK, chat.get());
+            }
+        }
+        final Load load = new Load(peak.get(), Duration.ofNanos(System.nanoTime() - start));
+        System.out.println(load);
+        return load;
+    }
+
+    private record Load(int peakInFlight, Duration elapsed) {
+        @Override
+        public String toString() {
+            return "%d chats of %d ms: peak %d in flight, %d ms, %.0f chats/s".formatted(
+                    CHATS, CHAT_LATENCY.toMillis(), peakInFlight, elapsed.toMillis(),
+                    CHATS * 1_000.0 / elapsed.toMillis());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.unfinitas.assistant.service;
+
+import com.unfinitas.assistant.client.LocationClient;
+import com.unfinitas.assistant.client.ReminderClient;
+import com.unfinitas.assistant.client.TransitClient;
+import com.unfinitas.assistant.model.ChatResponse;
+import com.unfinitas.assistant.model.DepartureInfo;
+import com.unfinitas.assistant.model.Intent;
+import com.unfinitas.assistant.model.ParsedIntent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AssistantServiceTest {
+
+    private static final String MESSAGE = "next bus from Keskustori and Hervanta";
+    private static final Instant DEPARTS = Instant.now().plus(Duration.ofHours(1));
+
+    private final IntentParserService intentParser = mock(IntentParserService.class);
+    private final TransitClient transitClient = mock(TransitClient.class);
+    private final LocationClient locationClient = mock(LocationClient.class);
+    private final ReminderClient reminderClient = mock(ReminderClient.class);
+    private final DeparturePrefetcher prefetcher = new DeparturePrefetcher(
+            locationClient, transitClient, mock(FastIntentParser.class), new SimpleMeterRegistry(), false, 2);
+
+    @BeforeEach
+    void stubs() {
+        when(locationClient.resolveStopId("Keskustori")).thenReturn("0001");
+        when(locationClient.resolveStopId("Hervanta")).thenReturn("0003");
+        when(locationClient.resolveStopId("Lielahti")).thenReturn("0005");
+        when(transitClient.getNextDepartures(anyString(), anyInt())).thenReturn(List.of(new DepartureInfo("3", DEPARTS)));
+    }
+
+    @Test
+    void answersEachRequestInItsOwnPart() {
+        parses(next("Keskustori"), next("Hervanta"));
+
+        final ChatResponse response = service(5, Duration.ofSeconds(5)).process(MESSAGE);
+
+        assertTrue(response.success());
+        assertEquals(2, response.parts().size());
+        assertTrue(response.parts().get(0).reply().startsWith("Next departures from Keskustori:"));
+        assertTrue(response.parts().get(1).reply().startsWith("Next departures from Hervanta:"));
+        assertEquals(response.parts().get(0).reply() + "\n\n" + response.parts().get(1).reply(), response.reply());
+    }
+
+    @Test
+    void reportsARequestStillRunningAtTheDeadlineAsTimedOut() {
+        parses(next("Keskustori"), next("Hervanta"));
+        final AtomicBoolean woundDown = new AtomicBoolean();
+        when(transitClient.getNextDepartures("0003", AssistantService.DEPARTURES)).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                return List.of();
+            } finally {
+                woundDown.set(true);
+            }
+        });
+
+        final long started = System.nanoTime();
+        final ChatResponse response = service(5, Duration.ofMillis(200)).process(MESSAGE);
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(response.parts().get(0).success());
+        assertEquals(ChatResponse.error("Timed out answering for Hervanta"), response.parts().get(1));
+        // The interrupted request ended before the reply was returned
+        assertTrue(woundDown.get());
+    }
+
+    @Test
+    void reportsARequestThatFinishedPastTheDeadlineAsDone() {
+        parses(next("Keskustori"), new ParsedIntent(Intent.SET_REMINDER, "Hervanta", 5));
+        when(transitClient.getNextDepartures("0003", 1)).thenAnswer(invocation -> {
+            // Ignores the interrupt at the deadline and finishes anyway
+            final long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(400);
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            return List.of(new DepartureInfo("3", DEPARTS));
+        });
+
+        final ChatResponse response = service(5, Duration.ofMillis(100)).process(MESSAGE);
+
+        assertTrue(response.parts().get(1).success());
+        assertTrue(response.parts().get(1).reply().startsWith("Reminder set for 5 minutes before line 3"));
+        verify(reminderClient).createReminder(anyString(), anyString(), anyString(), anyString(), anyInt(), anyString(), anyString());
+    }
+
+    @Test
+    void answersTheOtherRequestsWhenOneFails() {
+        parses(next("Keskustori"), next("Hervanta"));
+        when(transitClient.getNextDepartures("0001", AssistantService.DEPARTURES))
+                .thenThrow(new IllegalStateException("transit service down"));
+
+        final ChatResponse response = service(5, Duration.ofSeconds(5)).process(MESSAGE);
+
+        assertTrue(response.success());
+        assertEquals(ChatResponse.error("Failed to get departures: transit service down"), response.parts().get(0));
+        assertTrue(response.parts().get(1).success());
+    }
+
+    @Test
+    void endsTheChatWhenARequestFindsItAbandoned() throws InterruptedException {
+        parses(next("Keskustori"), next("Hervanta"));
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        when(transitClient.getNextDepartures("0003", AssistantService.DEPARTURES)).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+            }
+            return List.of();
+        });
+        final ChatProgress gone = new ChatProgress() {
+            @Override
+            public void stopResolved(final String stopName, final String stopId) {
+                if (stopName.equals("Keskustori")) {
+                    throw new ChatAbandonedException("Chat stream closed", new IllegalStateException("closed"));
+                }
+            }
+        };
+
+        final long started = System.nanoTime();
+        assertThrows(ChatAbandonedException.class, () -> service(5, Duration.ofSeconds(30)).process(MESSAGE, gone));
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(interrupted.await(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void answersAtMostMaxSubIntentsRequests() {
+        parses(next("Keskustori"), next("Hervanta"), next("Lielahti"));
+
+        final ChatResponse response = service(2, Duration.ofSeconds(5)).process(MESSAGE);
+
+        assertEquals(2, response.parts().size());
+        assertFalse(response.reply().contains("Lielahti"));
+        verify(locationClient, never()).resolveStopId("Lielahti");
+    }
+
+    private void parses(final ParsedIntent... intents) {
+        when(intentParser.parse(MESSAGE)).thenReturn(List.of(intents));
+    }
+
+    private AssistantService service(final int maxSubIntents, final Duration subIntentTimeout) {
+        return new AssistantService(
+                intentParser, transitClient, locationClient, reminderClient, prefetcher, maxSubIntents, subIntentTimeout);
+    }
+
+    private static ParsedIntent next(final String stopName) {
+        return new ParsedIntent(Intent.NEXT_DEPARTURE, stopName, null);
+    }
+}
@@ -0,0 +1,193 @@
+package com.unfinitas.assistant.service;
+
+import com.unfinitas.assistant.client.LocationClient;
+import com.unfinitas.assistant.client.TransitClient;
+import com.unfinitas.assistant.model.DepartureInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DeparturePrefetcherTest {
+
+    private static final String MESSAGE = "Next bus from Keskustori or Hervanta?";
+    private static final List<DepartureInfo> DEPARTURES = List.of(
+            new DepartureInfo("3", Instant.parse("2024-05-15T08:00:00Z"))
+    );
+
+    private final LocationClient locationClient = mock(LocationClient.class);
+    private final TransitClient transitClient = mock(TransitClient.class);
+    private final FastIntentParser stopFinder = mock(FastIntentParser.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void stubs() {
+        when(stopFinder.stopsMentionedIn(MessageNormalizer.normalize(MESSAGE))).thenReturn(List.of("Keskustori", "Hervanta"));
+        when(locationClient.resolveStopId("Keskustori")).thenReturn("0001");
+        when(locationClient.resolveStopId("Hervanta")).thenReturn("0003");
+        when(transitClient.getNextDepartures(anyString(), anyInt())).thenReturn(DEPARTURES);
+    }
+
+    @Test
+    void handsEachLookupToOneClaim() {
+        try (DeparturePrefetcher.Speculation speculation = prefetcher(2).start(MESSAGE)) {
+            final Optional<DeparturePrefetcher.Prefetched> claimed = speculation.claim("keskustori");
+
+            assertTrue(claimed.isPresent());
+            assertEquals("0001", claimed.get().stopId());
+            assertEquals(DEPARTURES, claimed.get().departures());
+            assertEquals(Optional.empty(), speculation.claim("Keskustori"));
+        }
+        assertEquals(1, claims("used"));
+        // The unclaimed Hervanta lookup is discarded on close
+        assertEquals(1, claims("wasted"));
+    }
+
+    @Test
+    void cancelsLookupsOfStopsTheParseDidNotName() {
+        try (DeparturePrefetcher.Speculation speculation = prefetcher(2).start(MESSAGE)) {
+            speculation.retain(List.of("Keskustori"));
+
+            assertEquals(Optional.empty(), speculation.claim("Hervanta"));
+            assertTrue(speculation.claim("Keskustori").isPresent());
+            assertEquals(1, claims("wasted"));
+        }
+        assertEquals(1, claims("used"));
+        assertEquals(1, claims("wasted"));
+    }
+
+    @Test
+    void looksUpAtMostMaxCandidates() {
+        try (DeparturePrefetcher.Speculation speculation = prefetcher(1).start(MESSAGE)) {
+            assertTrue(speculation.claim("Keskustori").isPresent());
+            assertEquals(Optional.empty(), speculation.claim("Hervanta"));
+        }
+        verify(locationClient, never()).resolveStopId("Hervanta");
+    }
+
+    @Test
+    void prefetchesNothingWhenDisabled() {
+        final DeparturePrefetcher prefetcher = new DeparturePrefetcher(
+                locationClient, transitClient, stopFinder, registry, false, 2);
+
+        try (DeparturePrefetcher.Speculation speculation = prefetcher.start(MESSAGE)) {
+            assertEquals(Optional.empty(), speculation.claim("Keskustori"));
+        }
+        verifyNoInteractions(locationClient, transitClient);
+    }
+
+    @Test
+    void prefetchesNoDeparturesForAnUnknownStop() {
+        when(locationClient.resolveStopId("Keskustori")).thenReturn(null);
+
+        try (DeparturePrefetcher.Speculation speculation = prefetcher(2).start(MESSAGE)) {
+            final DeparturePrefetcher.Prefetched claimed = speculation.claim("Keskustori").orElseThrow();
+
+            assertNull(claimed.stopId());
+            assertEquals(List.of(), claimed.departures());
+        }
+        verify(transitClient, never()).getNextDepartures("0001", AssistantService.DEPARTURES);
+    }
+
+    @Test
+    void leavesAFailedLookupToTheCaller() {
+        when(locationClient.resolveStopId("Keskustori")).thenThrow(new IllegalStateException("location service down"));
+
+        try (DeparturePrefetcher.Speculation speculation = prefetcher(2).start(MESSAGE)) {
+            assertEquals(Optional.empty(), speculation.claim("Keskustori"));
+            assertEquals(1, claims("wasted"));
+        }
+    }
+
+    @Test
+    void interruptsLookupsStillRunningOnClose() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        when(locationClient.resolveStopId("Keskustori")).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+
+        try (DeparturePrefetcher.Speculation ignored = prefetcher(1).start(MESSAGE)) {
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+        }
+
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(1, claims("wasted"));
+        verify(transitClient, after(100).never()).getNextDepartures(anyString(), anyInt());
+    }
+
+    @Test
+    void discardsTheLookupWhenTheClaimIsInterrupted() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        when(locationClient.resolveStopId("Keskustori")).thenAnswer(invocation -> {
+            release.await();
+            return "0001";
+        });
+
+        try (DeparturePrefetcher.Speculation speculation = prefetcher(1).start(MESSAGE)) {
+            Thread.currentThread().interrupt();
+
+            assertEquals(Optional.empty(), speculation.claim("Keskustori"));
+            assertTrue(Thread.interrupted());
+            assertEquals(1, claims("wasted"));
+        } finally {
+            release.countDown();
+        }
+        assertEquals(0, claims("used"));
+        assertEquals(1, claims("wasted"));
+    }
+
+    @Test
+    void interruptsLookupsWhenShutDown() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        when(locationClient.resolveStopId("Keskustori")).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        final DeparturePrefetcher prefetcher = prefetcher(1);
+
+        prefetcher.start(MESSAGE);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        prefetcher.close();
+
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    private DeparturePrefetcher prefetcher(final int maxCandidates) {
+        return new DeparturePrefetcher(locationClient, transitClient, stopFinder, registry, true, maxCandidates);
+    }
+
+    private double claims(final String result) {
+        return registry.counter("assistant.prefetch.claims", "result", result).count();
+    }
+}
@@ -0,0 +1,38 @@
+package com.unfinitas.assistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageNormalizerTest {
+
+    @Test
+    void lowerCasesAndDropsPunctuation() {
+        assertEquals("next bus from keskustori", MessageNormalizer.normalize("Next bus from Keskustori?"));
+    }
+
+    @Test
+    void collapsesAndTrimsWhitespace() {
+        assertEquals("next bus from keskustori", MessageNormalizer.normalize("  next \t bus\n from   keskustori "));
+    }
+
+    @Test
+    void removesDiacritics() {
+        assertEquals("milloin lahtee seuraava bussi hameenpuistosta",
+                MessageNormalizer.normalize("Milloin lähtee seuraava bussi Hämeenpuistosta?"));
+        assertEquals(MessageNormalizer.normalize("Järnvägsstationen"), MessageNormalizer.normalize("jarnvagsstationen"));
+    }
+
+    @Test
+    void keepsDigitsAndFoldsCompatibilityForms() {
+        assertEquals("bus 3 in 10 min", MessageNormalizer.normalize("Bus #3 in 10 min!"));
+        // NFKD turns full-width and ligature forms into their plain letters
+        assertEquals("bus 3 fi", MessageNormalizer.normalize("ＢＵＳ ３ ﬁ"));
+    }
+
+    @Test
+    void normalizesNothingToEmpty() {
+        assertEquals("", MessageNormalizer.normalize(null));
+        assertEquals("", MessageNormalizer.normalize(" ?! "));
+    }
+}
@@ -0,0 +1,91 @@
+package com.unfinitas.assistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NgramVectorIndexTest {
+
+    private static final int[] STOP = {1};
+
+    @Test
+    void embedsTextAsAUnitVector() {
+        final float[] vector = NgramVectorIndex.embed("next bus from stop");
+
+        assertEquals(NgramVectorIndex.DIMENSIONS, vector.length);
+        assertEquals(1, cosine(vector, vector), 1e-5);
+        assertNull(NgramVectorIndex.embed(""));
+    }
+
+    @Test
+    void embedsParaphrasesCloserThanUnrelatedText() {
+        final float[] message = NgramVectorIndex.embed("when is the next bus from stop");
+        final float[] paraphrase = NgramVectorIndex.embed("when is the next bus leaving from stop");
+        final float[] unrelated = NgramVectorIndex.embed("remind me to buy milk tomorrow");
+
+        assertTrue(cosine(message, paraphrase) > 0.7);
+        assertTrue(cosine(message, unrelated) < cosine(message, paraphrase));
+    }
+
+    @Test
+    void findsAnIdenticalText() {
+        final NgramVectorIndex<String> index = new NgramVectorIndex<>(16);
+        index.put(NgramVectorIndex.embed("next bus from stop"), 1, "departures");
+
+        assertEquals("departures", index.nearest(NgramVectorIndex.embed("next bus from stop"), STOP, 0.99f, value -> true));
+    }
+
+    @Test
+    void returnsTheMostSimilarEntryAboveTheThreshold() {
+        final NgramVectorIndex<String> index = new NgramVectorIndex<>(16);
+        index.put(NgramVectorIndex.embed("next bus from stop"), 1, "close");
+        index.put(NgramVectorIndex.embed("remind me about the bus from stop"), 1, "far");
+
+        assertEquals("close", index.nearest(NgramVectorIndex.embed("next bus from stop please"), STOP, 0.5f, value -> true));
+        assertNull(index.nearest(NgramVectorIndex.embed("what is the weather like"), STOP, 0.5f, value -> true));
+    }
+
+    @Test
+    void matchesOnlyTheQueriedPartitions() {
+        final NgramVectorIndex<String> index = new NgramVectorIndex<>(16);
+        index.put(NgramVectorIndex.embed("next bus from stop"), 1, "first stop");
+        index.put(NgramVectorIndex.embed("next bus from stop"), 2, "second stop");
+
+        final float[] query = NgramVectorIndex.embed("next bus from stop");
+        assertEquals("second stop", index.nearest(query, new int[]{2}, 0.9f, value -> true));
+        assertNull(index.nearest(query, new int[]{3}, 0.9f, value -> true));
+    }
+
+    @Test
+    void skipsEntriesTheCallerRejects() {
+        final NgramVectorIndex<String> index = new NgramVectorIndex<>(16);
+        index.put(NgramVectorIndex.embed("next bus from stop"), 1, "stale");
+        index.put(NgramVectorIndex.embed("next bus from stop now"), 1, "fresh");
+
+        assertEquals("fresh", index.nearest(NgramVectorIndex.embed("next bus from stop"), STOP, 0.5f,
+                value -> !value.equals("stale")));
+    }
+
+    @Test
+    void overwritesTheOldestEntryWhenFull() {
+        final NgramVectorIndex<String> index = new NgramVectorIndex<>(2);
+        index.put(NgramVectorIndex.embed("next bus from stop"), 1, "oldest");
+        index.put(NgramVectorIndex.embed("next tram from stop"), 2, "older");
+        index.put(NgramVectorIndex.embed("next train from stop"), 3, "newest");
+
+        assertEquals(2, index.size());
+        assertNull(index.nearest(NgramVectorIndex.embed("next bus from stop"), STOP, 0.5f, value -> true));
+        assertEquals("older", index.nearest(NgramVectorIndex.embed("next tram from stop"), new int[]{2}, 0.99f, value -> true));
+        assertEquals("newest", index.nearest(NgramVectorIndex.embed("next train from stop"), new int[]{3}, 0.99f, value -> true));
+    }
+
+    private static double cosine(final float[] a, final float[] b) {
+        double sum = 0;
+        for (int d = 0; d < a.length; d++) {
+            sum += a[d] * b[d];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,102 @@
+package com.unfinitas.assistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PhraseAutomatonTest {
+
+    @Test
+    void reportsOverlappingMatchesInOrderOfWhereTheyEnd() {
+        final PhraseAutomaton automaton = new PhraseAutomaton(List.of("he", "she", "his", "hers"));
+
+        assertEquals(List.of(
+                new Match(1, 1, 4),
+                new Match(0, 2, 4),
+                new Match(3, 2, 6)
+        ), matches(automaton, "ushers"));
+    }
+
+    @Test
+    void findsPhrasesThroughFailLinks() {
+        final PhraseAutomaton automaton = new PhraseAutomaton(List.of("keskustori", "tori", "torikatu"));
+
+        assertEquals(List.of(
+                new Match(0, 9, 19),
+                new Match(1, 15, 19),
+                new Match(1, 23, 27),
+                new Match(2, 23, 31)
+        ), matches(automaton, "bus from keskustori to torikatu"));
+    }
+
+    @Test
+    void reportsARepeatedPhraseUnderItsFirstIndex() {
+        final PhraseAutomaton automaton = new PhraseAutomaton(List.of("tays", "hervanta", "tays"));
+
+        assertEquals(List.of(new Match(0, 0, 4)), matches(automaton, "tays"));
+    }
+
+    @Test
+    void findsNothingInTextWithoutPhrases() {
+        final PhraseAutomaton automaton = new PhraseAutomaton(List.of("lielahti"));
+
+        assertEquals(List.of(), matches(automaton, "next bus from lielaht"));
+        assertEquals(List.of(), matches(automaton, ""));
+        assertEquals(List.of(), matches(new PhraseAutomaton(List.of()), "lielahti"));
+    }
+
+    @Test
+    void findsTheSameMatchesAsABruteForceScan() {
+        final Random random = new Random(7);
+        final List<String> phrases = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            phrases.add(randomText(random, 1 + random.nextInt(6)));
+        }
+        final PhraseAutomaton automaton = new PhraseAutomaton(phrases);
+
+        for (int i = 0; i < 20; i++) {
+            final String text = randomText(random, 200);
+            assertEquals(bruteForce(phrases, text), matches(automaton, text));
+        }
+    }
+
+    private static List<Match> matches(final PhraseAutomaton automaton, final String text) {
+        final List<Match> matches = new ArrayList<>();
+        automaton.forEachMatch(text, (phrase, start, end) -> matches.add(new Match(phrase, start, end)));
+        return matches;
+    }
+
+    /**
+     * Every distinct phrase at every position, ordered like the automaton reports them: by end,
+     * then longest first.
+     */
+    private static List<Match> bruteForce(final List<String> phrases, final String text) {
+        final List<Match> matches = new ArrayList<>();
+        for (int phrase = 0; phrase < phrases.size(); phrase++) {
+            if (phrases.indexOf(phrases.get(phrase)) != phrase) {
+                continue;
+            }
+            for (int start = text.indexOf(phrases.get(phrase)); start >= 0; start = text.indexOf(phrases.get(phrase), start + 1)) {
+                matches.add(new Match(phrase, start, start + phrases.get(phrase).length()));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::end).thenComparingInt(Match::start));
+        return matches;
+    }
+
+    private static String randomText(final Random random, final int length) {
+        final StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(4)));
+        }
+        return text.toString();
+    }
+
+    private record Match(int phrase, int start, int end) {
+    }
+}
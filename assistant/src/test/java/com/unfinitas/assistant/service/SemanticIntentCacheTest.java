@@ -0,0 +1,119 @@
+package com.unfinitas.assistant.service;
+
+import com.unfinitas.assistant.client.LocationClient;
+import com.unfinitas.assistant.model.Intent;
+import com.unfinitas.assistant.model.ParsedIntent;
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.replica.LocationCatalogReplica;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SemanticIntentCacheTest {
+
+    /**
+     * The default in application.yml.
+     */
+    private static final float THRESHOLD = 0.85f;
+
+    private static final String REMINDER = "remind me 5 minutes before the bus from Keskustori";
+    private static final ParsedIntent REMIND_5 = new ParsedIntent(Intent.SET_REMINDER, "Keskustori", 5);
+    private static final String NEXT_BUS = "when is the next bus from Keskustori";
+    private static final ParsedIntent NEXT = new ParsedIntent(Intent.NEXT_DEPARTURE, "Keskustori", null);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SemanticIntentCache cache;
+
+    @BeforeEach
+    void build() {
+        final LocationCatalogReplica replica = new LocationCatalogReplica();
+        replica.apply(LocationChangesDTO.builder().epoch("e1").version(1).full(true).upserts(List.of(
+                LocationDTO.builder().id("1").name("Keskustori").stopId("0001").type("STOP").build(),
+                LocationDTO.builder().id("2").name("Hervanta").stopId("0002").type("STOP").build()
+        )).build());
+        final LocationClient locationClient = mock(LocationClient.class);
+        when(locationClient.replica()).thenReturn(replica);
+        cache = cache(new FastIntentParser(locationClient), true);
+    }
+
+    @Test
+    void reusesTheParseOfARewordedMessage() {
+        cache.put(REMINDER, REMIND_5);
+        cache.put(NEXT_BUS, NEXT);
+
+        assertEquals(Optional.of(REMIND_5), cache.lookup("pls remind me 5 minutes before the bus from keskustorilta"));
+        assertEquals(Optional.of(REMIND_5), cache.lookup("5 minutes before the bus from Keskustori remind me"));
+        assertEquals(Optional.of(NEXT), cache.lookup("When is the next bus from KESKUSTORI?"));
+    }
+
+    @Test
+    void leavesNegatedMessagesToTheModel() {
+        cache.put(REMINDER, REMIND_5);
+
+        assertEquals(Optional.empty(), cache.lookup("dont remind me 5 minutes before the bus from Keskustori"));
+        assertEquals(Optional.empty(), cache.lookup("don't remind me 5 minutes before the bus from Keskustori"));
+        assertEquals(Optional.empty(), cache.lookup("cancel my reminder 5 minutes before the bus from Keskustori"));
+    }
+
+    @Test
+    void storesNoParseOfANegatedMessage() {
+        cache.put("cancel my reminder 5 minutes before the bus from Keskustori", REMIND_5);
+
+        assertEquals(Optional.empty(), cache.lookup(REMINDER));
+    }
+
+    @Test
+    void missesSimilarWordingThatMeansSomethingElse() {
+        cache.put(NEXT_BUS, NEXT);
+
+        assertEquals(Optional.empty(), cache.lookup("when was the last bus from Keskustori"));
+        assertEquals(Optional.empty(), cache.lookup("is the bus from Keskustori late"));
+    }
+
+    @Test
+    void reusesAParseOnlyForTheSameStopAndMinutes() {
+        cache.put(REMINDER, REMIND_5);
+
+        assertEquals(Optional.empty(), cache.lookup("remind me 5 minutes before the bus from Hervanta"));
+        assertEquals(Optional.empty(), cache.lookup("remind me 10 minutes before the bus from Keskustori"));
+        assertEquals(Optional.empty(), cache.lookup("remind me 5 minutes before the bus from Keskustori or Hervanta"));
+    }
+
+    @Test
+    void storesNothingTheCatalogCannotKeyOn() {
+        cache.put(NEXT_BUS, new ParsedIntent(Intent.NEXT_DEPARTURE, "Keskustorin kauppahalli", null));
+        cache.put(NEXT_BUS, new ParsedIntent(Intent.UNKNOWN, null, null));
+
+        assertEquals(Optional.empty(), cache.lookup(NEXT_BUS));
+    }
+
+    @Test
+    void answersNothingWhenDisabled() {
+        final SemanticIntentCache disabled = cache(mock(FastIntentParser.class), false);
+        disabled.put(NEXT_BUS, NEXT);
+
+        assertEquals(Optional.empty(), disabled.lookup(NEXT_BUS));
+    }
+
+    @Test
+    void timesHitsAndMissesApart() {
+        cache.put(NEXT_BUS, NEXT);
+        cache.lookup(NEXT_BUS);
+        cache.lookup("dont tell me about the next bus from Keskustori");
+
+        assertEquals(1, registry.timer("assistant.intents.semantic.lookup", "result", "hit").count());
+        assertEquals(1, registry.timer("assistant.intents.semantic.lookup", "result", "miss").count());
+    }
+
+    private SemanticIntentCache cache(final FastIntentParser stopFinder, final boolean enabled) {
+        return new SemanticIntentCache(stopFinder, registry, enabled, 1_000, THRESHOLD);
+    }
+}
@@ -0,0 +1,113 @@
+package com.unfinitas.common.batch;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * DataLoader-style micro-batcher. Keys requested within {@code window} of the first pending key
+ * are collected, de-duplicated and handed to the loader as one batch; each caller gets the
+ * value for its own key. A batch is dispatched early once it reaches {@code maxBatchSize}.
+ *
+ * <p>The loader runs on the batcher's timer thread, for full batches as well as timed ones, and
+ * must not block; return a future that completes when the upstream call does. Keys missing from
+ * the loaded map resolve to {@code null}.
+ */
+public final class RequestBatcher<K, V> implements AutoCloseable {
+
+    private final Function<Set<K>, CompletableFuture<Map<K, V>>> loader;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer;
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public RequestBatcher(
+            final String name,
+            final Duration window,
+            final int maxBatchSize,
+            final Function<Set<K>, CompletableFuture<Map<K, V>>> loader
+    ) {
+        this.loader = loader;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, name + "-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<V> load(final K key) {
+        final CompletableFuture<V> future;
+        Map<K, CompletableFuture<V>> full = null;
+
+        synchronized (this) {
+            future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                full = detach();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (full != null) {
+            // On the timer thread like every other batch, so the caller that filled it does not run the loader
+            final Map<K, CompletableFuture<V>> batch = full;
+            timer.execute(() -> dispatch(batch));
+        }
+        // A copy, so one caller cancelling does not fail everyone waiting on the same key
+        return future.copy();
+    }
+
+    @Override
+    public void close() {
+        timer.execute(this::flush);
+        timer.shutdown();
+    }
+
+    private void flush() {
+        final Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            batch = detach();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private Map<K, CompletableFuture<V>> detach() {
+        final Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(final Map<K, CompletableFuture<V>> batch) {
+        CompletableFuture<Map<K, V>> result;
+        try {
+            result = loader.apply(batch.keySet());
+        } catch (final RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((values, error) -> batch.forEach((key, future) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(values == null ? null : values.get(key));
+            }
+        }));
+    }
+}
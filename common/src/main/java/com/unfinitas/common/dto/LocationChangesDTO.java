@@ -0,0 +1,26 @@
+package com.unfinitas.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One read of the location change feed. {@code epoch} identifies the catalog instance the
+ * versions count in; a new epoch, or a {@code since} older than the retained history, yields a
+ * {@code full} response holding every location instead of a delta.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationChangesDTO {
+    private String epoch;
+    private long version;
+    private boolean full;
+
+    @Builder.Default
+    private List<LocationDTO> upserts = List.of();
+}
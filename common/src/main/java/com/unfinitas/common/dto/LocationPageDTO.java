@@ -0,0 +1,22 @@
+package com.unfinitas.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationPageDTO {
+    private List<LocationDTO> items;
+
+    /**
+     * Pass as {@code after} to get the next page; {@code null} on the last page.
+     */
+    private @Nullable String nextCursor;
+}
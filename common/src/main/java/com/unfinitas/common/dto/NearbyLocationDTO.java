@@ -0,0 +1,15 @@
+package com.unfinitas.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyLocationDTO {
+    private LocationDTO location;
+    private double distanceMeters;
+}
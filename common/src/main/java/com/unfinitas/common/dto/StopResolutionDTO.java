@@ -0,0 +1,24 @@
+package com.unfinitas.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Best match per requested name and the location of each requested stop ID, keyed exactly as
+ * requested. Names and stop IDs that resolved to nothing are absent.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StopResolutionDTO {
+    @Builder.Default
+    private Map<String, LocationDTO> byName = Map.of();
+
+    @Builder.Default
+    private Map<String, LocationDTO> byStopId = Map.of();
+}
@@ -0,0 +1,20 @@
+package com.unfinitas.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StopResolutionRequestDTO {
+    @Builder.Default
+    private List<String> names = List.of();
+
+    @Builder.Default
+    private List<String> stopIds = List.of();
+}
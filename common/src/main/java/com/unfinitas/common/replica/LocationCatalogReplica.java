@@ -0,0 +1,245 @@
+package com.unfinitas.common.replica;
+
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.LocationDTO;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process copy of the location catalog, kept current by applying the location service's change
+ * feed, so stop names and IDs resolve without a network hop. Readers see an immutable state that
+ * each applied change swaps; until the first full snapshot arrives the replica answers nothing and
+ * callers fall back to the location service.
+ */
+public final class LocationCatalogReplica {
+
+    private volatile State state = State.EMPTY;
+    private volatile @Nullable Instant lastSyncedAt;
+
+    public @Nullable String epoch() {
+        return state.epoch;
+    }
+
+    public long version() {
+        return state.version;
+    }
+
+    public int size() {
+        return state.byId.size();
+    }
+
+    public boolean isReady() {
+        return state.version > 0;
+    }
+
+    /**
+     * Time since the replica last confirmed it matches the source, or {@code null} before the first sync.
+     */
+    public @Nullable Duration lag() {
+        final Instant synced = lastSyncedAt;
+        return synced == null ? null : Duration.between(synced, Instant.now());
+    }
+
+    /**
+     * Applies one read of the change feed. A delta for a different epoch is ignored; the next read
+     * from the current version will come back full.
+     */
+    public synchronized void apply(final LocationChangesDTO changes) {
+        final State current = state;
+        final boolean sameEpoch = changes.getEpoch() != null && changes.getEpoch().equals(current.epoch);
+        if (!changes.isFull() && !sameEpoch) {
+            return;
+        }
+
+        final List<LocationDTO> upserts = changes.getUpserts() == null ? List.of() : changes.getUpserts();
+        if (changes.isFull() || !upserts.isEmpty()) {
+            final Map<String, LocationDTO> byId = changes.isFull() ? new LinkedHashMap<>() : new LinkedHashMap<>(current.byId);
+            for (final LocationDTO location : upserts) {
+                if (location.getId() != null) {
+                    byId.put(location.getId(), location);
+                }
+            }
+            state = State.of(changes.getEpoch(), changes.getVersion(), byId);
+        }
+        lastSyncedAt = Instant.now();
+    }
+
+    /**
+     * Every location in the current state, unmodifiable; a later change does not affect it.
+     */
+    public Collection<LocationDTO> locations() {
+        return Collections.unmodifiableCollection(state.byId.values());
+    }
+
+    public Optional<LocationDTO> findByStopId(final String stopId) {
+        return Optional.ofNullable(state.byStopId.get(stopId));
+    }
+
+    /**
+     * The location a name search would return first: an exact name match, otherwise the closest
+     * name containing the query (prefix before word prefix before substring, shorter names first).
+     */
+    public Optional<LocationDTO> findByName(final String name) {
+        final String needle = normalize(name);
+        if (needle.isEmpty()) {
+            return Optional.empty();
+        }
+        final State current = state;
+        final LocationDTO exact = current.byName.get(needle);
+        if (exact != null) {
+            return Optional.of(exact);
+        }
+        return Optional.ofNullable(current.names.find(needle));
+    }
+
+    public @Nullable String resolveStopId(final String name) {
+        return findByName(name).map(LocationDTO::getStopId).orElse(null);
+    }
+
+    private static String normalize(final @Nullable String name) {
+        return name == null ? "" : name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private record State(
+            @Nullable String epoch,
+            long version,
+            Map<String, LocationDTO> byId,
+            Map<String, LocationDTO> byName,
+            Map<String, LocationDTO> byStopId,
+            NameIndex names
+    ) {
+        static final State EMPTY = new State(null, 0, Map.of(), Map.of(), Map.of(), NameIndex.of(List.of()));
+
+        static State of(final String epoch, final long version, final Map<String, LocationDTO> byId) {
+            final Map<String, LocationDTO> byName = new HashMap<>();
+            final Map<String, LocationDTO> byStopId = new HashMap<>();
+            byId.values().stream()
+                    .sorted(Comparator.comparing(LocationDTO::getId))
+                    .forEach(location -> {
+                        byName.putIfAbsent(normalize(location.getName()), location);
+                        if (location.getStopId() != null) {
+                            byStopId.put(location.getStopId(), location);
+                        }
+                    });
+            return new State(epoch, version, byId, byName, byStopId, NameIndex.of(byId.values()));
+        }
+    }
+
+    /**
+     * Normalized names, computed once per state, with every word of every name in sorted order so
+     * prefix and word-prefix matches are a binary search. Only a query that starts no word of any
+     * name falls back to scanning the names for a substring.
+     */
+    private static final class NameIndex {
+
+        private final LocationDTO[] locations;
+        private final String[] names;
+
+        /**
+         * Each name from the start of each of its words, sorted, and whose name that is.
+         */
+        private final String[] wordSuffixes;
+        private final int[] owners;
+
+        private NameIndex(final LocationDTO[] locations, final String[] names, final String[] wordSuffixes, final int[] owners) {
+            this.locations = locations;
+            this.names = names;
+            this.wordSuffixes = wordSuffixes;
+            this.owners = owners;
+        }
+
+        static NameIndex of(final Collection<LocationDTO> all) {
+            final LocationDTO[] locations = all.toArray(LocationDTO[]::new);
+            final String[] names = new String[locations.length];
+            final List<String> suffixes = new ArrayList<>();
+            final List<Integer> suffixOwners = new ArrayList<>();
+            for (int i = 0; i < locations.length; i++) {
+                final String name = normalize(locations[i].getName());
+                names[i] = name;
+                for (int at = 0; at < name.length(); at++) {
+                    if (at == 0 || !Character.isLetterOrDigit(name.charAt(at - 1))) {
+                        suffixes.add(name.substring(at));
+                        suffixOwners.add(i);
+                    }
+                }
+            }
+
+            final Integer[] order = new Integer[suffixes.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparing(suffixes::get));
+            final String[] wordSuffixes = new String[order.length];
+            final int[] owners = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                wordSuffixes[i] = suffixes.get(order[i]);
+                owners[i] = suffixOwners.get(order[i]);
+            }
+            return new NameIndex(locations, names, wordSuffixes, owners);
+        }
+
+        /**
+         * Best match for a normalized query: name prefix before word prefix before substring,
+         * then shorter names, then alphabetical, as the location service ranks its search results.
+         */
+        @Nullable LocationDTO find(final String needle) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = lowerBound(needle); i < wordSuffixes.length && wordSuffixes[i].startsWith(needle); i++) {
+                final int owner = owners[i];
+                final int rank = wordSuffixes[i].length() == names[owner].length() ? 0 : 1;
+                if (better(owner, rank, best, bestRank)) {
+                    best = owner;
+                    bestRank = rank;
+                }
+            }
+            if (best < 0) {
+                for (int owner = 0; owner < names.length; owner++) {
+                    if (names[owner].contains(needle) && better(owner, 2, best, bestRank)) {
+                        best = owner;
+                        bestRank = 2;
+                    }
+                }
+            }
+            return best < 0 ? null : locations[best];
+        }
+
+        private boolean better(final int owner, final int rank, final int best, final int bestRank) {
+            if (best < 0 || rank != bestRank) {
+                return rank < bestRank;
+            }
+            final int length = names[owner].length();
+            final int bestLength = names[best].length();
+            if (length != bestLength) {
+                return length < bestLength;
+            }
+            final int byName = names[owner].compareTo(names[best]);
+            return byName != 0 ? byName < 0 : owner < best;
+        }
+
+        private int lowerBound(final String needle) {
+            int low = 0;
+            int high = wordSuffixes.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (wordSuffixes[mid].compareTo(needle) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
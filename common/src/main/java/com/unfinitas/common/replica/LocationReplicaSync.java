@@ -0,0 +1,120 @@
+package com.unfinitas.common.replica;
+
+import com.unfinitas.common.dto.LocationChangesDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a {@link LocationCatalogReplica} in step with the location service's change feed and
+ * publishes how far behind it may be.
+ *
+ * <p>Polls run on the sync's own timer thread. A read is asynchronous and bounded by
+ * {@code timeout}; while one is in flight further ticks are skipped rather than stacked behind it.
+ */
+public final class LocationReplicaSync implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationReplicaSync.class);
+
+    /**
+     * One read of the change feed since a version, as served by {@code GET /api/locations/changes}.
+     */
+    @FunctionalInterface
+    public interface ChangeFeed {
+        CompletableFuture<LocationChangesDTO> changesSince(long version, @Nullable String epoch);
+    }
+
+    private final LocationCatalogReplica replica;
+    private final ChangeFeed feed;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final ScheduledExecutorService timer;
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    public LocationReplicaSync(
+            final LocationCatalogReplica replica,
+            final ChangeFeed feed,
+            final Duration pollInterval,
+            final Duration timeout
+    ) {
+        this.replica = replica;
+        this.feed = feed;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "location-replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        timer.scheduleWithFixedDelay(this::sync, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the changes since the replica's version and applies them, unless a read is already in flight.
+     */
+    public void sync() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        final long before = replica.version();
+        final CompletableFuture<LocationChangesDTO> read;
+        try {
+            read = feed.changesSince(before, replica.epoch());
+        } catch (final RuntimeException e) {
+            polling.set(false);
+            log.debug("Location replica sync failed: {}", e.getMessage());
+            return;
+        }
+
+        read.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((changes, error) -> {
+            try {
+                if (error != null) {
+                    log.debug("Location replica sync failed: {}", error.toString());
+                } else if (changes != null) {
+                    replica.apply(changes);
+                    if (changes.isFull() || replica.version() != before) {
+                        log.debug("Location replica at version {} ({} locations{})",
+                                replica.version(), replica.size(), changes.isFull() ? ", full reload" : "");
+                    }
+                }
+            } finally {
+                polling.set(false);
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("tripmind.location.replica.lag", replica, LocationReplicaSync::lagSeconds)
+                .description("Time since the location replica last confirmed it matches the location service")
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("tripmind.location.replica.version", replica, LocationCatalogReplica::version)
+                .register(registry);
+        Gauge.builder("tripmind.location.replica.size", replica, LocationCatalogReplica::size)
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private static double lagSeconds(final LocationCatalogReplica replica) {
+        final Duration lag = replica.lag();
+        return lag == null ? Double.NaN : lag.toMillis() / 1000.0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.unfinitas.common.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestBatcherTest {
+
+    private final List<Set<String>> batches = new CopyOnWriteArrayList<>();
+    private final List<String> loaderThreads = new CopyOnWriteArrayList<>();
+    private RequestBatcher<String, String> batcher;
+
+    @AfterEach
+    void close() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void mergesKeysRequestedWithinTheWindowIntoOneBatch() throws Exception {
+        batcher = batcher(Duration.ofMillis(50), 100, this::upperCase);
+
+        final CompletableFuture<String> a = batcher.load("a");
+        final CompletableFuture<String> b = batcher.load("b");
+        final CompletableFuture<String> again = batcher.load("a");
+
+        assertEquals("A", a.get(1, TimeUnit.SECONDS));
+        assertEquals("B", b.get(1, TimeUnit.SECONDS));
+        assertEquals("A", again.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of(Set.of("a", "b")), batches);
+    }
+
+    @Test
+    void dispatchesAFullBatchOnTheTimerThreadWithoutWaitingForTheWindow() throws Exception {
+        batcher = batcher(Duration.ofMinutes(1), 2, this::upperCase);
+
+        final CompletableFuture<String> a = batcher.load("a");
+        final CompletableFuture<String> b = batcher.load("b");
+
+        assertEquals("A", a.get(1, TimeUnit.SECONDS));
+        assertEquals("B", b.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of("test-batcher"), loaderThreads);
+    }
+
+    @Test
+    void resolvesKeysMissingFromTheLoadedMapToNull() throws Exception {
+        batcher = batcher(Duration.ofMillis(1), 100, keys -> CompletableFuture.completedFuture(Map.of()));
+
+        assertNull(batcher.load("a").get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failsEveryCallerOfAFailedBatch() {
+        final IllegalStateException failure = new IllegalStateException("upstream down");
+        batcher = batcher(Duration.ofMillis(20), 100, keys -> CompletableFuture.failedFuture(failure));
+
+        final CompletableFuture<String> a = batcher.load("a");
+        final CompletableFuture<String> b = batcher.load("b");
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> a.get(1, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> b.get(1, TimeUnit.SECONDS)).getCause());
+    }
+
+    @Test
+    void failsTheBatchWhenTheLoaderThrows() {
+        batcher = batcher(Duration.ofMillis(1), 100, keys -> {
+            throw new IllegalStateException("bad request");
+        });
+
+        final ExecutionException e = assertThrows(ExecutionException.class,
+                () -> batcher.load("a").get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void oneCallerCancellingLeavesTheOthersWaitingOnTheSameKey() throws Exception {
+        final CompletableFuture<Map<String, String>> upstream = new CompletableFuture<>();
+        batcher = batcher(Duration.ofMillis(1), 100, keys -> upstream);
+
+        final CompletableFuture<String> cancelled = batcher.load("a");
+        final CompletableFuture<String> waiting = batcher.load("a");
+        cancelled.cancel(true);
+        upstream.complete(Map.of("a", "A"));
+
+        assertEquals("A", waiting.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closeFlushesPendingKeys() throws Exception {
+        batcher = batcher(Duration.ofMinutes(1), 100, this::upperCase);
+
+        final CompletableFuture<String> a = batcher.load("a");
+        assertFalse(a.isDone());
+        batcher.close();
+        batcher = null;
+
+        assertEquals("A", a.get(1, TimeUnit.SECONDS));
+    }
+
+    private RequestBatcher<String, String> batcher(
+            final Duration window,
+            final int maxBatchSize,
+            final Function<Set<String>, CompletableFuture<Map<String, String>>> loader
+    ) {
+        return new RequestBatcher<>("test", window, maxBatchSize, keys -> {
+            batches.add(Set.copyOf(keys));
+            loaderThreads.add(Thread.currentThread().getName());
+            return loader.apply(keys);
+        });
+    }
+
+    private CompletableFuture<Map<String, String>> upperCase(final Set<String> keys) {
+        final Map<String, String> values = new HashMap<>();
+        keys.forEach(key -> values.put(key, key.toUpperCase()));
+        return CompletableFuture.completedFuture(values);
+    }
+}
@@ -0,0 +1,121 @@
+package com.unfinitas.common.replica;
+
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.LocationDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationCatalogReplicaTest {
+
+    private static final List<LocationDTO> CATALOG = List.of(
+            stop("1", "Keskustori H", "0001"),
+            stop("2", "Keskustori", "0002"),
+            stop("3", "Pyynikin kirkko", "0003"),
+            stop("4", "Vanha Keskustori", null),
+            stop("5", "Ylikeskustorinkatu", "0005")
+    );
+
+    private final LocationCatalogReplica replica = new LocationCatalogReplica();
+
+    @Test
+    void answersNothingBeforeTheFirstFullRead() {
+        replica.apply(changes("e1", 3, false, CATALOG));
+
+        assertFalse(replica.isReady());
+        assertNull(replica.lag());
+        assertEquals(Optional.empty(), replica.findByName("Keskustori"));
+
+        replica.apply(changes("e1", 3, true, CATALOG));
+
+        assertTrue(replica.isReady());
+        assertEquals("e1", replica.epoch());
+        assertEquals(3, replica.version());
+        assertEquals(5, replica.size());
+    }
+
+    @Test
+    void appliesDeltasOfTheSameEpochOnTop() {
+        replica.apply(changes("e1", 3, true, CATALOG));
+        replica.apply(changes("e1", 4, false, List.of(stop("3", "Pyynikin kirkko", "0033"), stop("6", "Hervanta", "0006"))));
+
+        assertEquals(4, replica.version());
+        assertEquals(6, replica.size());
+        assertEquals("0033", replica.resolveStopId("pyynikin kirkko"));
+        assertEquals("6", replica.findByStopId("0006").map(LocationDTO::getId).orElseThrow());
+        assertEquals(Optional.empty(), replica.findByStopId("0003"));
+    }
+
+    @Test
+    void ignoresADeltaFromAnotherEpoch() {
+        replica.apply(changes("e1", 3, true, CATALOG));
+        replica.apply(changes("e2", 9, false, List.of(stop("6", "Hervanta", "0006"))));
+
+        assertEquals("e1", replica.epoch());
+        assertEquals(3, replica.version());
+        assertNull(replica.resolveStopId("Hervanta"));
+    }
+
+    @Test
+    void replacesEverythingOnAFullRead() {
+        replica.apply(changes("e1", 3, true, CATALOG));
+        replica.apply(changes("e2", 1, true, List.of(stop("6", "Hervanta", "0006"))));
+
+        assertEquals("e2", replica.epoch());
+        assertEquals(1, replica.size());
+        assertNull(replica.resolveStopId("Keskustori"));
+        assertEquals("0006", replica.resolveStopId("Hervanta"));
+    }
+
+    @Test
+    void findsTheBestNameMatch() {
+        replica.apply(changes("e1", 3, true, CATALOG));
+
+        // Exact, prefix, word prefix and substring, shorter names first within each
+        assertEquals("2", id(replica.findByName(" KESKUSTORI ")));
+        assertEquals("2", id(replica.findByName("kesk")));
+        assertEquals("3", id(replica.findByName("kirk")));
+        assertEquals("4", id(replica.findByName("vanha k")));
+        assertEquals("5", id(replica.findByName("torinkatu")));
+        assertEquals(Optional.empty(), replica.findByName("hervanta"));
+        assertEquals(Optional.empty(), replica.findByName(" "));
+        // A name without a stop resolves to no stop ID
+        assertNull(replica.resolveStopId("Vanha Keskustori"));
+    }
+
+    @Test
+    void keepsHandedOutLocationsUnchanged() {
+        replica.apply(changes("e1", 3, true, CATALOG));
+        final Collection<LocationDTO> locations = replica.locations();
+
+        replica.apply(changes("e1", 4, false, List.of(stop("6", "Hervanta", "0006"))));
+
+        assertEquals(5, locations.size());
+        assertThrows(UnsupportedOperationException.class, locations::clear);
+    }
+
+    private static LocationChangesDTO changes(
+            final String epoch,
+            final long version,
+            final boolean full,
+            final List<LocationDTO> upserts
+    ) {
+        return LocationChangesDTO.builder().epoch(epoch).version(version).full(full).upserts(upserts).build();
+    }
+
+    private static LocationDTO stop(final String id, final String name, final String stopId) {
+        return LocationDTO.builder().id(id).name(name).stopId(stopId).type("STOP").build();
+    }
+
+    private static String id(final Optional<LocationDTO> location) {
+        return location.map(LocationDTO::getId).orElse(null);
+    }
+}
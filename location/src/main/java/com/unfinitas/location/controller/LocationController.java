@@ -1,25 +1,76 @@
 package com.unfinitas.location.controller;
 
+import com.unfinitas.common.dto.LocationChangesDTO;
 import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.LocationPageDTO;
+import com.unfinitas.common.dto.NearbyLocationDTO;
+import com.unfinitas.common.dto.StopResolutionDTO;
+import com.unfinitas.common.dto.StopResolutionRequestDTO;
 import com.unfinitas.location.service.LocationService;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/locations")
-@RequiredArgsConstructor
 public class LocationController {
 
+    private static final int MAX_NEARBY = 100;
+    private static final int MAX_PAGE = 1000;
+    private static final int MAX_BATCH = 500;
+
     private final LocationService locationService;
+    private final double maxNearbyRadius;
+
+    public LocationController(
+            final LocationService locationService,
+            @Value("${tripmind.search.nearby.max-radius}") final double maxNearbyRadius
+    ) {
+        this.locationService = locationService;
+        this.maxNearbyRadius = maxNearbyRadius;
+    }
 
     @GetMapping("/search")
     public ResponseEntity<List<LocationDTO>> search(@RequestParam final String name) {
         return ResponseEntity.ok(locationService.searchByName(name));
     }
 
+    @PostMapping("/resolve/batch")
+    public ResponseEntity<StopResolutionDTO> resolveBatch(@RequestBody final StopResolutionRequestDTO request) {
+        final List<String> names = request.getNames() == null ? List.of() : request.getNames();
+        final List<String> stopIds = request.getStopIds() == null ? List.of() : request.getStopIds();
+        if (names.size() + stopIds.size() > MAX_BATCH) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationService.resolveBatch(names, stopIds));
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<LocationChangesDTO> changes(
+            @RequestParam(defaultValue = "0") final long since,
+            @RequestParam(required = false) final String epoch
+    ) {
+        return ResponseEntity.ok(locationService.changesSince(since, epoch));
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyLocationDTO>> nearby(
+            @RequestParam final double lat,
+            @RequestParam final double lon,
+            @RequestParam(defaultValue = "1000") final double radius,
+            @RequestParam(defaultValue = "10") final int k
+    ) {
+        // Written so that NaN fails every check
+        if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180 && radius > 0 && radius <= maxNearbyRadius) || k <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationService.findNearbyStops(lat, lon, radius, Math.min(k, MAX_NEARBY)));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<LocationDTO> getById(@PathVariable final String id) {
         return locationService.getById(id)
@@ -39,6 +90,22 @@ public class LocationController {
         return ResponseEntity.ok(locationService.getAllStops());
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<LocationDTO> streamAllStops() {
+        return locationService.streamAllStops();
+    }
+
+    @GetMapping("/stops")
+    public ResponseEntity<LocationPageDTO> getStopsPage(
+            @RequestParam(required = false) final String after,
+            @RequestParam(defaultValue = "100") final int limit
+    ) {
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationService.getStopsPage(after, Math.min(limit, MAX_PAGE)));
+    }
+
     @PostMapping
     public ResponseEntity<LocationDTO> create(@RequestBody final LocationDTO location) {
         return ResponseEntity.ok(locationService.save(location));
@@ -0,0 +1,191 @@
+package com.unfinitas.location.importer;
+
+import com.unfinitas.location.entity.Location;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Streams the stops of a GTFS feed ({@code stops.txt}, or a zip containing it) into the
+ * {@code locations} table in one pass. Rows are upserted with batched JDBC {@code MERGE}s keyed on
+ * an ID derived from the stop ID, so re-importing a feed updates stops in place instead of
+ * duplicating them. Only one batch of rows is held in memory at a time.
+ */
+@Component
+@Slf4j
+public class GtfsStopImporter {
+
+    private final LocationBatchWriter writer;
+    private final String path;
+    private final String feedPrefix;
+    private final int batchSize;
+
+    public GtfsStopImporter(
+            final LocationBatchWriter writer,
+            @Value("${tripmind.import.stops.path}") final String path,
+            @Value("${tripmind.import.stops.feed-id}") final String feedId,
+            @Value("${tripmind.import.stops.batch-size}") final int batchSize
+    ) {
+        this.writer = writer;
+        this.path = path;
+        this.feedPrefix = feedId.isBlank() ? "" : feedId + ":";
+        this.batchSize = batchSize;
+    }
+
+    public boolean isConfigured() {
+        return !path.isBlank();
+    }
+
+    /**
+     * Imports the configured feed and returns the number of stops written.
+     */
+    public long importConfiguredFeed() throws IOException {
+        final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        final long started = System.nanoTime();
+
+        final Path source = Path.of(path);
+        final long rows;
+        if (path.endsWith(".zip")) {
+            try (ZipFile zip = new ZipFile(source.toFile())) {
+                final ZipEntry entry = zip.getEntry("stops.txt");
+                if (entry == null) {
+                    throw new IOException("No stops.txt in " + path);
+                }
+                rows = importStops(zip.getInputStream(entry));
+            }
+        } else {
+            rows = importStops(Files.newInputStream(Files.isDirectory(source) ? source.resolve("stops.txt") : source));
+        }
+
+        final double seconds = (System.nanoTime() - started) / 1e9;
+        final long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        log.info("Imported {} stops from {} in {} ms ({} rows/s, peak heap ~{} MB)",
+                rows, path, Math.round(seconds * 1000), Math.round(rows / Math.max(seconds, 1e-9)),
+                peakHeap / (1024 * 1024));
+        return rows;
+    }
+
+    private long importStops(final InputStream in) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            final String header = reader.readLine();
+            if (header == null) {
+                return 0;
+            }
+            final List<String> columns = split(!header.isEmpty() && header.charAt(0) == '\uFEFF' ? header.substring(1) : header);
+            final int idColumn = required(columns, "stop_id");
+            final int nameColumn = required(columns, "stop_name");
+            final int latColumn = required(columns, "stop_lat");
+            final int lonColumn = required(columns, "stop_lon");
+            final int typeColumn = columns.indexOf("location_type");
+
+            final List<Object[]> batch = new ArrayList<>(batchSize);
+            long rows = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                final List<String> fields = split(line);
+                // Stations, entrances and nodes have no departures of their own
+                final String locationType = field(fields, typeColumn);
+                if (!locationType.isEmpty() && !"0".equals(locationType)) {
+                    continue;
+                }
+
+                final String stopId = feedPrefix + field(fields, idColumn);
+                batch.add(LocationBatchWriter.row(
+                        locationId(stopId),
+                        field(fields, nameColumn),
+                        stopId,
+                        parseCoordinate(field(fields, latColumn)),
+                        parseCoordinate(field(fields, lonColumn)),
+                        Location.LocationType.STOP.name()
+                ));
+                if (batch.size() == batchSize) {
+                    rows += flush(batch);
+                }
+            }
+            return rows + flush(batch);
+        }
+    }
+
+    private int flush(final List<Object[]> batch) {
+        writer.upsert(batch);
+        final int written = batch.size();
+        batch.clear();
+        return written;
+    }
+
+    /**
+     * The same stop always gets the same row ID, which is what makes the {@code MERGE} an upsert.
+     */
+    static String locationId(final String stopId) {
+        return UUID.nameUUIDFromBytes(("gtfs-stop:" + stopId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static Double parseCoordinate(final String value) {
+        return value.isEmpty() ? null : Double.valueOf(value);
+    }
+
+    private static int required(final List<String> columns, final String name) throws IOException {
+        final int index = columns.indexOf(name);
+        if (index < 0) {
+            throw new IOException("stops.txt has no " + name + " column");
+        }
+        return index;
+    }
+
+    private static String field(final List<String> fields, final int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : "";
+    }
+
+    /**
+     * One CSV record per line, with RFC 4180 quoting ({@code "a, b"}, {@code ""} for a quote).
+     */
+    private static List<String> split(final String line) {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().strip());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().strip());
+        return fields;
+    }
+}
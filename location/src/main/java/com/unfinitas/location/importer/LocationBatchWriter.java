@@ -0,0 +1,53 @@
+package com.unfinitas.location.importer;
+
+import com.unfinitas.common.dto.LocationDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batched JDBC upserts into {@code locations}, bypassing JPA for bulk loads. Rows are keyed on
+ * {@code id}, so writing a location again updates it in place.
+ */
+@Component
+@RequiredArgsConstructor
+public class LocationBatchWriter {
+
+    private static final String UPSERT = """
+            MERGE INTO locations (id, name, stop_id, latitude, longitude, type)
+            KEY (id)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Writes rows shaped by {@link #row} as one JDBC batch.
+     */
+    public void upsert(final List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, rows);
+        }
+    }
+
+    public void upsertAll(final List<LocationDTO> locations, final int batchSize) {
+        final List<Object[]> batch = new ArrayList<>(batchSize);
+        for (final LocationDTO location : locations) {
+            batch.add(row(location.getId(), location.getName(), location.getStopId(),
+                    location.getLatitude(), location.getLongitude(), location.getType()));
+            if (batch.size() == batchSize) {
+                upsert(batch);
+                batch.clear();
+            }
+        }
+        upsert(batch);
+    }
+
+    public static Object[] row(final String id, final String name, final String stopId,
+                               final Double latitude, final Double longitude, final String type) {
+        return new Object[]{id, name, stopId, latitude, longitude, type};
+    }
+}
@@ -0,0 +1,307 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Typo-tolerant name matching for when a plain substring search finds nothing: "Keskustorii",
+ * "Hervannan", "Lielahdessa" or names typed without ä/ö.
+ * <p>
+ * Names are folded (lower case, diacritics and punctuation removed) and indexed both as they are and
+ * with a Finnish case ending stripped from the last word. Lookup is symmetric delete: every variant
+ * of a term's first {@value #PREFIX_LENGTH} characters with up to {@code max-distance} characters
+ * deleted points back to the term, so a query only generates its own deletes and verifies the few
+ * terms they hit with an edit distance. Alternative names from {@code location-aliases.txt} are
+ * indexed the same way and resolve to the catalog name they stand for.
+ */
+@Component
+public class FuzzyNameMatcher {
+
+    private static final int PREFIX_LENGTH = 7;
+    private static final int MIN_STEM_LENGTH = 4;
+    private static final List<String> CASE_ENDINGS = List.of(
+            "ssa", "sta", "lla", "lta", "lle", "ksi", "na", "n"
+    );
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final int maxDistance;
+    private final int maxResults;
+
+    /**
+     * Folded alias to the folded catalog name it stands for.
+     */
+    private final Map<String, String> aliases;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Folded (and stemmed) name to the locations carrying it.
+     */
+    private final Map<String, List<LocationDTO>> terms = new HashMap<>();
+
+    /**
+     * Deletes of every term's prefix to the terms they came from.
+     */
+    private final Map<String, List<String>> deletes = new HashMap<>();
+
+    /**
+     * Location id to the terms it is indexed under, so a renamed location leaves its old name.
+     */
+    private final Map<String, List<String>> formsById = new HashMap<>();
+
+    public FuzzyNameMatcher(
+            @Value("${tripmind.search.fuzzy.max-distance}") final int maxDistance,
+            @Value("${tripmind.search.fuzzy.max-results}") final int maxResults
+    ) {
+        this.maxDistance = maxDistance;
+        this.maxResults = maxResults;
+        this.aliases = loadAliases();
+    }
+
+    public void rebuild(final Collection<LocationDTO> all) {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            deletes.clear();
+            formsById.clear();
+            aliases.keySet().forEach(this::addTerm);
+            for (final LocationDTO location : all) {
+                putLocked(location);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(final LocationDTO location) {
+        lock.writeLock().lock();
+        try {
+            putLocked(location);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Locations whose name, or an alias of it, is within the edit distance of the query, closest
+     * first and shorter names first among equally close ones.
+     */
+    public List<LocationDTO> search(final String query) {
+        final String folded = fold(query);
+        if (folded.isEmpty()) {
+            return List.of();
+        }
+
+        final Map<LocationDTO, Integer> best = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (final String form : forms(folded)) {
+                for (final String term : candidates(form)) {
+                    final int distance = distance(form, term, maxDistance);
+                    if (distance > maxDistance) {
+                        continue;
+                    }
+                    for (final LocationDTO location : locationsOf(term)) {
+                        best.merge(location, distance, Math::min);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return best.entrySet().stream()
+                .sorted(Map.Entry.<LocationDTO, Integer>comparingByValue()
+                        .thenComparing(entry -> entry.getKey().getName() == null ? 0 : entry.getKey().getName().length()))
+                .limit(maxResults)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Lower case without diacritics, punctuation or repeated spaces: "Järnvägs-stationen" to "jarnvags stationen".
+     */
+    static String fold(final String name) {
+        if (name == null) {
+            return "";
+        }
+        final String decomposed = Normalizer.normalize(name.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return SEPARATORS.matcher(MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ").strip();
+    }
+
+    /**
+     * The folded name and, if its last word ends in a case ending, the name without it.
+     */
+    static List<String> forms(final String folded) {
+        final int lastWord = folded.lastIndexOf(' ') + 1;
+        for (final String ending : CASE_ENDINGS) {
+            if (folded.endsWith(ending) && folded.length() - lastWord - ending.length() >= MIN_STEM_LENGTH) {
+                return List.of(folded, folded.substring(0, folded.length() - ending.length()));
+            }
+        }
+        return List.of(folded);
+    }
+
+    private void putLocked(final LocationDTO location) {
+        final List<String> forms = forms(fold(location.getName()));
+        if (location.getId() != null) {
+            final List<String> previous = formsById.put(location.getId(), forms);
+            if (previous != null) {
+                previous.forEach(form -> removeLocked(form, location.getId()));
+            }
+        }
+        for (final String form : forms) {
+            terms.computeIfAbsent(form, this::addTerm).add(location);
+        }
+    }
+
+    private void removeLocked(final String form, final String id) {
+        final List<LocationDTO> carriers = terms.get(form);
+        if (carriers == null) {
+            return;
+        }
+        carriers.removeIf(existing -> id.equals(existing.getId()));
+        if (carriers.isEmpty() && !aliases.containsKey(form)) {
+            terms.remove(form);
+            for (final String variant : deletesOf(form)) {
+                final List<String> sources = deletes.get(variant);
+                if (sources != null && sources.remove(form) && sources.isEmpty()) {
+                    deletes.remove(variant);
+                }
+            }
+        }
+    }
+
+    private List<LocationDTO> addTerm(final String term) {
+        for (final String variant : deletesOf(term)) {
+            final List<String> sources = deletes.computeIfAbsent(variant, key -> new ArrayList<>(1));
+            if (!sources.contains(term)) {
+                sources.add(term);
+            }
+        }
+        return new ArrayList<>(1);
+    }
+
+    private Set<String> candidates(final String form) {
+        final Set<String> found = new HashSet<>();
+        for (final String variant : deletesOf(form)) {
+            final List<String> sources = deletes.get(variant);
+            if (sources != null) {
+                found.addAll(sources);
+            }
+        }
+        return found;
+    }
+
+    private List<LocationDTO> locationsOf(final String term) {
+        final String canonical = aliases.get(term);
+        if (canonical != null) {
+            final List<LocationDTO> result = new ArrayList<>();
+            for (final String form : forms(canonical)) {
+                result.addAll(terms.getOrDefault(form, List.of()));
+            }
+            return result;
+        }
+        return terms.getOrDefault(term, List.of());
+    }
+
+    /**
+     * The prefix of the term and everything reachable from it by deleting up to {@code maxDistance} characters.
+     */
+    private Set<String> deletesOf(final String term) {
+        final Set<String> variants = new HashSet<>();
+        final String prefix = term.length() > PREFIX_LENGTH ? term.substring(0, PREFIX_LENGTH) : term;
+        variants.add(prefix);
+        addDeletes(prefix, maxDistance, variants);
+        return variants;
+    }
+
+    private static void addDeletes(final String word, final int remaining, final Set<String> variants) {
+        if (remaining == 0 || word.length() <= 1) {
+            return;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            final String deleted = word.substring(0, i) + word.substring(i + 1);
+            if (variants.add(deleted)) {
+                addDeletes(deleted, remaining - 1, variants);
+            }
+        }
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent transpositions), giving up with
+     * {@code max + 1} as soon as it cannot stay within {@code max}.
+     */
+    static int distance(final String a, final String b, final int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        final int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int rowMin = Integer.MAX_VALUE;
+            for (int j = 1; j <= b.length(); j++) {
+                final int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, d[i - 2][j - 2] + 1);
+                }
+                d[i][j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static Map<String, String> loadAliases() {
+        final Map<String, String> aliases = new HashMap<>();
+        final ClassPathResource resource = new ClassPathResource("location-aliases.txt");
+        if (!resource.exists()) {
+            return aliases;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf('=');
+                if (line.isBlank() || line.startsWith("#") || separator < 0) {
+                    continue;
+                }
+                aliases.put(fold(line.substring(0, separator)), fold(line.substring(separator + 1)));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to read location aliases", e);
+        }
+        return aliases;
+    }
+}
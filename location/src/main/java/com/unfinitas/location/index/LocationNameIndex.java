@@ -0,0 +1,282 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.StopResolutionDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over location names, answering the same case-insensitive substring
+ * queries as {@code LIKE '%name%'} without touching the database.
+ * <p>
+ * Queries of three or more characters intersect the posting lists of their trigrams and verify
+ * the few candidates left; shorter queries scan the normalized names. Results are ranked exact
+ * match first, then name prefix, then word prefix, then any substring, and shorter names before
+ * longer ones within a rank.
+ */
+@Component
+public class LocationNameIndex {
+
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<LocationDTO> locations = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final Map<String, Integer> stopIds = new HashMap<>();
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+
+    /**
+     * Replaces the whole index, e.g. after a bulk load that bypassed {@link #put}.
+     */
+    public void rebuild(final Collection<LocationDTO> all) {
+        lock.writeLock().lock();
+        try {
+            locations.clear();
+            names.clear();
+            ordinals.clear();
+            stopIds.clear();
+            trigrams.clear();
+            for (final LocationDTO location : all) {
+                putLocked(location);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a location, or replaces the indexed copy of one with the same ID.
+     */
+    public void put(final LocationDTO location) {
+        lock.writeLock().lock();
+        try {
+            putLocked(location);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<LocationDTO> search(final String query) {
+        final String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return List.of();
+        }
+
+        final List<Match> matches;
+        lock.readLock().lock();
+        try {
+            matches = matchesLocked(needle);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Match.RELEVANCE);
+        return matches.stream().map(Match::location).toList();
+    }
+
+    /**
+     * The best match for every name and the location of every stop ID, all under one read lock so
+     * the whole batch sees the same index. Names and stop IDs without a match are left out.
+     */
+    public StopResolutionDTO resolve(final Collection<String> queries, final Collection<String> stopIdQueries) {
+        final Map<String, LocationDTO> byName = new LinkedHashMap<>();
+        final Map<String, LocationDTO> byStopId = new LinkedHashMap<>();
+
+        lock.readLock().lock();
+        try {
+            for (final String query : queries) {
+                final String needle = normalize(query);
+                if (!needle.isEmpty()) {
+                    matchesLocked(needle).stream()
+                            .min(Match.RELEVANCE)
+                            .ifPresent(best -> byName.put(query, best.location()));
+                }
+            }
+            for (final String stopId : stopIdQueries) {
+                final Integer ordinal = stopIds.get(stopId);
+                if (ordinal != null && stopId.equals(locations.get(ordinal).getStopId())) {
+                    byStopId.put(stopId, locations.get(ordinal));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return StopResolutionDTO.builder().byName(byName).byStopId(byStopId).build();
+    }
+
+    private List<Match> matchesLocked(final String needle) {
+        final List<Match> matches = new ArrayList<>();
+        if (needle.length() < 3) {
+            for (int ordinal = 0; ordinal < names.size(); ordinal++) {
+                collect(ordinal, needle, matches);
+            }
+            return matches;
+        }
+
+        final Postings[] lists = postingsOf(needle);
+        if (lists != null) {
+            final Postings shortest = lists[0];
+            for (int i = 0; i < shortest.size; i++) {
+                final int ordinal = shortest.ids[i];
+                if (inAll(lists, ordinal)) {
+                    collect(ordinal, needle, matches);
+                }
+            }
+        }
+        return matches;
+    }
+
+    static String normalize(final String name) {
+        return name == null ? "" : name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private void putLocked(final LocationDTO location) {
+        final String name = normalize(location.getName());
+        Integer ordinal = location.getId() == null ? null : ordinals.get(location.getId());
+        if (ordinal == null) {
+            ordinal = locations.size();
+            locations.add(location);
+            names.add(name);
+            if (location.getId() != null) {
+                ordinals.put(location.getId(), ordinal);
+            }
+        } else {
+            // Postings of the old name stay behind; candidates are verified against the current name
+            locations.set(ordinal, location);
+            names.set(ordinal, name);
+        }
+
+        if (location.getStopId() != null) {
+            stopIds.put(location.getStopId(), ordinal);
+        }
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            trigrams.computeIfAbsent(trigram(name, i), key -> new Postings()).add(ordinal);
+        }
+    }
+
+    /**
+     * Posting lists of every trigram in the needle, shortest first, or {@code null} when some
+     * trigram occurs in no name at all.
+     */
+    private Postings[] postingsOf(final String needle) {
+        final Postings[] lists = new Postings[needle.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = trigrams.get(trigram(needle, i));
+            if (lists[i] == null) {
+                return null;
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(postings -> postings.size));
+        return lists;
+    }
+
+    private static boolean inAll(final Postings[] lists, final int ordinal) {
+        for (int i = 1; i < lists.length; i++) {
+            if (!lists[i].contains(ordinal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void collect(final int ordinal, final String needle, final List<Match> matches) {
+        final String name = names.get(ordinal);
+        final int rank = rank(name, needle);
+        if (rank >= 0) {
+            matches.add(new Match(locations.get(ordinal), name, rank));
+        }
+    }
+
+    static int rank(final String name, final String needle) {
+        int at = name.indexOf(needle);
+        if (at < 0) {
+            return -1;
+        }
+        if (at == 0) {
+            return name.length() == needle.length() ? EXACT : PREFIX;
+        }
+        while (at > 0) {
+            if (!Character.isLetterOrDigit(name.charAt(at - 1))) {
+                return WORD_PREFIX;
+            }
+            at = name.indexOf(needle, at + 1);
+        }
+        return SUBSTRING;
+    }
+
+    static long trigram(final String text, final int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    record Match(
+            LocationDTO location,
+            String name,
+            int rank
+    ) {
+        static final Comparator<Match> RELEVANCE = Comparator.comparingInt(Match::rank)
+                .thenComparingInt(match -> match.name().length())
+                .thenComparing(Match::name);
+    }
+
+    /**
+     * Sorted, duplicate-free location ordinals.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(final int id) {
+            if (size > 0 && ids[size - 1] < id) {
+                append(id);
+                return;
+            }
+            final int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            final int insertAt = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        boolean contains(final int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void append(final int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
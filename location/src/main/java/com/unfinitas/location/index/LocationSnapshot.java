@@ -0,0 +1,385 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.NearbyLocationDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only location catalog in one memory-mapped file: fixed-width records, IDs and stop IDs as
+ * sorted lookup tables, and a trigram directory over normalized names. Opening it only validates
+ * the header, so lookups can be served right away and the operating system pages in what they touch.
+ * <p>
+ * Layout (big-endian): a header of counts and section offsets, then the records
+ * ({@value #RECORD_BYTES} bytes each: offsets of id, name, normalized name and stop ID in the string
+ * pool, latitude, longitude, type ordinal), record numbers sorted by ID and by stop ID, sorted
+ * trigram keys with offsets into one postings array of record numbers, and the string pool of
+ * length-prefixed UTF-8 strings.
+ */
+public final class LocationSnapshot {
+
+    private static final int MAGIC = 0x544D_4C53;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * 12;
+    private static final int RECORD_BYTES = 4 * 4 + 8 + 8 + 4;
+    private static final int NONE = -1;
+    private static final String[] TYPES = {"STOP", "ADDRESS", "POI"};
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int idCount;
+    private final int stopIdCount;
+    private final int trigramCount;
+    private final int recordsAt;
+    private final int byIdAt;
+    private final int byStopIdAt;
+    private final int trigramKeysAt;
+    private final int trigramOffsetsAt;
+    private final int postingsAt;
+
+    private LocationSnapshot(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a location snapshot (version " + VERSION + ")");
+        }
+        this.count = buffer.getInt(8);
+        this.stopIdCount = buffer.getInt(12);
+        this.trigramCount = buffer.getInt(16);
+        this.idCount = buffer.getInt(20);
+        this.recordsAt = buffer.getInt(24);
+        this.byIdAt = buffer.getInt(28);
+        this.byStopIdAt = buffer.getInt(32);
+        this.trigramKeysAt = buffer.getInt(36);
+        this.trigramOffsetsAt = buffer.getInt(40);
+        this.postingsAt = buffer.getInt(44);
+    }
+
+    public static LocationSnapshot open(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new LocationSnapshot(mapped);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public LocationDTO get(final int record) {
+        final int at = recordsAt + record * RECORD_BYTES;
+        final double lat = buffer.getDouble(at + 16);
+        final double lon = buffer.getDouble(at + 24);
+        final int type = buffer.getInt(at + 32);
+        return LocationDTO.builder()
+                .id(string(buffer.getInt(at)))
+                .name(string(buffer.getInt(at + 4)))
+                .stopId(string(buffer.getInt(at + 12)))
+                .latitude(Double.isNaN(lat) ? null : lat)
+                .longitude(Double.isNaN(lon) ? null : lon)
+                .type(type == NONE ? null : TYPES[type])
+                .build();
+    }
+
+    public LocationDTO findById(final String id) {
+        final int record = find(byIdAt, idCount, 0, id);
+        return record < 0 ? null : get(record);
+    }
+
+    public LocationDTO findByStopId(final String stopId) {
+        final int record = find(byStopIdAt, stopIdCount, 12, stopId);
+        return record < 0 ? null : get(record);
+    }
+
+    public List<LocationDTO> stops() {
+        final List<LocationDTO> stops = new ArrayList<>();
+        for (int record = 0; record < count; record++) {
+            if (buffer.getInt(recordsAt + record * RECORD_BYTES + 32) == 0) {
+                stops.add(get(record));
+            }
+        }
+        return stops;
+    }
+
+    /**
+     * Same matching and ordering as {@link LocationNameIndex#search}, read straight from the file.
+     */
+    public List<LocationDTO> search(final String query) {
+        final String needle = LocationNameIndex.normalize(query);
+        if (needle.isEmpty()) {
+            return List.of();
+        }
+
+        final List<LocationNameIndex.Match> matches = new ArrayList<>();
+        if (needle.length() < 3) {
+            for (int record = 0; record < count; record++) {
+                collect(record, needle, matches);
+            }
+        } else {
+            final int[][] ranges = new int[needle.length() - 2][];
+            for (int i = 0; i < ranges.length; i++) {
+                final int slot = findTrigram(LocationNameIndex.trigram(needle, i));
+                if (slot < 0) {
+                    return List.of();
+                }
+                ranges[i] = new int[]{
+                        buffer.getInt(trigramOffsetsAt + slot * 4),
+                        buffer.getInt(trigramOffsetsAt + (slot + 1) * 4)
+                };
+            }
+            Arrays.sort(ranges, Comparator.comparingInt(range -> range[1] - range[0]));
+
+            for (int p = ranges[0][0]; p < ranges[0][1]; p++) {
+                final int record = buffer.getInt(postingsAt + p * 4);
+                if (inAll(ranges, record)) {
+                    collect(record, needle, matches);
+                }
+            }
+        }
+
+        matches.sort(LocationNameIndex.Match.RELEVANCE);
+        return matches.stream().map(LocationNameIndex.Match::location).toList();
+    }
+
+    /**
+     * Nearest stops by scanning every record; only meant for the short window before the spatial
+     * index is built.
+     */
+    public List<NearbyLocationDTO> nearest(final double lat, final double lon, final double radiusMeters, final int k) {
+        final List<NearbyLocationDTO> found = new ArrayList<>();
+        for (int record = 0; record < count; record++) {
+            final int at = recordsAt + record * RECORD_BYTES;
+            if (buffer.getInt(at + 32) != 0 || Double.isNaN(buffer.getDouble(at + 16))) {
+                continue;
+            }
+            final double distance = StopSpatialIndex.haversine(lat, lon, buffer.getDouble(at + 16), buffer.getDouble(at + 24));
+            if (distance <= radiusMeters) {
+                found.add(NearbyLocationDTO.builder().location(get(record)).distanceMeters(distance).build());
+            }
+        }
+        found.sort(Comparator.comparingDouble(NearbyLocationDTO::getDistanceMeters));
+        return found.subList(0, Math.min(k, found.size()));
+    }
+
+    /**
+     * Writes the catalog to a temporary file next to {@code path} and moves it into place, so a
+     * snapshot that is being read is never seen half written.
+     */
+    public static void write(final Path path, final List<LocationDTO> locations) throws IOException {
+        final int n = locations.size();
+        final StringPool strings = new StringPool();
+        final int[] ids = new int[n];
+        final int[] names = new int[n];
+        final int[] normalized = new int[n];
+        final int[] stopIds = new int[n];
+        final TreeMap<Long, List<Integer>> trigrams = new TreeMap<>();
+
+        for (int record = 0; record < n; record++) {
+            final LocationDTO location = locations.get(record);
+            final String name = LocationNameIndex.normalize(location.getName());
+            ids[record] = strings.add(location.getId());
+            names[record] = strings.add(location.getName());
+            normalized[record] = strings.add(name);
+            stopIds[record] = strings.add(location.getStopId());
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                final List<Integer> postings = trigrams.computeIfAbsent(LocationNameIndex.trigram(name, i), key -> new ArrayList<>());
+                if (postings.isEmpty() || postings.getLast() != record) {
+                    postings.add(record);
+                }
+            }
+        }
+
+        final Integer[] byId = sortedRecords(n, record -> locations.get(record).getId());
+        final Integer[] byStopId = sortedRecords(n, record -> locations.get(record).getStopId());
+        final int postingsCount = trigrams.values().stream().mapToInt(List::size).sum();
+
+        final int recordsAt = HEADER_BYTES;
+        final int byIdAt = recordsAt + n * RECORD_BYTES;
+        final int byStopIdAt = byIdAt + byId.length * 4;
+        final int trigramKeysAt = byStopIdAt + byStopId.length * 4;
+        final int trigramOffsetsAt = trigramKeysAt + trigrams.size() * 8;
+        final int postingsAt = trigramOffsetsAt + (trigrams.size() + 1) * 4;
+        final int stringsAt = postingsAt + postingsCount * 4;
+
+        final ByteBuffer out = ByteBuffer.allocate(stringsAt + strings.size());
+        out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(byStopId.length).putInt(trigrams.size()).putInt(byId.length)
+                .putInt(recordsAt).putInt(byIdAt).putInt(byStopIdAt).putInt(trigramKeysAt).putInt(trigramOffsetsAt)
+                .putInt(postingsAt);
+
+        for (int record = 0; record < n; record++) {
+            final LocationDTO location = locations.get(record);
+            out.putInt(absolute(ids[record], stringsAt))
+                    .putInt(absolute(names[record], stringsAt))
+                    .putInt(absolute(normalized[record], stringsAt))
+                    .putInt(absolute(stopIds[record], stringsAt))
+                    .putDouble(location.getLatitude() == null ? Double.NaN : location.getLatitude())
+                    .putDouble(location.getLongitude() == null ? Double.NaN : location.getLongitude())
+                    .putInt(location.getType() == null ? NONE : Arrays.asList(TYPES).indexOf(location.getType()));
+        }
+        for (final int record : byId) {
+            out.putInt(record);
+        }
+        for (final int record : byStopId) {
+            out.putInt(record);
+        }
+        trigrams.keySet().forEach(out::putLong);
+        int offset = 0;
+        for (final List<Integer> postings : trigrams.values()) {
+            out.putInt(offset);
+            offset += postings.size();
+        }
+        out.putInt(offset);
+        trigrams.values().forEach(postings -> postings.forEach(out::putInt));
+        out.put(strings.bytes());
+
+        final Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        Files.write(temporary, out.array());
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void collect(final int record, final String needle, final List<LocationNameIndex.Match> matches) {
+        final String name = string(buffer.getInt(recordsAt + record * RECORD_BYTES + 8));
+        final int rank = LocationNameIndex.rank(name, needle);
+        if (rank >= 0) {
+            matches.add(new LocationNameIndex.Match(get(record), name, rank));
+        }
+    }
+
+    private boolean inAll(final int[][] ranges, final int record) {
+        for (int i = 1; i < ranges.length; i++) {
+            if (!containsPosting(ranges[i][0], ranges[i][1], record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean containsPosting(int low, int high, final int record) {
+        high--;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int value = buffer.getInt(postingsAt + mid * 4);
+            if (value < record) {
+                low = mid + 1;
+            } else if (value > record) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findTrigram(final long key) {
+        int low = 0;
+        int high = trigramCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long value = buffer.getLong(trigramKeysAt + mid * 8);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Binary search of a table of record numbers sorted by the string at {@code field} in each record.
+     */
+    private int find(final int tableAt, final int size, final int field, final String key) {
+        if (key == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int record = buffer.getInt(tableAt + mid * 4);
+            final int comparison = string(buffer.getInt(recordsAt + record * RECORD_BYTES + field)).compareTo(key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private String string(final int at) {
+        if (at == NONE) {
+            return null;
+        }
+        final byte[] bytes = new byte[buffer.getInt(at)];
+        buffer.get(at + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int absolute(final int poolOffset, final int stringsAt) {
+        return poolOffset == NONE ? NONE : stringsAt + poolOffset;
+    }
+
+    /**
+     * Numbers of the records that have a key, sorted by it.
+     */
+    private static Integer[] sortedRecords(final int n, final IntFunction<String> key) {
+        return IntStream.range(0, n)
+                .filter(record -> key.apply(record) != null)
+                .boxed()
+                .sorted(Comparator.comparing(key::apply))
+                .toArray(Integer[]::new);
+    }
+
+    /**
+     * Length-prefixed UTF-8 strings, each distinct string stored once.
+     */
+    private static final class StringPool {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int add(final String value) {
+            if (value == null) {
+                return NONE;
+            }
+            return offsets.computeIfAbsent(value, key -> {
+                final int offset = bytes.size();
+                final byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+                bytes.writeBytes(ByteBuffer.allocate(4).putInt(utf8.length).array());
+                bytes.writeBytes(utf8);
+                return offset;
+            });
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        byte[] bytes() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Owns the snapshot file at {@code tripmind.snapshot.path}: maps it at startup so lookups can be
+ * served before the database and heap indexes are ready, and rewrites it whenever the catalog is
+ * reindexed. An empty path disables snapshots.
+ */
+@Component
+@Slf4j
+public class LocationSnapshotStore {
+
+    private final Path path;
+    private volatile LocationSnapshot current;
+
+    public LocationSnapshotStore(@Value("${tripmind.snapshot.path}") final String path) {
+        this.path = path.isBlank() ? null : Path.of(path);
+    }
+
+    /**
+     * Maps the snapshot if there is a valid one; {@link #current()} serves it until {@link #release()}.
+     */
+    public boolean open() {
+        if (path == null || !Files.isRegularFile(path)) {
+            return false;
+        }
+        try {
+            final long started = System.nanoTime();
+            current = LocationSnapshot.open(path);
+            log.info("Mapped location snapshot {} with {} locations in {} µs",
+                    path, current.size(), (System.nanoTime() - started) / 1_000);
+            return true;
+        } catch (final IOException e) {
+            log.warn("Ignoring unreadable location snapshot {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    public LocationSnapshot current() {
+        return current;
+    }
+
+    public void release() {
+        current = null;
+    }
+
+    public void save(final List<LocationDTO> locations) {
+        if (path == null) {
+            return;
+        }
+        try {
+            final long started = System.nanoTime();
+            LocationSnapshot.write(path, locations);
+            log.info("Wrote location snapshot {} with {} locations in {} ms",
+                    path, locations.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (final IOException e) {
+            log.warn("Failed to write location snapshot {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.NearbyLocationDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Uniform latitude/longitude grid over stop coordinates for k-nearest queries.
+ * <p>
+ * Stops are held in primitive arrays grouped by grid cell (sorted cell keys pointing into one
+ * ordering of all stops), so a query only looks at the cells around the point, ring by ring, and
+ * stops as soon as no unvisited cell can hold anything closer than what it already found. The
+ * arrays form an immutable snapshot that is swapped on change; readers never lock.
+ */
+@Component
+public class StopSpatialIndex {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_METERS;
+
+    /**
+     * About 1.1 km north-south; a city stop has tens of neighbours per cell, not thousands.
+     */
+    private static final double CELL_DEGREES = 0.01;
+
+    private volatile Grid grid = Grid.of(List.of());
+
+    public void rebuild(final Collection<LocationDTO> all) {
+        grid = Grid.of(all.stream().filter(StopSpatialIndex::indexable).toList());
+    }
+
+    /**
+     * Adds or replaces one stop. This rebuilds the snapshot, which is fine for single saves; bulk
+     * loads should call {@link #rebuild} once instead.
+     */
+    public synchronized void put(final LocationDTO location) {
+        final List<LocationDTO> stops = new ArrayList<>(grid.stops.length + 1);
+        for (final LocationDTO existing : grid.stops) {
+            if (location.getId() == null || !location.getId().equals(existing.getId())) {
+                stops.add(existing);
+            }
+        }
+        if (indexable(location)) {
+            stops.add(location);
+        }
+        grid = Grid.of(stops);
+    }
+
+    /**
+     * Up to {@code k} stops within {@code radiusMeters} of the point, nearest first.
+     */
+    public List<NearbyLocationDTO> nearest(final double lat, final double lon, final double radiusMeters, final int k) {
+        final Grid current = grid;
+        if (k <= 0 || current.stops.length == 0) {
+            return List.of();
+        }
+        final Nearest nearest = new Nearest(k);
+
+        final int centerLat = cell(lat);
+        final int centerLon = cell(lon);
+        final double farthestLat = Math.min(90, Math.abs(lat) + radiusMeters / METERS_PER_DEGREE);
+        final double cellMeters = CELL_DEGREES * METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(farthestLat)), 1e-6);
+        // Past the grid's outermost cells there is nothing to scan, however large the radius
+        final int maxRing = (int) Math.min(Math.ceil(radiusMeters / cellMeters) + 1, current.ringsToEdge(centerLat, centerLon));
+        // Latitude cells have a fixed height, so rows further than this are out of range at any longitude
+        final int latRows = (int) Math.ceil(radiusMeters / (CELL_DEGREES * METERS_PER_DEGREE)) + 1;
+        final int fromLat = Math.max(-latRows, current.minLatCell - centerLat);
+        final int toLat = Math.min(latRows, current.maxLatCell - centerLat);
+        final int fromLon = current.minLonCell - centerLon;
+        final int toLon = current.maxLonCell - centerLon;
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int dLat = Math.max(-ring, fromLat); dLat <= Math.min(ring, toLat); dLat++) {
+                if (Math.abs(dLat) == ring) {
+                    for (int dLon = Math.max(-ring, fromLon); dLon <= Math.min(ring, toLon); dLon++) {
+                        current.scanCell(centerLat + dLat, centerLon + dLon, lat, lon, radiusMeters, nearest);
+                    }
+                } else {
+                    if (-ring >= fromLon) {
+                        current.scanCell(centerLat + dLat, centerLon - ring, lat, lon, radiusMeters, nearest);
+                    }
+                    if (ring <= toLon) {
+                        current.scanCell(centerLat + dLat, centerLon + ring, lat, lon, radiusMeters, nearest);
+                    }
+                }
+            }
+            // Every point outside rings 0..ring is at least ring cell widths away
+            if (nearest.isFull() && nearest.worst() <= ring * cellMeters) {
+                break;
+            }
+        }
+        return nearest.sorted(current.stops);
+    }
+
+    static double haversine(final double lat1, final double lon1, final double lat2, final double lon2) {
+        final double dLat = Math.toRadians(lat2 - lat1);
+        final double dLon = Math.toRadians(lon2 - lon1);
+        final double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static boolean indexable(final LocationDTO location) {
+        return "STOP".equals(location.getType()) && location.getLatitude() != null && location.getLongitude() != null;
+    }
+
+    private static int cell(final double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(final int latCell, final int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xFFFF_FFFFL);
+    }
+
+    private record Grid(
+            LocationDTO[] stops,
+            double[] lats,
+            double[] lons,
+            long[] cellKeys,
+            int[] cellStarts,
+            int minLatCell,
+            int maxLatCell,
+            int minLonCell,
+            int maxLonCell
+    ) {
+        static Grid of(final List<LocationDTO> unsorted) {
+            final int n = unsorted.size();
+            final long[] keyed = new long[n];
+            final long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                final LocationDTO stop = unsorted.get(i);
+                keys[i] = cellKey(cell(stop.getLatitude()), cell(stop.getLongitude()));
+            }
+
+            // Sort stop positions by cell key
+            final Integer[] order = new Integer[n];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+            final LocationDTO[] stops = new LocationDTO[n];
+            final double[] lats = new double[n];
+            final double[] lons = new double[n];
+            int cells = 0;
+            for (int i = 0; i < n; i++) {
+                final LocationDTO stop = unsorted.get(order[i]);
+                stops[i] = stop;
+                lats[i] = stop.getLatitude();
+                lons[i] = stop.getLongitude();
+                keyed[i] = keys[order[i]];
+                if (i == 0 || keyed[i] != keyed[i - 1]) {
+                    cells++;
+                }
+            }
+
+            final long[] cellKeys = new long[cells];
+            final int[] cellStarts = new int[cells + 1];
+            int cellIndex = -1;
+            for (int i = 0; i < n; i++) {
+                if (i == 0 || keyed[i] != keyed[i - 1]) {
+                    cellKeys[++cellIndex] = keyed[i];
+                    cellStarts[cellIndex] = i;
+                }
+            }
+            cellStarts[cells] = n;
+
+            int minLonCell = Integer.MAX_VALUE;
+            int maxLonCell = Integer.MIN_VALUE;
+            for (final long key : cellKeys) {
+                minLonCell = Math.min(minLonCell, (int) key);
+                maxLonCell = Math.max(maxLonCell, (int) key);
+            }
+            // Keys sort by latitude cell first
+            final int minLatCell = cells == 0 ? 0 : (int) (cellKeys[0] >> 32);
+            final int maxLatCell = cells == 0 ? 0 : (int) (cellKeys[cells - 1] >> 32);
+            return new Grid(stops, lats, lons, cellKeys, cellStarts, minLatCell, maxLatCell, minLonCell, maxLonCell);
+        }
+
+        /**
+         * The ring around a cell beyond which no occupied cell lies.
+         */
+        long ringsToEdge(final int latCell, final int lonCell) {
+            return Math.max(
+                    Math.max(Math.abs((long) latCell - minLatCell), Math.abs((long) maxLatCell - latCell)),
+                    Math.max(Math.abs((long) lonCell - minLonCell), Math.abs((long) maxLonCell - lonCell)));
+        }
+
+        void scanCell(final int latCell, final int lonCell, final double lat, final double lon,
+                      final double radiusMeters, final Nearest nearest) {
+            final int cellIndex = Arrays.binarySearch(cellKeys, cellKey(latCell, lonCell));
+            if (cellIndex < 0) {
+                return;
+            }
+            for (int i = cellStarts[cellIndex]; i < cellStarts[cellIndex + 1]; i++) {
+                final double distance = haversine(lat, lon, lats[i], lons[i]);
+                if (distance <= radiusMeters) {
+                    nearest.offer(i, distance);
+                }
+            }
+        }
+    }
+
+    /**
+     * The k closest candidates so far, as a bounded max-heap on distance over primitive arrays.
+     */
+    private static final class Nearest {
+        private final int[] positions;
+        private final double[] distances;
+        private int size;
+
+        Nearest(final int k) {
+            this.positions = new int[k];
+            this.distances = new double[k];
+        }
+
+        boolean isFull() {
+            return size == positions.length;
+        }
+
+        double worst() {
+            return distances[0];
+        }
+
+        void offer(final int position, final double distance) {
+            if (size < positions.length) {
+                positions[size] = position;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                positions[0] = position;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        List<NearbyLocationDTO> sorted(final LocationDTO[] stops) {
+            final Integer[] order = new Integer[size];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+            return Arrays.stream(order)
+                    .map(i -> NearbyLocationDTO.builder()
+                            .location(stops[positions[i]])
+                            .distanceMeters(distances[i])
+                            .build())
+                    .toList();
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                final int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                final int left = 2 * i + 1;
+                final int right = left + 1;
+                int largest = i;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < size && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(final int a, final int b) {
+            final int position = positions[a];
+            positions[a] = positions[b];
+            positions[b] = position;
+            final double distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+        }
+    }
+}
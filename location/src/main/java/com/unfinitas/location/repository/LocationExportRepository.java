@@ -0,0 +1,51 @@
+package com.unfinitas.location.repository;
+
+import com.unfinitas.common.dto.LocationDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.stream.Stream;
+
+/**
+ * Reads the stop catalog row by row through a JDBC cursor, so exporting it never holds more than
+ * one fetch of rows in memory.
+ */
+@Repository
+public class LocationExportRepository {
+
+    private static final String STOPS = """
+            SELECT id, name, stop_id, latitude, longitude, type
+            FROM locations
+            WHERE type = 'STOP'
+            ORDER BY id
+            """;
+
+    private static final RowMapper<LocationDTO> ROW_MAPPER = (rs, rowNum) -> LocationDTO.builder()
+            .id(rs.getString("id"))
+            .name(rs.getString("name"))
+            .stopId(rs.getString("stop_id"))
+            .latitude(rs.getObject("latitude", Double.class))
+            .longitude(rs.getObject("longitude", Double.class))
+            .type(rs.getString("type"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LocationExportRepository(
+            final DataSource dataSource,
+            @Value("${tripmind.export.fetch-size}") final int fetchSize
+    ) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * All stops in ID order. The stream holds an open connection and must be closed.
+     */
+    public Stream<LocationDTO> streamStops() {
+        return jdbcTemplate.queryForStream(STOPS, ROW_MAPPER);
+    }
+}
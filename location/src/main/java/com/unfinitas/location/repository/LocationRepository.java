@@ -1,6 +1,7 @@
 package com.unfinitas.location.repository;
 
 import com.unfinitas.location.entity.Location;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -18,4 +19,6 @@ public interface LocationRepository extends JpaRepository<Location, String> {
     Optional<Location> findByStopId(String stopId);
 
     List<Location> findByType(Location.LocationType type);
+
+    List<Location> findByTypeAndIdGreaterThanOrderByIdAsc(Location.LocationType type, String after, Limit limit);
 }
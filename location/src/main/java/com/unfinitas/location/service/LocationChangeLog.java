@@ -0,0 +1,94 @@
+package com.unfinitas.location.service;
+
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.LocationDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Versioned record of catalog changes for replicas. Every save bumps the version and is kept in a
+ * bounded history; a bulk reload starts a new baseline. Readers ask for what changed since the
+ * version they hold and get either the delta or, when the history no longer reaches back that far
+ * or they hold a version from another epoch (a restart of this service), the full catalog.
+ */
+@Component
+public class LocationChangeLog {
+
+    private final String epoch = UUID.randomUUID().toString();
+    private final int retained;
+
+    private final Map<String, LocationDTO> current = new LinkedHashMap<>();
+    private final Deque<Change> changes = new ArrayDeque<>();
+    private long version;
+
+    /**
+     * Oldest version a delta can be served from; everything after it is still in {@link #changes}.
+     */
+    private long floor;
+
+    public LocationChangeLog(@Value("${tripmind.changes.retained}") final int retained) {
+        this.retained = retained;
+    }
+
+    /**
+     * Replaces the catalog wholesale, after a bulk load that bypassed {@link #record}.
+     */
+    public synchronized void reset(final Collection<LocationDTO> all) {
+        current.clear();
+        all.forEach(location -> current.put(location.getId(), location));
+        changes.clear();
+        version++;
+        floor = version;
+    }
+
+    public synchronized void record(final LocationDTO location) {
+        current.put(location.getId(), location);
+        changes.addLast(new Change(++version, location));
+        while (changes.size() > retained) {
+            floor = changes.removeFirst().version();
+        }
+    }
+
+    public synchronized LocationChangesDTO since(final long since, final String epoch) {
+        if (!this.epoch.equals(epoch) || since < floor || since > version) {
+            return LocationChangesDTO.builder()
+                    .epoch(this.epoch)
+                    .version(version)
+                    .full(true)
+                    .upserts(List.copyOf(current.values()))
+                    .build();
+        }
+
+        // Newest first, so a location saved several times is sent once, as it is now
+        final Map<String, LocationDTO> upserts = new LinkedHashMap<>();
+        final Iterator<Change> newestFirst = changes.descendingIterator();
+        while (newestFirst.hasNext()) {
+            final Change change = newestFirst.next();
+            if (change.version() <= since) {
+                break;
+            }
+            upserts.putIfAbsent(change.location().getId(), change.location());
+        }
+        return LocationChangesDTO.builder()
+                .epoch(this.epoch)
+                .version(version)
+                .full(false)
+                .upserts(List.copyOf(upserts.values()).reversed())
+                .build();
+    }
+
+    private record Change(
+            long version,
+            LocationDTO location
+    ) {
+    }
+}
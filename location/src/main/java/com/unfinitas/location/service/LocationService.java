@@ -1,14 +1,34 @@
 package com.unfinitas.location.service;
 
+import com.unfinitas.common.dto.LocationChangesDTO;
 import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.LocationPageDTO;
+import com.unfinitas.common.dto.NearbyLocationDTO;
+import com.unfinitas.common.dto.StopResolutionDTO;
 import com.unfinitas.location.entity.Location;
+import com.unfinitas.location.importer.GtfsStopImporter;
+import com.unfinitas.location.importer.LocationBatchWriter;
+import com.unfinitas.location.index.FuzzyNameMatcher;
+import com.unfinitas.location.index.LocationNameIndex;
+import com.unfinitas.location.index.LocationSnapshot;
+import com.unfinitas.location.index.LocationSnapshotStore;
+import com.unfinitas.location.index.StopSpatialIndex;
+import com.unfinitas.location.repository.LocationExportRepository;
 import com.unfinitas.location.repository.LocationRepository;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -16,11 +36,49 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class LocationService {
 
+    private static final int RESTORE_BATCH_SIZE = 1000;
+
     private final LocationRepository locationRepository;
+    private final LocationExportRepository exportRepository;
+    private final LocationNameIndex nameIndex;
+    private final FuzzyNameMatcher fuzzyMatcher;
+    private final StopSpatialIndex spatialIndex;
+    private final GtfsStopImporter stopImporter;
+    private final LocationBatchWriter batchWriter;
+    private final LocationSnapshotStore snapshotStore;
+    private final LocationChangeLog changeLog;
+
+    /**
+     * Until the heap indexes are built, reads are answered from the mapped snapshot.
+     */
+    private volatile boolean indexesReady;
 
     @PostConstruct
     public void seedData() {
-        if (locationRepository.count() == 0) {
+        if (snapshotStore.open()) {
+            // Serve from the snapshot right away; fill the database and build the indexes behind it
+            Thread.ofPlatform().name("location-warmup").daemon().start(this::populate);
+        } else {
+            populate();
+        }
+    }
+
+    private void populate() {
+        if (stopImporter.isConfigured()) {
+            try {
+                stopImporter.importConfiguredFeed();
+            } catch (final IOException | RuntimeException e) {
+                log.error("Failed to import GTFS stops", e);
+            }
+        } else if (locationRepository.count() == 0 && snapshotStore.current() != null) {
+            final LocationSnapshot snapshot = snapshotStore.current();
+            final List<LocationDTO> locations = new ArrayList<>(snapshot.size());
+            for (int record = 0; record < snapshot.size(); record++) {
+                locations.add(snapshot.get(record));
+            }
+            batchWriter.upsertAll(locations, RESTORE_BATCH_SIZE);
+            log.info("Restored {} locations from snapshot", locations.size());
+        } else if (locationRepository.count() == 0) {
             log.info("Seeding location data...");
 
             locationRepository.saveAll(List.of(
@@ -63,22 +121,92 @@ public class LocationService {
 
             log.info("Seeded {} locations", locationRepository.count());
         }
+
+        rebuildIndexes();
+    }
+
+    /**
+     * Reloads every in-memory index from the table, for after writes that bypass {@link #save}.
+     */
+    public void rebuildIndexes() {
+        final List<LocationDTO> all = locationRepository.findAll().stream().map(this::toDTO).toList();
+        nameIndex.rebuild(all);
+        fuzzyMatcher.rebuild(all);
+        spatialIndex.rebuild(all);
+        changeLog.reset(all);
+        log.info("Indexed {} location names", nameIndex.size());
+
+        snapshotStore.save(all);
+        indexesReady = true;
+        snapshotStore.release();
     }
 
     public List<LocationDTO> searchByName(final String name) {
         log.info("Searching locations by name: {}", name);
-        return locationRepository.findByNameContainingIgnoreCase(name)
-                .stream()
-                .map(this::toDTO)
-                .toList();
+        final LocationSnapshot snapshot = warmingUpFrom();
+        if (snapshot != null) {
+            return snapshot.search(name);
+        }
+
+        final List<LocationDTO> matches = nameIndex.search(name);
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+
+        // Nothing contains the query as typed; try typos, inflected forms, missing ä/ö and aliases
+        return fuzzyMatcher.search(name);
+    }
+
+    /**
+     * Resolves many names and stop IDs at once: one pass over the name index for the lot, then the
+     * fuzzy matcher only for names that matched nothing.
+     */
+    public StopResolutionDTO resolveBatch(final List<String> names, final List<String> stopIds) {
+        final LocationSnapshot snapshot = warmingUpFrom();
+        if (snapshot != null) {
+            final Map<String, LocationDTO> byName = new LinkedHashMap<>();
+            final Map<String, LocationDTO> byStopId = new LinkedHashMap<>();
+            names.forEach(name -> snapshot.search(name).stream().findFirst().ifPresent(match -> byName.put(name, match)));
+            stopIds.forEach(stopId -> Optional.ofNullable(snapshot.findByStopId(stopId)).ifPresent(match -> byStopId.put(stopId, match)));
+            return StopResolutionDTO.builder().byName(byName).byStopId(byStopId).build();
+        }
+
+        final StopResolutionDTO resolved = nameIndex.resolve(names, stopIds);
+        final Map<String, LocationDTO> byName = new LinkedHashMap<>(resolved.getByName());
+        for (final String name : names) {
+            if (!byName.containsKey(name)) {
+                fuzzyMatcher.search(name).stream().findFirst().ifPresent(match -> byName.put(name, match));
+            }
+        }
+        resolved.setByName(byName);
+        return resolved;
+    }
+
+    /**
+     * What changed in the catalog since {@code version} of {@code epoch}, for replicas to catch up
+     * with. Replicas asking during warm-up get an empty catalog at version 0 and keep asking.
+     */
+    public LocationChangesDTO changesSince(final long version, final String epoch) {
+        return changeLog.since(version, epoch);
+    }
+
+    public List<NearbyLocationDTO> findNearbyStops(final double lat, final double lon,
+                                                   final double radiusMeters, final int k) {
+        final LocationSnapshot snapshot = warmingUpFrom();
+        if (snapshot != null) {
+            return snapshot.nearest(lat, lon, radiusMeters, k);
+        }
+        return spatialIndex.nearest(lat, lon, radiusMeters, k);
     }
 
     public Optional<LocationDTO> getById(final String id) {
-        return locationRepository.findById(id).map(this::toDTO);
+        return locationRepository.findById(id).map(this::toDTO)
+                .or(() -> Optional.ofNullable(warmingUpFrom()).map(snapshot -> snapshot.findById(id)));
     }
 
     public Optional<LocationDTO> getByStopId(final String stopId) {
-        return locationRepository.findByStopId(stopId).map(this::toDTO);
+        return locationRepository.findByStopId(stopId).map(this::toDTO)
+                .or(() -> Optional.ofNullable(warmingUpFrom()).map(snapshot -> snapshot.findByStopId(stopId)));
     }
 
     public LocationDTO save(final LocationDTO dto) {
@@ -89,16 +217,73 @@ public class LocationService {
                 .longitude(dto.getLongitude())
                 .type(Location.LocationType.valueOf(dto.getType()))
                 .build();
-        return toDTO(locationRepository.save(location));
+        final LocationDTO saved = toDTO(locationRepository.save(location));
+        nameIndex.put(saved);
+        fuzzyMatcher.put(saved);
+        spatialIndex.put(saved);
+        changeLog.record(saved);
+        return saved;
     }
 
     public List<LocationDTO> getAllStops() {
+        final LocationSnapshot snapshot = warmingUpFrom();
+        if (snapshot != null) {
+            return snapshot.stops();
+        }
         return locationRepository.findByType(Location.LocationType.STOP)
                 .stream()
                 .map(this::toDTO)
                 .toList();
     }
 
+    /**
+     * One page of stops in ID order, starting after the {@code after} cursor (the last ID of the
+     * previous page). Each page is an index range scan, however deep into the catalog it is.
+     */
+    public LocationPageDTO getStopsPage(final String after, final int limit) {
+        final String cursor = after == null ? "" : after;
+        final List<LocationDTO> items;
+        final LocationSnapshot snapshot = warmingUpFrom();
+        if (snapshot != null) {
+            items = snapshot.stops().stream()
+                    .filter(stop -> stop.getId() != null && stop.getId().compareTo(cursor) > 0)
+                    .sorted(Comparator.comparing(LocationDTO::getId))
+                    .limit(limit)
+                    .toList();
+        } else {
+            items = locationRepository
+                    .findByTypeAndIdGreaterThanOrderByIdAsc(Location.LocationType.STOP, cursor, Limit.of(limit))
+                    .stream()
+                    .map(this::toDTO)
+                    .toList();
+        }
+
+        return LocationPageDTO.builder()
+                .items(items)
+                .nextCursor(items.size() < limit ? null : items.getLast().getId())
+                .build();
+    }
+
+    /**
+     * Every stop, emitted as it is read from the database cursor; the connection is released when
+     * the stream completes or the client goes away.
+     */
+    public Flux<LocationDTO> streamAllStops() {
+        final LocationSnapshot snapshot = warmingUpFrom();
+        if (snapshot != null) {
+            return Flux.defer(() -> Flux.fromIterable(snapshot.stops()));
+        }
+        return Flux.fromStream(exportRepository::streamStops)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * The mapped snapshot while the database and heap indexes are still being loaded, otherwise {@code null}.
+     */
+    private LocationSnapshot warmingUpFrom() {
+        return indexesReady ? null : snapshotStore.current();
+    }
+
     private LocationDTO toDTO(final Location location) {
         return LocationDTO.builder()
                 .id(location.getId())
@@ -0,0 +1,64 @@
+package com.unfinitas.location;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.NearbyLocationDTO;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog entries and id extractors shared by the location tests.
+ */
+public final class TestLocations {
+
+    private TestLocations() {
+    }
+
+    public static LocationDTO stop(final String id, final String name) {
+        return stop(id, name, null);
+    }
+
+    public static LocationDTO stop(final String id, final String name, final String stopId) {
+        return LocationDTO.builder().id(id).name(name).stopId(stopId).type("STOP").build();
+    }
+
+    /**
+     * A stop named after its id at the given coordinates.
+     */
+    public static LocationDTO stop(final String id, final double lat, final double lon) {
+        return location(id, id, null, lat, lon, "STOP");
+    }
+
+    public static LocationDTO location(
+            final String id,
+            final String name,
+            final String stopId,
+            final Double latitude,
+            final Double longitude,
+            final String type
+    ) {
+        return LocationDTO.builder()
+                .id(id)
+                .name(name)
+                .stopId(stopId)
+                .latitude(latitude)
+                .longitude(longitude)
+                .type(type)
+                .build();
+    }
+
+    public static List<String> ids(final List<LocationDTO> locations) {
+        return locations.stream().map(LocationDTO::getId).toList();
+    }
+
+    public static List<String> nearbyIds(final List<NearbyLocationDTO> nearby) {
+        return nearby.stream().map(near -> near.getLocation().getId()).toList();
+    }
+
+    public static Map<String, String> idsByKey(final Map<String, LocationDTO> locations) {
+        final Map<String, String> ids = new LinkedHashMap<>();
+        locations.forEach((key, location) -> ids.put(key, location.getId()));
+        return ids;
+    }
+}
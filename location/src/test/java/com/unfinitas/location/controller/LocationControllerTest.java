@@ -0,0 +1,61 @@
+package com.unfinitas.location.controller;
+
+import com.unfinitas.common.dto.StopResolutionDTO;
+import com.unfinitas.common.dto.StopResolutionRequestDTO;
+import com.unfinitas.location.service.LocationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LocationControllerTest {
+
+    private final LocationService locationService = mock(LocationService.class);
+    private final LocationController controller = new LocationController(locationService, 50_000);
+
+    @Test
+    void resolvesABatchOfUpTo500Keys() {
+        final List<String> names = Collections.nCopies(300, "Keskustori");
+        final List<String> stopIds = Collections.nCopies(200, "0001");
+        final StopResolutionDTO resolved = StopResolutionDTO.builder().build();
+        when(locationService.resolveBatch(names, stopIds)).thenReturn(resolved);
+
+        final ResponseEntity<StopResolutionDTO> response = controller.resolveBatch(
+                StopResolutionRequestDTO.builder().names(names).stopIds(stopIds).build());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(resolved, response.getBody());
+    }
+
+    @Test
+    void rejectsABatchOfMoreThan500Keys() {
+        final ResponseEntity<StopResolutionDTO> response = controller.resolveBatch(StopResolutionRequestDTO.builder()
+                .names(Collections.nCopies(300, "Keskustori"))
+                .stopIds(Collections.nCopies(201, "0001"))
+                .build());
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(locationService, never()).resolveBatch(any(), any());
+    }
+
+    @Test
+    void readsMissingListsAsEmpty() {
+        final StopResolutionDTO resolved = StopResolutionDTO.builder().build();
+        when(locationService.resolveBatch(List.of(), List.of("0001"))).thenReturn(resolved);
+
+        final ResponseEntity<StopResolutionDTO> response = controller.resolveBatch(
+                new StopResolutionRequestDTO(null, List.of("0001")));
+
+        assertSame(resolved, response.getBody());
+    }
+}
@@ -0,0 +1,147 @@
+package com.unfinitas.location.importer;
+
+import com.unfinitas.location.entity.Location;
+import com.unfinitas.location.repository.LocationRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+class GtfsStopImporterTest {
+
+    private static final String STOPS = """
+            ﻿stop_id,stop_code,stop_name,stop_lat,stop_lon,location_type,parent_station
+            0001,0001,Keskustori H,61.4981,23.7610,,1000
+            0002,0002,"Hämeenkatu 10, itään",61.4985,23.7600,0,1000
+            1000,,Keskustori,61.4983,23.7605,1,
+
+            1001,,Keskustori sisäänkäynti,61.4984,23.7606,2,1000
+            0003,0003,"Pyynikin ""kirkko""\",61.4950,23.7390,0,
+            """;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importsOnlyTheStopsOfAStopsFile() throws IOException {
+        final Path stops = Files.writeString(directory.resolve("stops.txt"), STOPS);
+
+        assertEquals(3, importer(stops, "tampere").importConfiguredFeed());
+
+        final List<Location> imported = imported();
+        assertEquals(List.of("tampere:0001", "tampere:0002", "tampere:0003"),
+                imported.stream().map(Location::getStopId).toList());
+        assertEquals(List.of("Keskustori H", "Hämeenkatu 10, itään", "Pyynikin \"kirkko\""),
+                imported.stream().map(Location::getName).toList());
+        assertEquals(61.4981, imported.getFirst().getLatitude());
+        assertEquals(23.7610, imported.getFirst().getLongitude());
+        assertEquals(Location.LocationType.STOP, imported.getFirst().getType());
+    }
+
+    @Test
+    void readsStopsFromAFeedZipOrDirectory() throws IOException {
+        final Path zip = directory.resolve("feed.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("agency.txt"));
+            out.write("agency_id,agency_name\n1,Nysse\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("stops.txt"));
+            out.write(STOPS.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(3, importer(zip, "").importConfiguredFeed());
+        assertEquals(List.of("0001", "0002", "0003"), imported().stream().map(Location::getStopId).toList());
+
+        Files.writeString(directory.resolve("stops.txt"), STOPS);
+        assertEquals(3, importer(directory, "").importConfiguredFeed());
+        assertEquals(3, locationRepository.count());
+    }
+
+    @Test
+    void updatesStopsInPlaceWhenTheFeedIsImportedAgain() throws IOException {
+        final Path stops = Files.writeString(directory.resolve("stops.txt"), STOPS);
+        importer(stops, "tampere").importConfiguredFeed();
+        final List<String> ids = imported().stream().map(Location::getId).toList();
+
+        Files.writeString(stops, STOPS.replace("Keskustori H", "Keskustori A"));
+        importer(stops, "tampere").importConfiguredFeed();
+
+        final List<Location> reimported = imported();
+        assertEquals(ids, reimported.stream().map(Location::getId).toList());
+        assertEquals(GtfsStopImporter.locationId("tampere:0001"), reimported.getFirst().getId());
+        assertEquals("Keskustori A", reimported.getFirst().getName());
+    }
+
+    @Test
+    void rejectsAFeedWithoutStops() throws IOException {
+        final Path noColumn = Files.writeString(directory.resolve("stops.txt"), "stop_id,stop_name,stop_lat\n1,A,61.5\n");
+        assertThrows(IOException.class, () -> importer(noColumn, "").importConfiguredFeed());
+
+        final Path zip = directory.resolve("feed.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("agency.txt"));
+        }
+        assertThrows(IOException.class, () -> importer(zip, "").importConfiguredFeed());
+    }
+
+    /**
+     * A generated feed of 10k stops by default; pass {@code -Dlocation.import.benchmark.stops=100000}
+     * for a full-size feed. Rate and peak heap are logged by the importer.
+     */
+    @Test
+    void importsAGeneratedFeed() throws IOException {
+        final int count = Integer.getInteger("location.import.benchmark.stops", 10_000);
+        final Path stops = directory.resolve("stops.txt");
+        try (BufferedWriter out = Files.newBufferedWriter(stops)) {
+            out.write("stop_id,stop_name,stop_lat,stop_lon,location_type\n");
+            for (int i = 0; i < count; i++) {
+                out.write("%07d,Pysäkki %d,%.6f,%.6f,0\n".formatted(i, i, 61.4 + i % 1000 * 1e-4, 23.7 + i / 1000 * 1e-4));
+            }
+        }
+
+        final GtfsStopImporter importer = new GtfsStopImporter(
+                new LocationBatchWriter(new JdbcTemplate(dataSource)), stops.toString(), "tampere", 1_000);
+
+        assertEquals(count, importer.importConfiguredFeed());
+        assertEquals(count, locationRepository.count());
+    }
+
+    /**
+     * Two rows a batch, so every feed here is written in several batches.
+     */
+    private GtfsStopImporter importer(final Path path, final String feedId) {
+        return new GtfsStopImporter(new LocationBatchWriter(new JdbcTemplate(dataSource)), path.toString(), feedId, 2);
+    }
+
+    private List<Location> imported() {
+        // The importer writes through JDBC, behind the persistence context's back
+        entityManager.clear();
+        return locationRepository.findAll().stream()
+                .sorted(Comparator.comparing(Location::getStopId))
+                .toList();
+    }
+}
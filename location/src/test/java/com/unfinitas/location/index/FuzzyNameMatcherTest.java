@@ -0,0 +1,115 @@
+package com.unfinitas.location.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.unfinitas.location.TestLocations.ids;
+import static com.unfinitas.location.TestLocations.stop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FuzzyNameMatcherTest {
+
+    private FuzzyNameMatcher matcher;
+
+    @BeforeEach
+    void build() {
+        matcher = new FuzzyNameMatcher(2, 3);
+        matcher.rebuild(List.of(
+                stop("1", "Keskustori"),
+                stop("2", "Hervanta"),
+                stop("3", "Rautatieasema"),
+                stop("4", "Hakametsä"),
+                stop("5", "Hakametsä H")
+        ));
+    }
+
+    @Test
+    void foldsCaseDiacriticsAndPunctuation() {
+        assertEquals("jarnvags stationen", FuzzyNameMatcher.fold("Järnvägs-stationen"));
+        assertEquals("keskustori h", FuzzyNameMatcher.fold("  Keskustori,   H "));
+        assertEquals("", FuzzyNameMatcher.fold(null));
+    }
+
+    @Test
+    void stripsACaseEndingFromTheLastWordOnly() {
+        assertEquals(List.of("keskustorilla", "keskustori"), FuzzyNameMatcher.forms("keskustorilla"));
+        assertEquals(List.of("pyynikin kirkolla", "pyynikin kirko"), FuzzyNameMatcher.forms("pyynikin kirkolla"));
+        assertEquals(List.of("hervanta"), FuzzyNameMatcher.forms("hervanta"));
+        // The stem would be shorter than four characters
+        assertEquals(List.of("hanna"), FuzzyNameMatcher.forms("hanna"));
+    }
+
+    @Test
+    void countsEditsAndTranspositionsUpToTheLimit() {
+        assertEquals(0, FuzzyNameMatcher.distance("hervanta", "hervanta", 2));
+        assertEquals(1, FuzzyNameMatcher.distance("keskustori", "keskustoir", 2));
+        assertEquals(3, FuzzyNameMatcher.distance("kitten", "sitting", 3));
+        // Gives up with max + 1
+        assertEquals(3, FuzzyNameMatcher.distance("abc", "abcdef", 2));
+        assertEquals(2, FuzzyNameMatcher.distance("kitten", "sitting", 1));
+    }
+
+    @Test
+    void matchesNamesWithTypos() {
+        assertEquals(List.of("1"), ids(matcher.search("Keskustorii")));
+        assertEquals(List.of("1"), ids(matcher.search("keksustori")));
+    }
+
+    @Test
+    void matchesNamesWithACaseEnding() {
+        assertEquals(List.of("1"), ids(matcher.search("Keskustorilla")));
+        assertEquals(List.of("2"), ids(matcher.search("Hervannassa")));
+    }
+
+    @Test
+    void matchesNamesTypedWithoutDiacritics() {
+        assertEquals("4", matcher.search("hakametsa").getFirst().getId());
+    }
+
+    @Test
+    void ranksCloserMatchesFirst() {
+        assertEquals(List.of("4", "5"), ids(matcher.search("Hakametsä")));
+        assertEquals(List.of("5", "4"), ids(matcher.search("Hakametsä H")));
+    }
+
+    @Test
+    void resolvesAliasesToTheCatalogName() {
+        assertEquals(List.of("3"), ids(matcher.search("Järnvägsstationen")));
+        assertEquals(List.of("3"), ids(matcher.search("jarnvagsstationen")));
+    }
+
+    @Test
+    void findsNothingForBlankOrDistantQueries() {
+        assertEquals(List.of(), matcher.search(" - "));
+        assertEquals(List.of(), matcher.search("Pyynikki"));
+    }
+
+    @Test
+    void forgetsTheOldNameOfARenamedLocation() {
+        matcher.put(stop("2", "Hervantakeskus"));
+
+        assertEquals(List.of(), matcher.search("Hervanta"));
+        assertEquals(List.of("2"), ids(matcher.search("Hervantakeskuss")));
+
+        matcher.put(stop("1", "Keskustori"));
+        assertEquals(List.of("1"), ids(matcher.search("Keskustorilla")));
+    }
+
+    @Test
+    void keepsAnAliasWhenItsCatalogNameIsRenamed() {
+        matcher.put(stop("3", "Tampereen rautatieasema"));
+        matcher.put(stop("6", "Rautatieasema"));
+
+        assertEquals(List.of("6"), ids(matcher.search("Järnvägsstationen")));
+    }
+
+    @Test
+    void limitsTheNumberOfResults() {
+        final FuzzyNameMatcher limited = new FuzzyNameMatcher(2, 1);
+        limited.rebuild(List.of(stop("4", "Hakametsä"), stop("5", "Hakametsä H")));
+
+        assertEquals(List.of("4"), ids(limited.search("hakametsa")));
+    }
+}
@@ -0,0 +1,138 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.StopResolutionDTO;
+import com.unfinitas.common.replica.LocationCatalogReplica;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.unfinitas.location.TestLocations.ids;
+import static com.unfinitas.location.TestLocations.idsByKey;
+import static com.unfinitas.location.TestLocations.stop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocationNameIndexTest {
+
+    private static final List<LocationDTO> CATALOG = List.of(
+            stop("1", "Keskustori H", "0001"),
+            stop("2", "Keskustori", "0002"),
+            stop("3", "Pyynikin kirkko", "0003"),
+            stop("4", "Vanha Keskustori", "0004"),
+            stop("5", "Ylikeskustorinkatu", "0005")
+    );
+
+    private LocationNameIndex index;
+
+    @BeforeEach
+    void build() {
+        index = new LocationNameIndex();
+        index.rebuild(CATALOG);
+    }
+
+    @Test
+    void ranksExactThenPrefixThenWordPrefixThenSubstring() {
+        assertEquals(List.of("2", "1", "4", "5"), ids(index.search("keskustori")));
+    }
+
+    @Test
+    void ignoresCaseAndSurroundingSpace() {
+        assertEquals(List.of("3"), ids(index.search("  PYYNIKIN ")));
+    }
+
+    @Test
+    void ranksShorterNamesFirstWithinARank() {
+        index.put(stop("6", "Keskustori Itä", "0006"));
+
+        assertEquals(List.of("2", "1", "6", "4", "5"), ids(index.search("Keskustori")));
+    }
+
+    @Test
+    void scansForQueriesShorterThanATrigram() {
+        assertEquals(List.of("3"), ids(index.search("py")));
+        assertEquals(List.of("2", "1", "3", "4", "5"), ids(index.search("k")));
+    }
+
+    @Test
+    void findsNothingForBlankOrUnknownQueries() {
+        assertEquals(List.of(), index.search(" "));
+        assertEquals(List.of(), index.search("hervanta"));
+        assertEquals(List.of(), index.search("kirkkoa"));
+    }
+
+    @Test
+    void replacesTheNameOfALocationPutAgain() {
+        index.put(stop("3", "Hervannan kampus", "0003"));
+
+        assertEquals(5, index.size());
+        assertEquals(List.of(), index.search("pyynikin"));
+        assertEquals(List.of("3"), ids(index.search("kampus")));
+    }
+
+    @Test
+    void resolvesTheBestMatchPerNameAndEachStopId() {
+        final StopResolutionDTO resolution = index.resolve(
+                List.of("keskustori", "Pyynikin", "hervanta"),
+                List.of("0004", "9999")
+        );
+
+        assertEquals(Map.of("keskustori", "2", "Pyynikin", "3"), idsByKey(resolution.getByName()));
+        assertEquals(Map.of("0004", "4"), idsByKey(resolution.getByStopId()));
+    }
+
+    @Test
+    void dropsTheOldStopIdOfALocationPutAgain() {
+        index.put(stop("4", "Vanha Keskustori", "0044"));
+
+        final StopResolutionDTO resolution = index.resolve(List.of(), List.of("0004", "0044"));
+
+        assertEquals(Map.of("0044", "4"), idsByKey(resolution.getByStopId()));
+    }
+
+    @Test
+    void picksTheSameBestMatchAsTheReplicas() {
+        final List<LocationDTO> catalog = new ArrayList<>(CATALOG);
+        final String[] names = {"Hervanta", "Hervannan kampus", "Hervantajärvi", "Tays", "Tays-keskussairaala",
+                "Rautatieasema", "Lielahti", "Lielahden kirkko", "Hakametsä", "Hakametsä H", "Pispalan valtatie",
+                "Kaleva", "Kalevan kirkko", "Kalevanharju", "Sammonkatu", "Itsenäisyydenkatu", "Linja-autoasema"};
+        for (int i = 0; i < names.length; i++) {
+            catalog.add(stop(String.valueOf(10 + i), names[i], String.format("%04d", 10 + i)));
+        }
+        final LocationNameIndex full = new LocationNameIndex();
+        full.rebuild(catalog);
+        final LocationCatalogReplica replica = new LocationCatalogReplica();
+        replica.apply(LocationChangesDTO.builder().epoch("e1").version(1).full(true).upserts(catalog).build());
+
+        final Set<String> queries = new TreeSet<>();
+        for (final LocationDTO location : catalog) {
+            final String name = location.getName();
+            for (int from = 0; from < name.length(); from++) {
+                for (int to = from + 1; to <= Math.min(name.length(), from + 6); to++) {
+                    queries.add(name.substring(from, to));
+                }
+            }
+        }
+        for (final String query : queries) {
+            final List<LocationDTO> found = full.search(query);
+            assertEquals(found.isEmpty() ? null : found.getFirst().getId(),
+                    replica.findByName(query).map(LocationDTO::getId).orElse(null), query);
+        }
+    }
+
+    @Test
+    void ranksMatchesByWhereTheyStart() {
+        assertEquals(0, LocationNameIndex.rank("hervanta", "hervanta"));
+        assertEquals(1, LocationNameIndex.rank("hervannan kampus", "hervan"));
+        assertEquals(2, LocationNameIndex.rank("tays-keskussairaala", "keskus"));
+        assertEquals(3, LocationNameIndex.rank("ylikeskustori", "keskus"));
+        assertEquals(-1, LocationNameIndex.rank("hervanta", "kampus"));
+        // A later occurrence at a word start outranks an earlier one inside a word
+        assertEquals(2, LocationNameIndex.rank("ylikeskus keskus", "keskus"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.location.entity.Location;
+import com.unfinitas.location.importer.LocationBatchWriter;
+import com.unfinitas.location.repository.LocationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static com.unfinitas.location.TestLocations.ids;
+import static com.unfinitas.location.TestLocations.stop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Name search through {@link LocationNameIndex} against the {@code LIKE '%name%'} query it
+ * replaced, over generated catalogs. Runs 10k locations by default; pass
+ * {@code -Dlocation.benchmark.sizes=10000,100000,1000000} for the larger catalogs. Each size
+ * prints its numbers; the test only asserts that both find the same locations.
+ */
+@DataJpaTest
+class LocationNameSearchBenchmarkTest {
+
+    private static final List<String> QUERIES = List.of("keskus", "vanpyy", "herta", "monle", "nkatu 42");
+    private static final String[] SYLLABLES = {
+            "kes", "kus", "to", "ri", "her", "van", "ta", "pyy", "ni", "kal", "le", "va", "sam", "mon", "la"
+    };
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void findsTheSameLocationsAsTheLikeQuery() {
+        final LocationBatchWriter writer = new LocationBatchWriter(new JdbcTemplate(dataSource));
+        final List<LocationDTO> catalog = new ArrayList<>();
+        for (final int size : sizes()) {
+            final List<LocationDTO> added = catalog(catalog.size(), size);
+            writer.upsertAll(added, 1_000);
+            catalog.addAll(added);
+            final LocationNameIndex index = new LocationNameIndex();
+            index.rebuild(catalog);
+
+            for (final String query : QUERIES) {
+                assertEquals(Set.copyOf(like(query)), Set.copyOf(ids(index.search(query))), query);
+            }
+            final double likeMillis = millisPerQuery(this::like);
+            final double indexMillis = millisPerQuery(query -> ids(index.search(query)));
+            System.out.printf("%,9d locations: LIKE %.2f ms/query, index %.3f ms/query (%.0fx)%n",
+                    size, likeMillis, indexMillis, likeMillis / indexMillis);
+        }
+    }
+
+    private List<String> like(final String query) {
+        return locationRepository.findByNameContainingIgnoreCase(query).stream().map(Location::getId).toList();
+    }
+
+    /**
+     * Mean over every query, after one warmup round.
+     */
+    private static double millisPerQuery(final Function<String, List<String>> search) {
+        QUERIES.forEach(search::apply);
+        final long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            QUERIES.forEach(search::apply);
+        }
+        return (System.nanoTime() - start) / 1e6 / (ROUNDS * QUERIES.size());
+    }
+
+    /**
+     * Locations {@code from} up to {@code size}, named from three of a few Finnish-like syllables
+     * and a street number, so each query matches a small share of the catalog.
+     */
+    private static List<LocationDTO> catalog(final int from, final int size) {
+        final List<LocationDTO> locations = new ArrayList<>(size - from);
+        for (int i = from; i < size; i++) {
+            final int word = (int) (i * 7919L % 3375);
+            final String name = SYLLABLES[word % SYLLABLES.length]
+                    + SYLLABLES[word / 15 % SYLLABLES.length]
+                    + SYLLABLES[word / 225]
+                    + "nkatu " + (i % 97);
+            locations.add(stop("%08d".formatted(i), name, "%07d".formatted(i)));
+        }
+        return locations;
+    }
+
+    /**
+     * Ascending, so each size adds to the catalog of the one before.
+     */
+    private static List<Integer> sizes() {
+        return Arrays.stream(System.getProperty("location.benchmark.sizes", "10000").split(","))
+                .map(String::strip)
+                .map(Integer::valueOf)
+                .sorted()
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,105 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.NearbyLocationDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.unfinitas.location.TestLocations.ids;
+import static com.unfinitas.location.TestLocations.location;
+import static com.unfinitas.location.TestLocations.nearbyIds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocationSnapshotTest {
+
+    private static final List<LocationDTO> LOCATIONS = List.of(
+            location("1", "Keskustori H", "0001", 61.4981, 23.7610, "STOP"),
+            location("2", "Keskustori", "0002", 61.4985, 23.7600, "STOP"),
+            location("3", "Pyynikin kirkko", "0003", 61.4950, 23.7390, "STOP"),
+            location("4", "Vanha Keskustori", null, 61.4990, 23.7620, "POI"),
+            location("5", "Hämeenkatu 1", null, null, null, "ADDRESS"),
+            location("6", "Ylikeskustorinkatu", "0006", 61.5100, 23.7700, "STOP"),
+            location("7", "Ei tyyppiä", null, null, null, null)
+    );
+
+    @TempDir
+    Path directory;
+
+    private LocationSnapshot snapshot;
+
+    @BeforeEach
+    void writeAndOpen() throws IOException {
+        final Path path = directory.resolve("locations.snapshot");
+        LocationSnapshot.write(path, LOCATIONS);
+        snapshot = LocationSnapshot.open(path);
+    }
+
+    @Test
+    void readsBackEveryRecord() {
+        assertEquals(LOCATIONS.size(), snapshot.size());
+        for (int record = 0; record < LOCATIONS.size(); record++) {
+            assertEquals(LOCATIONS.get(record), snapshot.get(record));
+        }
+    }
+
+    @Test
+    void findsLocationsByIdAndStopId() {
+        assertEquals(LOCATIONS.get(2), snapshot.findById("3"));
+        assertEquals(LOCATIONS.get(5), snapshot.findByStopId("0006"));
+        assertNull(snapshot.findById("8"));
+        assertNull(snapshot.findByStopId("0004"));
+        assertNull(snapshot.findByStopId(null));
+    }
+
+    @Test
+    void listsOnlyStops() {
+        assertEquals(List.of("1", "2", "3", "6"), ids(snapshot.stops()));
+    }
+
+    @Test
+    void searchesLikeTheHeapIndex() {
+        final LocationNameIndex index = new LocationNameIndex();
+        index.rebuild(LOCATIONS);
+
+        for (final String query : List.of("keskustori", "KESKUS", "k", "py", "kirkko", "katu 1", "hervanta", " ")) {
+            assertEquals(index.search(query), snapshot.search(query), query);
+        }
+    }
+
+    @Test
+    void findsTheNearestStopsWithCoordinates() {
+        final List<NearbyLocationDTO> nearby = snapshot.nearest(61.4981, 23.7610, 1_000, 5);
+
+        assertEquals(List.of("1", "2"), nearbyIds(nearby));
+        assertEquals(0, nearby.getFirst().getDistanceMeters(), 0.001);
+        assertEquals(List.of("1"), nearbyIds(snapshot.nearest(61.4981, 23.7610, 1_000, 1)));
+    }
+
+    @Test
+    void replacesAnExistingSnapshot() throws IOException {
+        final Path path = directory.resolve("locations.snapshot");
+        LocationSnapshot.write(path, List.of(LOCATIONS.get(2)));
+
+        final LocationSnapshot replaced = LocationSnapshot.open(path);
+
+        assertEquals(1, replaced.size());
+        assertEquals(LOCATIONS.get(2), replaced.findByStopId("0003"));
+        assertEquals(List.of(), replaced.search("keskustori"));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSnapshots() throws IOException {
+        final Path path = Files.writeString(directory.resolve("other.snapshot"), "not a snapshot at all, just some text");
+
+        assertThrows(IOException.class, () -> LocationSnapshot.open(path));
+        assertThrows(IOException.class, () -> LocationSnapshot.open(Files.createFile(directory.resolve("empty"))));
+    }
+}
@@ -0,0 +1,121 @@
+package com.unfinitas.location.index;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.NearbyLocationDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.unfinitas.location.TestLocations.nearbyIds;
+import static com.unfinitas.location.TestLocations.stop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StopSpatialIndexTest {
+
+    private static final double LAT = 61.4981;
+    private static final double LON = 23.7610;
+
+    @Test
+    void findsTheSameStopsAsABruteForceScan() {
+        final Random random = new Random(42);
+        final List<LocationDTO> stops = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            stops.add(stop("s" + i, LAT + (random.nextDouble() - 0.5) * 0.3, LON + (random.nextDouble() - 0.5) * 0.6));
+        }
+        final StopSpatialIndex index = new StopSpatialIndex();
+        index.rebuild(stops);
+
+        for (int i = 0; i < 50; i++) {
+            final double lat = LAT + (random.nextDouble() - 0.5) * 0.4;
+            final double lon = LON + (random.nextDouble() - 0.5) * 0.8;
+            for (final double radius : new double[]{100, 750, 5_000, 100_000}) {
+                for (final int k : new int[]{1, 5, 40}) {
+                    assertEquals(bruteForce(stops, lat, lon, radius, k), nearbyIds(index.nearest(lat, lon, radius, k)),
+                            "nearest(" + lat + ", " + lon + ", " + radius + ", " + k + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void returnsNearestFirstWithDistances() {
+        final StopSpatialIndex index = new StopSpatialIndex();
+        index.rebuild(List.of(
+                stop("far", LAT + 0.01, LON),
+                stop("near", LAT + 0.001, LON),
+                stop("here", LAT, LON)
+        ));
+
+        final List<NearbyLocationDTO> nearby = index.nearest(LAT, LON, 2_000, 3);
+
+        assertEquals(List.of("here", "near", "far"), nearbyIds(nearby));
+        assertEquals(0, nearby.get(0).getDistanceMeters(), 0.001);
+        assertEquals(111.2, nearby.get(1).getDistanceMeters(), 0.1);
+        assertEquals(1_111.9, nearby.get(2).getDistanceMeters(), 0.1);
+    }
+
+    @Test
+    void keepsToTheRadiusAndK() {
+        final StopSpatialIndex index = new StopSpatialIndex();
+        index.rebuild(List.of(stop("near", LAT + 0.001, LON), stop("far", LAT + 0.01, LON)));
+
+        assertEquals(List.of("near"), nearbyIds(index.nearest(LAT, LON, 500, 5)));
+        assertEquals(List.of("near"), nearbyIds(index.nearest(LAT, LON, 2_000, 1)));
+        assertEquals(List.of(), nearbyIds(index.nearest(LAT, LON, 2_000, 0)));
+        assertEquals(List.of(), nearbyIds(index.nearest(LAT, LON, 50, 5)));
+    }
+
+    @Test
+    void indexesOnlyStopsWithCoordinates() {
+        final StopSpatialIndex index = new StopSpatialIndex();
+        index.rebuild(List.of(
+                stop("stop", LAT, LON),
+                LocationDTO.builder().id("place").type("PLACE").latitude(LAT).longitude(LON).build(),
+                LocationDTO.builder().id("nowhere").type("STOP").build()
+        ));
+
+        assertEquals(List.of("stop"), nearbyIds(index.nearest(LAT, LON, 1_000, 5)));
+    }
+
+    @Test
+    void movesOrDropsAStopPutAgain() {
+        final StopSpatialIndex index = new StopSpatialIndex();
+        index.rebuild(List.of(stop("a", LAT, LON), stop("b", LAT + 0.001, LON)));
+
+        index.put(stop("a", LAT + 0.1, LON));
+        assertEquals(List.of("b"), nearbyIds(index.nearest(LAT, LON, 1_000, 5)));
+
+        index.put(LocationDTO.builder().id("b").name("b").type("PLACE").latitude(LAT).longitude(LON).build());
+        assertEquals(List.of(), nearbyIds(index.nearest(LAT, LON, 1_000, 5)));
+        assertEquals(List.of("a"), nearbyIds(index.nearest(LAT + 0.1, LON, 1_000, 5)));
+    }
+
+    @Test
+    void measuresGreatCircleDistance() {
+        assertEquals(111_195, StopSpatialIndex.haversine(0, 0, 1, 0), 1);
+        assertEquals(111_195, StopSpatialIndex.haversine(0, 0, 0, 1), 1);
+        assertEquals(55_597, StopSpatialIndex.haversine(60, 0, 60, 1), 1);
+    }
+
+    private static List<String> bruteForce(
+            final List<LocationDTO> stops,
+            final double lat,
+            final double lon,
+            final double radius,
+            final int k
+    ) {
+        return stops.stream()
+                .filter(stop -> distance(stop, lat, lon) <= radius)
+                .sorted(Comparator.comparingDouble(stop -> distance(stop, lat, lon)))
+                .limit(k)
+                .map(LocationDTO::getId)
+                .toList();
+    }
+
+    private static double distance(final LocationDTO stop, final double lat, final double lon) {
+        return StopSpatialIndex.haversine(lat, lon, stop.getLatitude(), stop.getLongitude());
+    }
+}
@@ -0,0 +1,96 @@
+package com.unfinitas.location.service;
+
+import com.unfinitas.common.dto.LocationChangesDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.unfinitas.location.TestLocations.ids;
+import static com.unfinitas.location.TestLocations.stop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationChangeLogTest {
+
+    private final LocationChangeLog log = new LocationChangeLog(3);
+
+    @Test
+    void sendsTheFullCatalogToANewReplica() {
+        log.reset(List.of(stop("1", "Keskustori"), stop("2", "Hervanta")));
+
+        final LocationChangesDTO first = log.since(0, null);
+
+        assertTrue(first.isFull());
+        assertEquals(1, first.getVersion());
+        assertEquals(List.of("1", "2"), ids(first.getUpserts()));
+    }
+
+    @Test
+    void sendsOnlyWhatChangedSinceTheReplicasVersion() {
+        log.reset(List.of(stop("1", "Keskustori")));
+        final String epoch = log.since(0, null).getEpoch();
+        log.record(stop("2", "Hervanta"));
+        log.record(stop("3", "Lielahti"));
+
+        final LocationChangesDTO delta = log.since(2, epoch);
+
+        assertFalse(delta.isFull());
+        assertEquals(3, delta.getVersion());
+        assertEquals(List.of("3"), ids(delta.getUpserts()));
+        assertEquals(List.of(), log.since(3, epoch).getUpserts());
+    }
+
+    @Test
+    void sendsALocationSavedSeveralTimesOnceAsItIsNow() {
+        log.reset(List.of());
+        final String epoch = log.since(0, null).getEpoch();
+        log.record(stop("1", "Keskustori"));
+        log.record(stop("2", "Hervanta"));
+        log.record(stop("1", "Keskustori H"));
+
+        final LocationChangesDTO delta = log.since(1, epoch);
+
+        assertEquals(List.of("2", "1"), ids(delta.getUpserts()));
+        assertEquals("Keskustori H", delta.getUpserts().get(1).getName());
+    }
+
+    @Test
+    void sendsTheFullCatalogOnceTheHistoryNoLongerReachesBack() {
+        log.reset(List.of());
+        final String epoch = log.since(0, null).getEpoch();
+        for (int i = 1; i <= 5; i++) {
+            log.record(stop(String.valueOf(i), "Stop " + i));
+        }
+
+        // Versions 2 to 6 were recorded and the last 3 are kept, so the floor is 3
+        assertTrue(log.since(2, epoch).isFull());
+        assertEquals(List.of("3", "4", "5"), ids(log.since(3, epoch).getUpserts()));
+        assertFalse(log.since(3, epoch).isFull());
+    }
+
+    @Test
+    void sendsTheFullCatalogForAnotherEpochOrAFutureVersion() {
+        log.reset(List.of(stop("1", "Keskustori")));
+        final String epoch = log.since(0, null).getEpoch();
+        log.record(stop("2", "Hervanta"));
+
+        assertTrue(log.since(2, "restarted").isFull());
+        assertTrue(log.since(3, epoch).isFull());
+        assertEquals(List.of("1", "2"), ids(log.since(3, epoch).getUpserts()));
+    }
+
+    @Test
+    void startsANewBaselineOnReset() {
+        log.reset(List.of(stop("1", "Keskustori")));
+        final String epoch = log.since(0, null).getEpoch();
+        log.record(stop("2", "Hervanta"));
+
+        log.reset(List.of(stop("3", "Lielahti")));
+
+        final LocationChangesDTO afterReset = log.since(2, epoch);
+        assertTrue(afterReset.isFull());
+        assertEquals(3, afterReset.getVersion());
+        assertEquals(List.of("3"), ids(afterReset.getUpserts()));
+    }
+}
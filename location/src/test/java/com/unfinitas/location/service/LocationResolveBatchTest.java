@@ -0,0 +1,62 @@
+package com.unfinitas.location.service;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.StopResolutionDTO;
+import com.unfinitas.location.index.FuzzyNameMatcher;
+import com.unfinitas.location.index.LocationNameIndex;
+import com.unfinitas.location.index.LocationSnapshotStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.unfinitas.location.TestLocations.idsByKey;
+import static com.unfinitas.location.TestLocations.stop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocationResolveBatchTest {
+
+    private final LocationNameIndex nameIndex = new LocationNameIndex();
+    private final FuzzyNameMatcher fuzzyMatcher = new FuzzyNameMatcher(2, 10);
+
+    /**
+     * Resolution only reads the name index and the fuzzy matcher once the indexes are built.
+     */
+    private final LocationService service = new LocationService(
+            null, null, nameIndex, fuzzyMatcher, null, null, null, new LocationSnapshotStore(""), null);
+
+    @BeforeEach
+    void index() {
+        final List<LocationDTO> stops = List.of(
+                stop("1", "Keskustori", "0001"),
+                stop("2", "Hervanta", "0002"),
+                stop("3", "Rautatieasema", "0003")
+        );
+        nameIndex.rebuild(stops);
+        fuzzyMatcher.rebuild(stops);
+    }
+
+    @Test
+    void resolvesNamesAndStopIdsKeyedAsRequested() {
+        final StopResolutionDTO resolved = service.resolveBatch(List.of("KESKUSTORI", "hervanta"), List.of("0003"));
+
+        assertEquals(Map.of("KESKUSTORI", "1", "hervanta", "2"), idsByKey(resolved.getByName()));
+        assertEquals(Map.of("0003", "3"), idsByKey(resolved.getByStopId()));
+    }
+
+    @Test
+    void fallsBackToFuzzyMatchingForNamesTheIndexMisses() {
+        final StopResolutionDTO resolved = service.resolveBatch(List.of("Hervannassa", "Järnvägsstationen"), List.of());
+
+        assertEquals(Map.of("Hervannassa", "2", "Järnvägsstationen", "3"), idsByKey(resolved.getByName()));
+    }
+
+    @Test
+    void leavesOutWhatResolvesToNothing() {
+        final StopResolutionDTO resolved = service.resolveBatch(List.of("Pyynikki"), List.of("9999"));
+
+        assertEquals(Map.of(), resolved.getByName());
+        assertEquals(Map.of(), resolved.getByStopId());
+    }
+}
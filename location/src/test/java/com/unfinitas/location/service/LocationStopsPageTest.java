@@ -0,0 +1,118 @@
+package com.unfinitas.location.service;
+
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.LocationPageDTO;
+import com.unfinitas.location.entity.Location;
+import com.unfinitas.location.index.LocationSnapshotStore;
+import com.unfinitas.location.repository.LocationExportRepository;
+import com.unfinitas.location.repository.LocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.unfinitas.location.TestLocations.ids;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DataJpaTest
+class LocationStopsPageTest {
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TempDir
+    Path directory;
+
+    private List<String> stopIds;
+
+    @BeforeEach
+    void seed() {
+        final List<Location> locations = new ArrayList<>();
+        IntStream.range(0, 25).forEach(i -> locations.add(location("Stop " + i, Location.LocationType.STOP)));
+        IntStream.range(0, 5).forEach(i -> locations.add(location("Place " + i, Location.LocationType.POI)));
+        stopIds = locationRepository.saveAllAndFlush(locations).stream()
+                .filter(location -> location.getType() == Location.LocationType.STOP)
+                .map(Location::getId)
+                .sorted()
+                .toList();
+    }
+
+    @Test
+    void walksEveryStopOnceInIdOrder() {
+        final LocationService service = service(new LocationSnapshotStore(""));
+
+        assertEquals(stopIds, walk(service, 10));
+        assertEquals(stopIds, walk(service, 25));
+    }
+
+    @Test
+    void endsWithAnEmptyPageWhenTheLastPageIsFull() {
+        final LocationService service = service(new LocationSnapshotStore(""));
+
+        final LocationPageDTO last = service.getStopsPage(stopIds.get(19), 5);
+        assertEquals(stopIds.subList(20, 25), ids(last.getItems()));
+
+        final LocationPageDTO after = service.getStopsPage(last.getNextCursor(), 5);
+        assertEquals(List.of(), after.getItems());
+        assertNull(after.getNextCursor());
+    }
+
+    @Test
+    void pagesTheSnapshotTheSameWayWhileWarmingUp() {
+        final List<LocationDTO> all = locationRepository.findAll().stream()
+                .map(location -> LocationDTO.builder()
+                        .id(location.getId())
+                        .name(location.getName())
+                        .type(location.getType().name())
+                        .build())
+                .toList();
+        final LocationSnapshotStore snapshots = new LocationSnapshotStore(directory.resolve("locations.snapshot").toString());
+        snapshots.save(all);
+        snapshots.open();
+
+        assertEquals(stopIds, walk(service(snapshots), 10));
+    }
+
+    @Test
+    void streamsEveryStopInIdOrder() {
+        final LocationExportRepository export = new LocationExportRepository(dataSource, 4);
+
+        try (Stream<LocationDTO> stops = export.streamStops()) {
+            assertEquals(stopIds, stops.map(LocationDTO::getId).toList());
+        }
+    }
+
+    private static List<String> walk(final LocationService service, final int limit) {
+        final List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            final LocationPageDTO page = service.getStopsPage(cursor, limit);
+            ids.addAll(ids(page.getItems()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    /**
+     * Paging only reads the repository and, while warming up, the snapshot.
+     */
+    private LocationService service(final LocationSnapshotStore snapshots) {
+        return new LocationService(locationRepository, null, null, null, null, null, null, snapshots, null);
+    }
+
+    private static Location location(final String name, final Location.LocationType type) {
+        return Location.builder().name(name).type(type).build();
+    }
+}
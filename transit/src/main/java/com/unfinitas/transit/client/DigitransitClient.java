@@ -1,14 +1,23 @@
 package com.unfinitas.transit.client;
 
+import com.unfinitas.common.batch.RequestBatcher;
+import com.unfinitas.transit.gtfs.StaticTimetableProvider;
 import com.unfinitas.transit.model.DepartureDto;
-import com.unfinitas.transit.model.DigitransitResponse;
+import com.unfinitas.transit.resilience.UpstreamGuard;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class DigitransitClient {
@@ -17,63 +26,118 @@ public class DigitransitClient {
             "1", "3", "8", "25", "13", "14", "20", "31", "32"
     );
 
-    private final WebClient webClient;
+    private static final String STOP_FIELDS = """
+            {
+                name
+                stoptimesWithoutPatterns(numberOfDepartures: $n%1$d) {
+                  serviceDay
+                  realtimeDeparture
+                  scheduledDeparture
+                  trip {
+                    routeShortName
+                  }
+                }
+              }
+            """;
 
-    public DigitransitClient(@Qualifier("digitransitWebClient") final WebClient webClient) {
+    private final WebClient webClient;
+    private final StaticTimetableProvider staticTimetable;
+    private final DigitransitResponseDecoder decoder = new DigitransitResponseDecoder();
+
+    /**
+     * Query text and variable names per batch size; only the variable values change between calls.
+     */
+    private final Map<Integer, QueryTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Deadline, hedging, circuit breaker and bulkhead around every upstream POST; anything it
+     * rejects or times out ends in the fallback like any other failure.
+     */
+    private final UpstreamGuard guard;
+
+    /**
+     * Merges the stop queries of concurrent requests into one aliased GraphQL POST.
+     */
+    private final RequestBatcher<StopQuery, List<DepartureDto>> batcher;
+
+    public DigitransitClient(
+            @Qualifier("digitransitWebClient") final WebClient webClient,
+            final StaticTimetableProvider staticTimetable,
+            @Qualifier("digitransitGuard") final UpstreamGuard guard,
+            @Value("${tripmind.digitransit.batch.window}") final Duration batchWindow,
+            @Value("${tripmind.digitransit.batch.max-size}") final int batchMaxSize
+    ) {
         this.webClient = webClient;
+        this.staticTimetable = staticTimetable;
+        this.guard = guard;
+        this.batcher = new RequestBatcher<>("digitransit", batchWindow, batchMaxSize, this::fetchFromApi);
     }
 
-    public List<DepartureDto> fetchNextDepartures(final String stopId, final int limit) {
-        try {
-            return fetchFromApi(stopId, limit);
-        } catch (final Exception e) {
-            // Fallback to mock data when API is unavailable or unauthorized
-            return getMockDepartures(limit);
+    public Mono<List<DepartureDto>> fetchNextDepartures(final String stopId, final int limit) {
+        if (staticTimetable.servesFromMemory(stopId)) {
+            return Mono.fromSupplier(() -> staticTimetable.nextDepartures(stopId, limit));
         }
+
+        return Mono.fromFuture(() -> batcher.load(new StopQuery(stopId, limit)))
+                .defaultIfEmpty(List.of())
+                .onErrorResume(e -> Mono.fromSupplier(() -> getFallbackDepartures(stopId, limit)));
     }
 
-    private List<DepartureDto> fetchFromApi(final String stopId, final int limit) {
-        final String graphQlQuery = String.format("""
-                {
-                  stop(id: "%s") {
-                    name
-                    stoptimesWithoutPatterns(numberOfDepartures: %d) {
-                      serviceDay
-                      realtimeDeparture
-                      scheduledDeparture
-                      trip {
-                        routeShortName
-                      }
-                    }
-                  }
-                }
-                """, stopId, limit);
-
-        final DigitransitResponse response = webClient
-                .post()
-                .uri("/routing/v2/waltti/gtfs/v1")
-                .bodyValue(Map.of("query", graphQlQuery))
-                .retrieve()
-                .bodyToMono(DigitransitResponse.class)
-                .block();
-
-        if (response == null || response.data() == null || response.data().stop() == null) {
-            return List.of();
-        }
+    public Mono<Map<String, List<DepartureDto>>> fetchNextDepartures(final Collection<String> stopIds, final int limit) {
+        // All lookups are subscribed at once, so they land in the same batch
+        return Flux.fromIterable(stopIds)
+                .flatMapSequential(stopId -> fetchNextDepartures(stopId, limit)
+                        .map(departures -> Map.entry(stopId, departures)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
 
-        final var stop = response.data().stop();
-        if (stop.stoptimesWithoutPatterns() == null) {
-            return List.of();
-        }
+    @PreDestroy
+    public void close() {
+        batcher.close();
+    }
+
+    private CompletableFuture<Map<StopQuery, List<DepartureDto>>> fetchFromApi(final Set<StopQuery> queries) {
+        final List<StopQuery> batch = List.copyOf(queries);
+        final QueryTemplate template = templates.computeIfAbsent(batch.size(), QueryTemplate::compile);
 
-        return stop.stoptimesWithoutPatterns().stream()
-                .map(st -> {
-                    final long epochSeconds = st.serviceDay() + st.realtimeDeparture();
-                    final Instant time = Instant.ofEpochSecond(epochSeconds);
-                    final String route = st.trip() != null ? st.trip().routeShortName() : "?";
-                    return new DepartureDto(route, time);
+        final Map<String, Object> variables = HashMap.newHashMap(batch.size() * 2);
+        for (int i = 0; i < batch.size(); i++) {
+            variables.put(template.idVariables()[i], batch.get(i).stopId());
+            variables.put(template.limitVariables()[i], batch.get(i).limit());
+        }
+        final Map<String, Object> body = Map.of("query", template.query(), "variables", variables);
+
+        // The body is buffered whole (up to max-response-size) and then parsed token by token, never
+        // bound to an object tree. Decoded inside the guarded call, so a hedge that loses the race
+        // never leaves a buffer behind
+        return guard.call(() -> webClient
+                        .post()
+                        .uri("/routing/v2/waltti/gtfs/v1")
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(DataBuffer.class)
+                        .map(buffer -> decoder.decode(buffer.asInputStream(true), batch.size())))
+                .map(decoded -> {
+                    final Map<StopQuery, List<DepartureDto>> result = HashMap.newHashMap(batch.size());
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (decoded.get(i) != null) {
+                            result.put(batch.get(i), decoded.get(i));
+                        }
+                    }
+                    return result;
                 })
-                .collect(Collectors.toList());
+                .toFuture();
+    }
+
+    /**
+     * Scheduled departures from the offline timetable when the API is unavailable or unauthorized;
+     * mock data only when no GTFS feed covers the stop.
+     */
+    private List<DepartureDto> getFallbackDepartures(final String stopId, final int limit) {
+        if (staticTimetable.covers(stopId)) {
+            return staticTimetable.nextDepartures(stopId, limit);
+        }
+        return getMockDepartures(limit);
     }
 
     private List<DepartureDto> getMockDepartures(final int limit) {
@@ -89,6 +153,7 @@ public class DigitransitClient {
 
             list.add(new DepartureDto(
                     route,
+                    now.plusSeconds(offsetMin * 60L),
                     now.plusSeconds(offsetMin * 60L)
             ));
 
@@ -97,4 +162,36 @@ public class DigitransitClient {
 
         return list;
     }
+
+    private record StopQuery(
+            String stopId,
+            int limit
+    ) { }
+
+    /**
+     * {@code query Departures($id0: String!, $n0: Int, ...) { s0: stop(id: $id0) {...} ... }} for a given batch size.
+     */
+    private record QueryTemplate(
+            String query,
+            String[] idVariables,
+            String[] limitVariables
+    ) {
+        static QueryTemplate compile(final int size) {
+            final String[] idVariables = new String[size];
+            final String[] limitVariables = new String[size];
+            final StringBuilder signature = new StringBuilder();
+            final StringBuilder selection = new StringBuilder();
+
+            for (int i = 0; i < size; i++) {
+                idVariables[i] = "id" + i;
+                limitVariables[i] = "n" + i;
+                signature.append(i == 0 ? "" : ", ").append("$id").append(i).append(": String!, $n").append(i).append(": Int");
+                selection.append("  s").append(i).append(": stop(id: $id").append(i).append(") ")
+                        .append(STOP_FIELDS.formatted(i));
+            }
+
+            final String query = "query Departures(" + signature + ") {\n" + selection + "}\n";
+            return new QueryTemplate(query, idVariables, limitVariables);
+        }
+    }
 }
@@ -0,0 +1,134 @@
+package com.unfinitas.transit.client;
+
+import com.unfinitas.transit.model.DepartureDto;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.ObjectReadContext;
+import tools.jackson.core.json.JsonFactory;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes a multi-stop departures response token by token, straight into {@link DepartureDto}s.
+ * Only the fields the query asks for are read; everything else, {@code errors} included, is skipped
+ * without being materialized.
+ */
+final class DigitransitResponseDecoder {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Departures per alias ({@code s0}, {@code s1}, ...) in request order; {@code null} where the
+     * response has no stop or no stoptimes for that alias.
+     */
+    List<List<DepartureDto>> decode(final InputStream body, final int stops) {
+        final List<List<DepartureDto>> result = new ArrayList<>(Collections.nCopies(stops, null));
+        try (JsonParser parser = jsonFactory.createParser(ObjectReadContext.empty(), body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return result;
+            }
+            String name;
+            while ((name = parser.nextName()) != null) {
+                if (parser.nextToken() == JsonToken.START_OBJECT && "data".equals(name)) {
+                    readData(parser, result);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    private void readData(final JsonParser parser, final List<List<DepartureDto>> result) {
+        String alias;
+        while ((alias = parser.nextName()) != null) {
+            final JsonToken value = parser.nextToken();
+            final int index = aliasIndex(alias, result.size());
+            if (index < 0 || value != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            result.set(index, readStop(parser));
+        }
+    }
+
+    private List<DepartureDto> readStop(final JsonParser parser) {
+        List<DepartureDto> departures = null;
+        String name;
+        while ((name = parser.nextName()) != null) {
+            if (parser.nextToken() == JsonToken.START_ARRAY && "stoptimesWithoutPatterns".equals(name)) {
+                departures = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    departures.add(readStoptime(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return departures;
+    }
+
+    private DepartureDto readStoptime(final JsonParser parser) {
+        long serviceDay = 0;
+        long realtimeDeparture = 0;
+        long scheduledDeparture = 0;
+        String route = "?";
+
+        String name;
+        while ((name = parser.nextName()) != null) {
+            final JsonToken value = parser.nextToken();
+            switch (name) {
+                case "serviceDay" -> serviceDay = longValue(parser, value);
+                case "realtimeDeparture" -> realtimeDeparture = longValue(parser, value);
+                case "scheduledDeparture" -> scheduledDeparture = longValue(parser, value);
+                case "trip" -> route = value == JsonToken.START_OBJECT ? readRouteShortName(parser) : "?";
+                default -> parser.skipChildren();
+            }
+        }
+
+        return new DepartureDto(
+                route,
+                Instant.ofEpochSecond(serviceDay + realtimeDeparture),
+                Instant.ofEpochSecond(serviceDay + scheduledDeparture)
+        );
+    }
+
+    private String readRouteShortName(final JsonParser parser) {
+        String route = null;
+        String name;
+        while ((name = parser.nextName()) != null) {
+            if (parser.nextToken() == JsonToken.VALUE_STRING && "routeShortName".equals(name)) {
+                route = parser.getString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return route;
+    }
+
+    private static long longValue(final JsonParser parser, final JsonToken value) {
+        return value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : 0;
+    }
+
+    /**
+     * {@code s12} to 12, or -1 for anything that is not one of the aliases sent.
+     */
+    private static int aliasIndex(final String alias, final int stops) {
+        if (alias.length() < 2 || alias.charAt(0) != 's') {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 1; i < alias.length(); i++) {
+            final char c = alias.charAt(i);
+            if (c < '0' || c > '9' || index >= stops) {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index < stops ? index : -1;
+    }
+}
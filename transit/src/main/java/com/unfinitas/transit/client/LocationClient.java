@@ -1,45 +1,112 @@
 package com.unfinitas.transit.client;
 
+import com.unfinitas.common.batch.RequestBatcher;
+import com.unfinitas.common.dto.LocationChangesDTO;
+import com.unfinitas.common.dto.LocationDTO;
+import com.unfinitas.common.dto.StopResolutionDTO;
+import com.unfinitas.common.dto.StopResolutionRequestDTO;
+import com.unfinitas.common.replica.LocationCatalogReplica;
+import com.unfinitas.common.replica.LocationReplicaSync;
 import com.unfinitas.transit.model.LocationSearchResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpStatusCode;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
-import static reactor.netty.http.HttpConnectionLiveness.log;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Component
 public class LocationClient {
     private final WebClient webClient;
 
-    public LocationClient(@Qualifier("locationWebClient") final WebClient webClient) {
+    /**
+     * Answers lookups in-process once synced; misses still go to the location service.
+     */
+    private final LocationCatalogReplica replica;
+
+    /**
+     * Concurrent single lookups are merged into one {@code /resolve/batch} call per window.
+     */
+    private final RequestBatcher<String, LocationSearchResult> byName;
+    private final RequestBatcher<String, LocationSearchResult> byStopId;
+
+    public LocationClient(
+            @Qualifier("locationWebClient") final WebClient webClient,
+            final LocationCatalogReplica replica,
+            @Value("${tripmind.location-service.batch.window}") final Duration batchWindow,
+            @Value("${tripmind.location-service.batch.max-size}") final int batchMaxSize
+    ) {
         this.webClient = webClient;
+        this.replica = replica;
+        this.byName = new RequestBatcher<>("location-names", batchWindow, batchMaxSize,
+                names -> resolveStops(names, List.of()).map(resolved -> toResults(resolved.getByName())).toFuture());
+        this.byStopId = new RequestBatcher<>("location-stops", batchWindow, batchMaxSize,
+                stopIds -> resolveStops(List.of(), stopIds).map(resolved -> toResults(resolved.getByStopId())).toFuture());
+    }
+
+    public Mono<LocationSearchResult> resolveStop(final String stopId) {
+        return replica.findByStopId(stopId)
+                .map(location -> Mono.just(toResult(location)))
+                .orElseGet(() -> Mono.fromFuture(() -> byStopId.load(stopId), true));
+    }
+
+    public Mono<LocationSearchResult> resolveStopByName(final String stopName) {
+        return replica.findByName(stopName)
+                .map(location -> Mono.just(toResult(location)))
+                .orElseGet(() -> Mono.fromFuture(() -> byName.load(stopName), true))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Stop not found: " + stopName)));
     }
 
-    public LocationSearchResult resolveStop(final String stopId) {
-        return webClient
-                .get()
-                .uri("/api/locations/stop/{id}",stopId)
+    /**
+     * The location change feed since the given version, for {@link LocationReplicaSync}.
+     */
+    public Mono<LocationChangesDTO> fetchChanges(final long since, final String epoch) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/api/locations/changes")
+                        .queryParam("since", since)
+                        .queryParamIfPresent("epoch", Optional.ofNullable(epoch))
+                        .build())
                 .retrieve()
-                .bodyToMono(LocationSearchResult.class)
-                .block();
+                .bodyToMono(LocationChangesDTO.class);
     }
 
-    public LocationSearchResult resolveStopByName(final String stopName) {
-        final var results = webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .path("/api/locations/search")
-                        .queryParam("name", stopName)
+    /**
+     * Resolves many names and stop IDs in one request.
+     */
+    public Mono<StopResolutionDTO> resolveStops(final Collection<String> stopNames, final Collection<String> stopIds) {
+        return webClient.post()
+                .uri("/api/locations/resolve/batch")
+                .bodyValue(StopResolutionRequestDTO.builder()
+                        .names(List.copyOf(stopNames))
+                        .stopIds(List.copyOf(stopIds))
                         .build())
                 .retrieve()
-                .bodyToFlux(LocationSearchResult.class)
-                .collectList()
-                .block();
+                .bodyToMono(StopResolutionDTO.class);
+    }
 
-        if (results == null || results.isEmpty()) {
-            throw new RuntimeException("Stop not found: " + stopName);
+    @PreDestroy
+    public void close() {
+        byName.close();
+        byStopId.close();
+    }
+
+    private static Map<String, LocationSearchResult> toResults(final Map<String, LocationDTO> locations) {
+        final Map<String, LocationSearchResult> results = new HashMap<>();
+        if (locations == null) {
+            return results;
         }
+        locations.forEach((key, location) -> results.put(key, toResult(location)));
+        return results;
+    }
 
-        return results.getFirst();
+    private static LocationSearchResult toResult(final LocationDTO location) {
+        return new LocationSearchResult(location.getId(), location.getName(), location.getStopId());
     }
 }
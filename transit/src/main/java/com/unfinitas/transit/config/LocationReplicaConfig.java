@@ -0,0 +1,37 @@
+package com.unfinitas.transit.config;
+
+import com.unfinitas.transit.client.LocationClient;
+import com.unfinitas.common.replica.LocationCatalogReplica;
+import com.unfinitas.common.replica.LocationReplicaSync;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * In-process copy of the location catalog, kept current from the location service's change feed.
+ */
+@Configuration
+public class LocationReplicaConfig {
+
+    @Bean
+    public LocationCatalogReplica locationCatalogReplica() {
+        return new LocationCatalogReplica();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public LocationReplicaSync locationReplicaSync(
+            final LocationCatalogReplica replica,
+            final LocationClient locationClient,
+            @Value("${tripmind.location-service.replica.poll-interval}") final Duration pollInterval,
+            @Value("${tripmind.location-service.replica.timeout}") final Duration timeout
+    ) {
+        return new LocationReplicaSync(
+                replica,
+                (since, epoch) -> locationClient.fetchChanges(since, epoch).toFuture(),
+                pollInterval,
+                timeout
+        );
+    }
+}
@@ -0,0 +1,36 @@
+package com.unfinitas.transit.config;
+
+import com.unfinitas.transit.resilience.CircuitBreaker;
+import com.unfinitas.transit.resilience.UpstreamGuard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ResilienceConfig {
+
+    @Bean(name = "digitransitGuard")
+    public UpstreamGuard digitransitGuard(
+            @Value("${tripmind.digitransit.resilience.timeout}") final Duration timeout,
+            @Value("${tripmind.digitransit.resilience.hedge.enabled}") final boolean hedging,
+            @Value("${tripmind.digitransit.resilience.hedge.percentile}") final double hedgePercentile,
+            @Value("${tripmind.digitransit.resilience.hedge.min-delay}") final Duration hedgeMinDelay,
+            @Value("${tripmind.digitransit.resilience.hedge.min-samples}") final int hedgeMinSamples,
+            @Value("${tripmind.digitransit.resilience.circuit-breaker.window}") final int window,
+            @Value("${tripmind.digitransit.resilience.circuit-breaker.failure-rate}") final double failureRate,
+            @Value("${tripmind.digitransit.resilience.circuit-breaker.open-for}") final Duration openFor,
+            @Value("${tripmind.digitransit.resilience.bulkhead.max-concurrent}") final int maxConcurrent) {
+        return new UpstreamGuard(
+                "digitransit",
+                timeout,
+                hedging,
+                hedgePercentile,
+                hedgeMinDelay,
+                hedgeMinSamples,
+                new CircuitBreaker("digitransit", window, failureRate, openFor),
+                maxConcurrent
+        );
+    }
+}
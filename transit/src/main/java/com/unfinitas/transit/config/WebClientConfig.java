@@ -3,6 +3,7 @@ package com.unfinitas.transit.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @Configuration
@@ -10,17 +11,23 @@ public class WebClientConfig {
 
     @Bean(name = "locationWebClient")
     public WebClient locationWebClient(
-            @Value("${tripmind.location-service.base-url}") final String baseUrl) {
+            @Value("${tripmind.location-service.base-url}") final String baseUrl,
+            @Value("${tripmind.location-service.max-response-size}") final DataSize maxResponseSize) {
+        // A full change-feed read carries the whole catalog
         return WebClient.builder()
                 .baseUrl(baseUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxResponseSize.toBytes()))
                 .build();
     }
 
     @Bean(name = "digitransitWebClient")
     public WebClient digitransitWebClient(
-            @Value("${tripmind.digitransit.base-url}") final String baseUrl) {
+            @Value("${tripmind.digitransit.base-url}") final String baseUrl,
+            @Value("${tripmind.digitransit.max-response-size}") final DataSize maxResponseSize) {
+        // A batched response carries up to batch.max-size stops at full departure depth
         return WebClient.builder()
                 .baseUrl(baseUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxResponseSize.toBytes()))
                 .build();
     }
 }
@@ -1,20 +1,37 @@
 package com.unfinitas.transit.controller;
 
+import com.unfinitas.transit.model.DepartureChange;
 import com.unfinitas.transit.model.DepartureDto;
 import com.unfinitas.transit.model.NextDeparturesResponse;
+import com.unfinitas.transit.model.PrefetchStats;
+import com.unfinitas.transit.service.DepartureBoardService;
+import com.unfinitas.transit.service.HotStopPrefetcher;
 import com.unfinitas.transit.service.TransitService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/transit")
 public class TransitController {
     private final TransitService transitService;
+    private final DepartureBoardService departureBoardService;
+    private final HotStopPrefetcher hotStopPrefetcher;
 
-    public TransitController(final TransitService transitService) {
+    public TransitController(
+            final TransitService transitService,
+            final DepartureBoardService departureBoardService,
+            final HotStopPrefetcher hotStopPrefetcher
+    ) {
         this.transitService = transitService;
+        this.departureBoardService = departureBoardService;
+        this.hotStopPrefetcher = hotStopPrefetcher;
     }
 
     @GetMapping("/health")
@@ -23,19 +40,48 @@ public class TransitController {
     }
 
     @GetMapping("/next")
-    public ResponseEntity<NextDeparturesResponse> getNextDepartures(
+    public Mono<ResponseEntity<NextDeparturesResponse>> getNextDepartures(
             @RequestParam("stopName") final String stopName,
             @RequestParam(value = "limit", defaultValue = "5") final int limit
     ) {
-        final NextDeparturesResponse response = transitService.getNextDepartures(stopName, limit);
-        return ResponseEntity.ok(response);
+        if (limit < 0) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return transitService.getNextDepartures(stopName, limit).map(ResponseEntity::ok);
     }
 
     @GetMapping("/departures")
-    public ResponseEntity<List<DepartureDto>> getDeparturesByStopId(
+    public Mono<ResponseEntity<List<DepartureDto>>> getDeparturesByStopId(
             @RequestParam("stopId") final String stopId,
             @RequestParam(value = "limit", defaultValue = "5") final int limit
     ) {
-        return ResponseEntity.ok(transitService.getDeparturesByStopId(stopId, limit));
+        if (limit < 0) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return transitService.getDeparturesByStopId(stopId, limit).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/departures/batch")
+    public Mono<ResponseEntity<Map<String, List<DepartureDto>>>> getDeparturesByStopIds(
+            @RequestParam("stopIds") final List<String> stopIds,
+            @RequestParam(value = "limit", defaultValue = "5") final int limit
+    ) {
+        if (limit < 0) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return transitService.getDeparturesByStopIds(stopIds, limit).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/departures/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<DepartureChange>> streamDepartures(@RequestParam("stopId") final String stopId) {
+        return departureBoardService.watch(stopId)
+                .map(change -> ServerSentEvent.builder(change)
+                        .event(change.type().name())
+                        .build());
+    }
+
+    @GetMapping("/prefetch/stats")
+    public ResponseEntity<PrefetchStats> getPrefetchStats() {
+        return ResponseEntity.ok(hotStopPrefetcher.stats());
     }
 }
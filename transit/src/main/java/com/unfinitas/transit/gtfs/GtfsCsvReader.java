@@ -0,0 +1,183 @@
+package com.unfinitas.transit.gtfs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Forward-only reader for GTFS CSV files. A row is split into field offsets over the line buffer,
+ * and fields are only materialized as strings (or parsed as numbers/times) when asked for, which
+ * keeps large files like {@code stop_times.txt} cheap to scan.
+ */
+final class GtfsCsvReader implements AutoCloseable {
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+
+    private String line;
+    private final StringBuilder unquoted = new StringBuilder();
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int fieldCount;
+
+    GtfsCsvReader(final BufferedReader reader) {
+        this.reader = reader;
+        if (next()) {
+            for (int i = 0; i < fieldCount; i++) {
+                String name = getString(i).trim();
+                if (i == 0 && !name.isEmpty() && name.charAt(0) == '\uFEFF') {
+                    name = name.substring(1);
+                }
+                columns.put(name, i);
+            }
+        }
+    }
+
+    /**
+     * Index of a header column, or -1 when the file does not have it.
+     */
+    int column(final String name) {
+        return columns.getOrDefault(name, -1);
+    }
+
+    int requireColumn(final String name) {
+        final int column = column(name);
+        if (column < 0) {
+            throw new IllegalStateException("GTFS file is missing column " + name);
+        }
+        return column;
+    }
+
+    boolean next() {
+        try {
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+            } while (line.isBlank());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        split();
+        return true;
+    }
+
+    String getString(final int column) {
+        if (column < 0 || column >= fieldCount) {
+            return "";
+        }
+        if (!quoted[column]) {
+            return line.substring(starts[column], ends[column]);
+        }
+
+        unquoted.setLength(0);
+        for (int i = starts[column]; i < ends[column]; i++) {
+            final char c = line.charAt(i);
+            unquoted.append(c);
+            if (c == '"') {
+                i++; // "" is an escaped quote
+            }
+        }
+        return unquoted.toString();
+    }
+
+    int getInt(final int column, final int defaultValue) {
+        if (column < 0 || column >= fieldCount || starts[column] == ends[column]) {
+            return defaultValue;
+        }
+        int value = 0;
+        for (int i = starts[column]; i < ends[column]; i++) {
+            final char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Parses {@code H:MM:SS} / {@code HH:MM:SS} (hours may exceed 24) into seconds since the
+     * service day's reference midnight, or -1 for an empty field.
+     */
+    int getTime(final int column) {
+        if (column < 0 || column >= fieldCount || starts[column] == ends[column]) {
+            return -1;
+        }
+        int seconds = 0;
+        int part = 0;
+        for (int i = starts[column]; i < ends[column]; i++) {
+            final char c = line.charAt(i);
+            if (c == ':') {
+                seconds = (seconds + part) * 60;
+                part = 0;
+            } else if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+            }
+        }
+        return seconds + part;
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void split() {
+        fieldCount = 0;
+        int i = 0;
+        final int length = line.length();
+        while (true) {
+            ensureCapacity(fieldCount + 1);
+            if (i < length && line.charAt(i) == '"') {
+                final int start = ++i;
+                while (i < length) {
+                    if (line.charAt(i) == '"') {
+                        if (i + 1 < length && line.charAt(i + 1) == '"') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                starts[fieldCount] = start;
+                ends[fieldCount] = i;
+                quoted[fieldCount] = true;
+                while (i < length && line.charAt(i) != ',') {
+                    i++;
+                }
+            } else {
+                final int start = i;
+                while (i < length && line.charAt(i) != ',') {
+                    i++;
+                }
+                starts[fieldCount] = start;
+                ends[fieldCount] = i;
+                quoted[fieldCount] = false;
+            }
+            fieldCount++;
+            if (i >= length) {
+                return;
+            }
+            i++; // skip the comma
+        }
+    }
+
+    private void ensureCapacity(final int size) {
+        if (size > starts.length) {
+            final int capacity = starts.length * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            quoted = Arrays.copyOf(quoted, capacity);
+        }
+    }
+}
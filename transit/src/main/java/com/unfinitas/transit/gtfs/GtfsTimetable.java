@@ -0,0 +1,281 @@
+package com.unfinitas.transit.gtfs;
+
+import com.unfinitas.transit.model.DepartureDto;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static GTFS timetable held in primitive columns. Stop times are grouped by stop (CSR layout:
+ * the rows of stop {@code s} are {@code stopOffsets[s]..stopOffsets[s + 1]}) and sorted by
+ * departure second within each stop, so "next N departures at X after T" is a binary search and
+ * a short forward scan per candidate service day.
+ *
+ * <p>Realtime delays live in two more row-aligned columns written by {@link RealtimeFeedIngestor}:
+ * {@code delays[row]} applies only on the service date in {@code delayDates[row]}. A single
+ * ingestion thread writes them while queries read; a query may see a trip half-updated for one
+ * cycle, which is harmless for a departure board.
+ */
+public final class GtfsTimetable {
+
+    static final int SKIPPED = Integer.MIN_VALUE;
+
+    private final ZoneId zone;
+    private final Map<String, Integer> stopIndex;
+    private final String[] routeNames;
+    private final int[] tripRoutes;
+    private final int[] tripServices;
+    private final ServiceCalendar calendar;
+
+    private final int[] stopOffsets;
+    private final int[] times;
+    private final int[] trips;
+    private final int[] sequences;
+
+    // Rows of trip t ordered by stop_sequence are tripRows[tripOffsets[t]..tripOffsets[t + 1]]
+    private final int[] tripOffsets;
+    private final int[] tripRows;
+    private final IdTable tripIds;
+    private final IdTable stopIds;
+
+    private final int[] delays;
+    private final int[] delayDates;
+    private volatile int maxDelay;
+    private volatile int minDelay;
+    private volatile Instant realtimeUpdatedAt;
+
+    GtfsTimetable(
+            final ZoneId zone,
+            final Map<String, Integer> stopIndex,
+            final Map<String, Integer> tripIndex,
+            final String[] routeNames,
+            final int[] tripRoutes,
+            final int[] tripServices,
+            final ServiceCalendar calendar,
+            final int[] stopOffsets,
+            final int[] times,
+            final int[] trips,
+            final int[] sequences,
+            final int[] tripOffsets,
+            final int[] tripRows
+    ) {
+        this.zone = zone;
+        this.stopIndex = stopIndex;
+        this.routeNames = routeNames;
+        this.tripRoutes = tripRoutes;
+        this.tripServices = tripServices;
+        this.calendar = calendar;
+        this.stopOffsets = stopOffsets;
+        this.times = times;
+        this.trips = trips;
+        this.sequences = sequences;
+        this.tripOffsets = tripOffsets;
+        this.tripRows = tripRows;
+        this.tripIds = IdTable.of(tripIndex);
+        this.stopIds = IdTable.of(stopIndex);
+        this.delays = new int[times.length];
+        this.delayDates = new int[times.length];
+    }
+
+    public boolean hasStop(final String stopId) {
+        return stopIndex.containsKey(stopId);
+    }
+
+    public int stopCount() {
+        return stopOffsets.length - 1;
+    }
+
+    public int tripCount() {
+        return tripRoutes.length;
+    }
+
+    public int stopTimeCount() {
+        return times.length;
+    }
+
+    /**
+     * Bytes held by the primitive columns and ID tables, computed from their lengths. Leaves out
+     * the stop index map and route name strings, which are small next to the stop time columns.
+     */
+    public long footprintBytes() {
+        final long ints = (long) tripRoutes.length + tripServices.length + stopOffsets.length
+                + times.length + trips.length + sequences.length + tripOffsets.length + tripRows.length
+                + delays.length + delayDates.length;
+        return Integer.BYTES * ints + tripIds.footprintBytes() + stopIds.footprintBytes() + calendar.footprintBytes();
+    }
+
+    /**
+     * Whether a realtime feed was applied within {@code maxAge}.
+     */
+    public boolean hasRealtime(final Duration maxAge) {
+        final Instant updated = realtimeUpdatedAt;
+        return updated != null && updated.plus(maxAge).isAfter(Instant.now());
+    }
+
+    public List<DepartureDto> nextDepartures(final String stopId, final Instant after, final int limit) {
+        final Integer stop = stopIndex.get(stopId);
+        if (stop == null || limit <= 0) {
+            return List.of();
+        }
+
+        final int lateBound = maxDelay;
+        final int earlyBound = minDelay;
+        final int end = stopOffsets[stop + 1];
+
+        // A service day's times may run past 24:00, so yesterday's service can still be departing
+        final LocalDate today = after.atZone(zone).toLocalDate();
+        long[] epochs = new long[limit * 3];
+        long[] scheduled = new long[limit * 3];
+        int[] rows = new int[limit * 3];
+        int found = 0;
+
+        for (int day = -1; day <= 1; day++) {
+            final LocalDate serviceDate = today.plusDays(day);
+            final int date = ServiceCalendar.toInt(serviceDate);
+            final long reference = serviceDayStart(serviceDate);
+            final BitSet active = calendar.activeOn(serviceDate);
+            final long threshold = after.getEpochSecond() - reference;
+
+            // Late trips scheduled before the threshold may still be to come
+            int row = firstAfter(stopOffsets[stop], end, threshold - lateBound);
+            int taken = 0;
+            long latest = Long.MIN_VALUE;
+            for (; row < end; row++) {
+                // Once limit departures are found, stop where even the earliest-running trip is later
+                if (taken >= limit && times[row] + earlyBound > latest) {
+                    break;
+                }
+                if (!active.get(tripServices[trips[row]])) {
+                    continue;
+                }
+                final int delay = delayDates[row] == date ? delays[row] : 0;
+                if (delay == SKIPPED || times[row] + delay <= threshold) {
+                    continue;
+                }
+                if (found == epochs.length) {
+                    epochs = Arrays.copyOf(epochs, found * 2);
+                    scheduled = Arrays.copyOf(scheduled, found * 2);
+                    rows = Arrays.copyOf(rows, found * 2);
+                }
+                epochs[found] = reference + times[row] + delay;
+                scheduled[found] = reference + times[row];
+                rows[found] = row;
+                latest = Math.max(latest, times[row] + delay);
+                found++;
+                taken++;
+            }
+        }
+
+        final long[] foundEpochs = epochs;
+        final Integer[] order = new Integer[found];
+        for (int i = 0; i < found; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(foundEpochs[a], foundEpochs[b]));
+
+        final List<DepartureDto> departures = new ArrayList<>(Math.min(limit, found));
+        for (int i = 0; i < found && i < limit; i++) {
+            final int row = rows[order[i]];
+            departures.add(new DepartureDto(
+                    routeNames[tripRoutes[trips[row]]],
+                    Instant.ofEpochSecond(epochs[order[i]]),
+                    Instant.ofEpochSecond(scheduled[order[i]])
+            ));
+        }
+        return departures;
+    }
+
+    ZoneId zone() {
+        return zone;
+    }
+
+    IdTable tripIds() {
+        return tripIds;
+    }
+
+    IdTable stopIds() {
+        return stopIds;
+    }
+
+    int tripRowStart(final int trip) {
+        return tripOffsets[trip];
+    }
+
+    int tripRowEnd(final int trip) {
+        return tripOffsets[trip + 1];
+    }
+
+    int tripRow(final int position) {
+        return tripRows[position];
+    }
+
+    int sequence(final int row) {
+        return sequences[row];
+    }
+
+    int scheduledTime(final int row) {
+        return times[row];
+    }
+
+    /**
+     * Stop index of a row; rows are grouped by stop, so this is a search over the stop offsets.
+     */
+    int stopOf(final int row) {
+        int low = 0;
+        int high = stopOffsets.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (stopOffsets[mid] <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    void setDelay(final int row, final int date, final int delay) {
+        delays[row] = delay;
+        delayDates[row] = date;
+    }
+
+    void clearDelay(final int row) {
+        delayDates[row] = 0;
+    }
+
+    void realtimeApplied(final int maxDelay, final int minDelay) {
+        this.maxDelay = maxDelay;
+        this.minDelay = minDelay;
+        this.realtimeUpdatedAt = Instant.now();
+    }
+
+    /**
+     * GTFS measures stop times from "noon minus 12h" of the service date, which differs from
+     * midnight on daylight-saving transition days.
+     */
+    long serviceDayStart(final LocalDate date) {
+        return date.atTime(LocalTime.NOON).atZone(zone).minusHours(12).toEpochSecond();
+    }
+
+    private int firstAfter(final int from, final int to, final long threshold) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (times[mid] > threshold) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,284 @@
+package com.unfinitas.transit.gtfs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Builds a {@link GtfsTimetable} from a GTFS static feed, either a zip or an unpacked directory,
+ * in one streaming pass per file.
+ */
+public final class GtfsTimetableLoader {
+
+    private static final ZoneId DEFAULT_ZONE = ZoneId.of("Europe/Helsinki");
+
+    private GtfsTimetableLoader() {
+    }
+
+    public static GtfsTimetable load(final Path feed) throws IOException {
+        if (Files.isDirectory(feed)) {
+            return load(name -> {
+                final Path file = feed.resolve(name);
+                return Files.exists(file) ? Files.newBufferedReader(file, StandardCharsets.UTF_8) : null;
+            });
+        }
+
+        try (ZipFile zip = new ZipFile(feed.toFile())) {
+            return load(name -> {
+                final ZipEntry entry = zip.getEntry(name);
+                return entry == null ? null : new BufferedReader(
+                        new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8), 1 << 16);
+            });
+        }
+    }
+
+    private static GtfsTimetable load(final FeedSource source) throws IOException {
+        final ZoneId zone = readZone(source);
+
+        final Map<String, Integer> stopIndex = new HashMap<>();
+        try (GtfsCsvReader stops = open(source, "stops.txt", true)) {
+            final int id = stops.requireColumn("stop_id");
+            while (stops.next()) {
+                stopIndex.putIfAbsent(stops.getString(id), stopIndex.size());
+            }
+        }
+
+        final Map<String, Integer> routeIndex = new HashMap<>();
+        final List<String> routeNames = new ArrayList<>();
+        try (GtfsCsvReader routes = open(source, "routes.txt", true)) {
+            final int id = routes.requireColumn("route_id");
+            final int shortName = routes.column("route_short_name");
+            final int longName = routes.column("route_long_name");
+            while (routes.next()) {
+                final String name = routes.getString(shortName);
+                routeIndex.put(routes.getString(id), routeNames.size());
+                routeNames.add(name.isEmpty() ? routes.getString(longName) : name);
+            }
+        }
+
+        final CalendarBuilder calendar = new CalendarBuilder();
+        try (GtfsCsvReader services = open(source, "calendar.txt", false)) {
+            if (services != null) {
+                final int id = services.requireColumn("service_id");
+                final int start = services.requireColumn("start_date");
+                final int end = services.requireColumn("end_date");
+                final int[] days = {
+                        services.requireColumn("monday"), services.requireColumn("tuesday"),
+                        services.requireColumn("wednesday"), services.requireColumn("thursday"),
+                        services.requireColumn("friday"), services.requireColumn("saturday"),
+                        services.requireColumn("sunday")
+                };
+                while (services.next()) {
+                    final int service = calendar.service(services.getString(id));
+                    int mask = 0;
+                    for (int day = 0; day < days.length; day++) {
+                        if (services.getInt(days[day], 0) == 1) {
+                            mask |= 1 << day;
+                        }
+                    }
+                    calendar.startDates.set(service, services.getInt(start, 0));
+                    calendar.endDates.set(service, services.getInt(end, 0));
+                    calendar.weekdays.set(service, mask);
+                }
+            }
+        }
+        try (GtfsCsvReader exceptions = open(source, "calendar_dates.txt", false)) {
+            if (exceptions != null) {
+                final int id = exceptions.requireColumn("service_id");
+                final int date = exceptions.requireColumn("date");
+                final int type = exceptions.requireColumn("exception_type");
+                while (exceptions.next()) {
+                    final int service = calendar.service(exceptions.getString(id));
+                    (exceptions.getInt(type, 0) == 1 ? calendar.added : calendar.removed)
+                            .get(service).add(exceptions.getInt(date, 0));
+                }
+            }
+        }
+
+        final Map<String, Integer> tripIndex = new HashMap<>();
+        final IntColumn tripRoutes = new IntColumn();
+        final IntColumn tripServices = new IntColumn();
+        try (GtfsCsvReader trips = open(source, "trips.txt", true)) {
+            final int id = trips.requireColumn("trip_id");
+            final int route = trips.requireColumn("route_id");
+            final int service = trips.requireColumn("service_id");
+            while (trips.next()) {
+                tripIndex.put(trips.getString(id), tripRoutes.size());
+                tripRoutes.add(routeIndex.getOrDefault(trips.getString(route), 0));
+                tripServices.add(calendar.service(trips.getString(service)));
+            }
+        }
+
+        final IntColumn stopTimeStops = new IntColumn();
+        final IntColumn stopTimeTimes = new IntColumn();
+        final IntColumn stopTimeTrips = new IntColumn();
+        final IntColumn stopTimeSequences = new IntColumn();
+        try (GtfsCsvReader stopTimes = open(source, "stop_times.txt", true)) {
+            final int trip = stopTimes.requireColumn("trip_id");
+            final int stop = stopTimes.requireColumn("stop_id");
+            final int departure = stopTimes.requireColumn("departure_time");
+            final int arrival = stopTimes.column("arrival_time");
+            final int sequence = stopTimes.requireColumn("stop_sequence");
+            while (stopTimes.next()) {
+                final Integer stopIdx = stopIndex.get(stopTimes.getString(stop));
+                final Integer tripIdx = tripIndex.get(stopTimes.getString(trip));
+                int time = stopTimes.getTime(departure);
+                if (time < 0) {
+                    time = stopTimes.getTime(arrival);
+                }
+                if (stopIdx == null || tripIdx == null || time < 0) {
+                    continue;
+                }
+                stopTimeStops.add(stopIdx);
+                stopTimeTimes.add(time);
+                stopTimeTrips.add(tripIdx);
+                stopTimeSequences.add(stopTimes.getInt(sequence, 0));
+            }
+        }
+
+        // Group rows by stop (counting sort), then order each stop's rows by time
+        final int stopCount = stopIndex.size();
+        final int rowCount = stopTimeStops.size();
+        final int[] stopOffsets = offsets(stopTimeStops.toArray(), stopCount);
+
+        final long[] keys = new long[rowCount];
+        final int[] cursor = Arrays.copyOf(stopOffsets, stopCount);
+        for (int row = 0; row < rowCount; row++) {
+            keys[cursor[stopTimeStops.get(row)]++] = ((long) stopTimeTimes.get(row) << 32) | row;
+        }
+        for (int stop = 0; stop < stopCount; stop++) {
+            Arrays.sort(keys, stopOffsets[stop], stopOffsets[stop + 1]);
+        }
+
+        final int[] times = new int[rowCount];
+        final int[] trips = new int[rowCount];
+        final int[] sequences = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            final int parsed = (int) keys[row];
+            times[row] = (int) (keys[row] >>> 32);
+            trips[row] = stopTimeTrips.get(parsed);
+            sequences[row] = stopTimeSequences.get(parsed);
+        }
+
+        // Per-trip view of the same rows, ordered by stop_sequence, for realtime updates
+        final int tripCount = tripRoutes.size();
+        final int[] tripOffsets = offsets(trips, tripCount);
+        final long[] tripKeys = new long[rowCount];
+        final int[] tripCursor = Arrays.copyOf(tripOffsets, tripCount);
+        for (int row = 0; row < rowCount; row++) {
+            tripKeys[tripCursor[trips[row]]++] = ((long) sequences[row] << 32) | row;
+        }
+        final int[] tripRows = new int[rowCount];
+        for (int trip = 0; trip < tripCount; trip++) {
+            Arrays.sort(tripKeys, tripOffsets[trip], tripOffsets[trip + 1]);
+        }
+        for (int i = 0; i < rowCount; i++) {
+            tripRows[i] = (int) tripKeys[i];
+        }
+
+        return new GtfsTimetable(
+                zone,
+                Map.copyOf(stopIndex),
+                tripIndex,
+                routeNames.toArray(String[]::new),
+                tripRoutes.toArray(),
+                tripServices.toArray(),
+                calendar.build(),
+                stopOffsets,
+                times,
+                trips,
+                sequences,
+                tripOffsets,
+                tripRows
+        );
+    }
+
+    /**
+     * CSR offsets: the entries with group {@code g} end up at {@code offsets[g]..offsets[g + 1]}.
+     */
+    private static int[] offsets(final int[] groups, final int groupCount) {
+        final int[] offsets = new int[groupCount + 1];
+        for (final int group : groups) {
+            offsets[group + 1]++;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            offsets[group + 1] += offsets[group];
+        }
+        return offsets;
+    }
+
+    private static ZoneId readZone(final FeedSource source) throws IOException {
+        try (GtfsCsvReader agency = open(source, "agency.txt", false)) {
+            if (agency != null && agency.next()) {
+                final String zone = agency.getString(agency.column("agency_timezone"));
+                if (!zone.isBlank()) {
+                    return ZoneId.of(zone);
+                }
+            }
+        }
+        return DEFAULT_ZONE;
+    }
+
+    private static GtfsCsvReader open(final FeedSource source, final String name, final boolean required)
+            throws IOException {
+        final BufferedReader reader = source.open(name);
+        if (reader == null) {
+            if (required) {
+                throw new IOException("GTFS feed is missing " + name);
+            }
+            return null;
+        }
+        return new GtfsCsvReader(reader);
+    }
+
+    @FunctionalInterface
+    private interface FeedSource {
+        BufferedReader open(String name) throws IOException;
+    }
+
+    private static final class CalendarBuilder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final IntColumn startDates = new IntColumn();
+        private final IntColumn endDates = new IntColumn();
+        private final IntColumn weekdays = new IntColumn();
+        private final List<IntColumn> added = new ArrayList<>();
+        private final List<IntColumn> removed = new ArrayList<>();
+
+        int service(final String id) {
+            return ids.computeIfAbsent(id, key -> {
+                startDates.add(0);
+                endDates.add(0);
+                weekdays.add(0);
+                added.add(new IntColumn());
+                removed.add(new IntColumn());
+                return ids.size();
+            });
+        }
+
+        ServiceCalendar build() {
+            final int size = ids.size();
+            final byte[] masks = new byte[size];
+            final int[][] addedDates = new int[size][];
+            final int[][] removedDates = new int[size][];
+            for (int service = 0; service < size; service++) {
+                masks[service] = (byte) weekdays.get(service);
+                addedDates[service] = added.get(service).toArray();
+                removedDates[service] = removed.get(service).toArray();
+                Arrays.sort(addedDates[service]);
+                Arrays.sort(removedDates[service]);
+            }
+            return new ServiceCalendar(startDates.toArray(), endDates.toArray(), masks, addedDates, removedDates);
+        }
+    }
+}
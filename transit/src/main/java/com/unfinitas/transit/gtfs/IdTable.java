@@ -0,0 +1,93 @@
+package com.unfinitas.transit.gtfs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Open-addressing table from UTF-8 ID bytes to dense indexes, so IDs read straight out of a
+ * protobuf buffer can be resolved without creating a {@code String} per lookup.
+ */
+final class IdTable {
+
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final int[] slots;
+    private final int mask;
+
+    private IdTable(final byte[] bytes, final int[] offsets, final int[] slots) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.slots = slots;
+        this.mask = slots.length - 1;
+    }
+
+    static IdTable of(final Map<String, Integer> index) {
+        final byte[][] encoded = new byte[index.size()][];
+        int total = 0;
+        for (final Map.Entry<String, Integer> entry : index.entrySet()) {
+            encoded[entry.getValue()] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            total += encoded[entry.getValue()].length;
+        }
+
+        final byte[] bytes = new byte[total];
+        final int[] offsets = new int[encoded.length + 1];
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, bytes, offsets[i], encoded[i].length);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+
+        final int capacity = Integer.highestOneBit(Math.max(2, encoded.length * 2 - 1)) << 1;
+        final int[] slots = new int[capacity];
+        for (int i = 0; i < encoded.length; i++) {
+            int slot = hash(encoded[i], 0, encoded[i].length) & (capacity - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = i + 1;
+        }
+        return new IdTable(bytes, offsets, slots);
+    }
+
+    /**
+     * Bytes held by the table's arrays.
+     */
+    long footprintBytes() {
+        return bytes.length + (long) Integer.BYTES * (offsets.length + slots.length);
+    }
+
+    /**
+     * Index of the ID stored in {@code buffer[offset, offset + length)}, or -1 if unknown.
+     */
+    int find(final byte[] buffer, final int offset, final int length) {
+        int slot = hash(buffer, offset, length) & mask;
+        while (slots[slot] != 0) {
+            final int index = slots[slot] - 1;
+            if (matches(index, buffer, offset, length)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean matches(final int index, final byte[] buffer, final int offset, final int length) {
+        final int start = offsets[index];
+        if (offsets[index + 1] - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[start + i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(final byte[] buffer, final int offset, final int length) {
+        int hash = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ buffer[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,35 @@
+package com.unfinitas.transit.gtfs;
+
+import java.util.Arrays;
+
+/**
+ * Growable {@code int} column used while loading feeds, to avoid boxing millions of values.
+ */
+final class IntColumn {
+
+    private int[] values = new int[16];
+    private int size;
+
+    void add(final int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(final int index) {
+        return values[index];
+    }
+
+    void set(final int index, final int value) {
+        values[index] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
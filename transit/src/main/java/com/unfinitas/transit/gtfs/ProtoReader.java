@@ -0,0 +1,68 @@
+package com.unfinitas.transit.gtfs;
+
+/**
+ * Minimal protobuf wire-format cursor over a byte array. Nested messages are read by taking
+ * their length and looping while {@link #position()} is below the computed end offset, so no
+ * message objects are ever created.
+ */
+final class ProtoReader {
+
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int FIXED32 = 5;
+
+    private byte[] buffer;
+    private int position;
+
+    void reset(final byte[] buffer) {
+        this.buffer = buffer;
+        this.position = 0;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int position() {
+        return position;
+    }
+
+    void position(final int position) {
+        this.position = position;
+    }
+
+    int readTag() {
+        return (int) readVarint();
+    }
+
+    long readVarint() {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            final byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    int readLength() {
+        return (int) readVarint();
+    }
+
+    void skip(final int wireType) {
+        switch (wireType) {
+            case VARINT -> readVarint();
+            case FIXED64 -> position += 8;
+            case LENGTH_DELIMITED -> {
+                final int length = readLength();
+                position += length;
+            }
+            case FIXED32 -> position += 4;
+            default -> throw new IllegalStateException("Unsupported protobuf wire type " + wireType);
+        }
+    }
+}
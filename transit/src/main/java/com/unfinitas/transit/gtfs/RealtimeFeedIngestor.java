@@ -0,0 +1,449 @@
+package com.unfinitas.transit.gtfs;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Applies GTFS-Realtime {@code TripUpdates} feeds to a {@link GtfsTimetable}'s delay columns.
+ * The feed is decoded straight from its bytes: trip and stop IDs are resolved through the
+ * timetable's {@link IdTable}s and all per-trip state is kept in preallocated arrays, so steady
+ * state ingestion does not allocate per entity or per stop time update.
+ *
+ * <p>Only deltas are written: a trip whose {@code TripUpdate.timestamp} is unchanged since the
+ * previous cycle is skipped, and trips that drop out of the feed have their delays cleared.
+ * Not thread-safe; one poller owns an ingestor.
+ */
+final class RealtimeFeedIngestor {
+
+    // Field numbers from gtfs-realtime.proto
+    private static final int FEED_HEADER = 1;
+    private static final int FEED_ENTITY = 2;
+    private static final int HEADER_TIMESTAMP = 3;
+    private static final int ENTITY_IS_DELETED = 2;
+    private static final int ENTITY_TRIP_UPDATE = 3;
+    private static final int TRIP_UPDATE_TRIP = 1;
+    private static final int TRIP_UPDATE_STOP_TIME_UPDATE = 2;
+    private static final int TRIP_UPDATE_TIMESTAMP = 4;
+    private static final int TRIP_UPDATE_DELAY = 5;
+    private static final int TRIP_ID = 1;
+    private static final int TRIP_START_DATE = 3;
+    private static final int TRIP_SCHEDULE_RELATIONSHIP = 4;
+    private static final int STOP_SEQUENCE = 1;
+    private static final int STOP_ARRIVAL = 2;
+    private static final int STOP_DEPARTURE = 3;
+    private static final int STOP_ID = 4;
+    private static final int STOP_SCHEDULE_RELATIONSHIP = 5;
+    private static final int EVENT_DELAY = 1;
+    private static final int EVENT_TIME = 2;
+
+    private static final int TRIP_CANCELED = 3;
+    private static final int STOP_SKIPPED = 1;
+    private static final int STOP_NO_DATA = 2;
+
+    private final GtfsTimetable timetable;
+    private final ProtoReader reader = new ProtoReader();
+
+    private final long[] tripTimestamps;
+    private final int[] tripSeenCycle;
+    private final int[] tripMaxDelay;
+    private final int[] tripMinDelay;
+    private final boolean[] tripTracked;
+    private final int[] trackedTrips;
+    private int trackedCount;
+
+    private int cycle;
+    private long lastFeedTimestamp;
+    private int today;
+
+    private final int[] cachedDates = new int[4];
+    private final long[] cachedDayStarts = new long[4];
+    private int cacheCursor;
+
+    // Scratch for the StopTimeEvent being decoded
+    private boolean eventHasDelay;
+    private int eventDelay;
+    private long eventTime;
+
+    // Stats of the last cycle
+    private int entityCount;
+    private int appliedTrips;
+    private int unchangedTrips;
+    private int unknownTrips;
+    private int clearedTrips;
+
+    RealtimeFeedIngestor(final GtfsTimetable timetable) {
+        this.timetable = timetable;
+        final int trips = timetable.tripCount();
+        this.tripTimestamps = new long[trips];
+        this.tripSeenCycle = new int[trips];
+        this.tripMaxDelay = new int[trips];
+        this.tripMinDelay = new int[trips];
+        this.tripTracked = new boolean[trips];
+        this.trackedTrips = new int[trips];
+    }
+
+    GtfsTimetable timetable() {
+        return timetable;
+    }
+
+    /**
+     * Applies one feed held in {@code feed[0, length)}. Returns false when the feed header
+     * timestamp is unchanged and nothing had to be applied.
+     */
+    boolean apply(final byte[] feed, final int length) {
+        reader.reset(feed);
+        cycle++;
+        entityCount = 0;
+        appliedTrips = 0;
+        unchangedTrips = 0;
+        unknownTrips = 0;
+        clearedTrips = 0;
+        today = ServiceCalendar.toInt(LocalDate.ofInstant(Instant.now(), timetable.zone()));
+
+        while (reader.position() < length) {
+            final int tag = reader.readTag();
+            final int field = tag >>> 3;
+            if (field == FEED_HEADER && (tag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                final int end = reader.readLength() + reader.position();
+                final long timestamp = readHeaderTimestamp(end);
+                if (timestamp != 0 && timestamp == lastFeedTimestamp) {
+                    cycle--;
+                    return false;
+                }
+                lastFeedTimestamp = timestamp;
+            } else if (field == FEED_ENTITY && (tag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                final int end = reader.readLength() + reader.position();
+                applyEntity(end);
+                reader.position(end);
+                entityCount++;
+            } else {
+                reader.skip(tag & 7);
+            }
+        }
+
+        finishCycle();
+        return true;
+    }
+
+    int entityCount() {
+        return entityCount;
+    }
+
+    int appliedTrips() {
+        return appliedTrips;
+    }
+
+    int unchangedTrips() {
+        return unchangedTrips;
+    }
+
+    int unknownTrips() {
+        return unknownTrips;
+    }
+
+    int clearedTrips() {
+        return clearedTrips;
+    }
+
+    private long readHeaderTimestamp(final int end) {
+        long timestamp = 0;
+        while (reader.position() < end) {
+            final int tag = reader.readTag();
+            if (tag >>> 3 == HEADER_TIMESTAMP && (tag & 7) == ProtoReader.VARINT) {
+                timestamp = reader.readVarint();
+            } else {
+                reader.skip(tag & 7);
+            }
+        }
+        return timestamp;
+    }
+
+    private void applyEntity(final int end) {
+        boolean deleted = false;
+        int tripUpdateStart = -1;
+        int tripUpdateEnd = -1;
+        while (reader.position() < end) {
+            final int tag = reader.readTag();
+            final int field = tag >>> 3;
+            if (field == ENTITY_IS_DELETED && (tag & 7) == ProtoReader.VARINT) {
+                deleted = reader.readVarint() != 0;
+            } else if (field == ENTITY_TRIP_UPDATE && (tag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                final int length = reader.readLength();
+                tripUpdateStart = reader.position();
+                tripUpdateEnd = tripUpdateStart + length;
+                reader.position(tripUpdateEnd);
+            } else {
+                reader.skip(tag & 7);
+            }
+        }
+        if (!deleted && tripUpdateStart >= 0) {
+            applyTripUpdate(tripUpdateStart, tripUpdateEnd);
+        }
+    }
+
+    private void applyTripUpdate(final int start, final int end) {
+        final byte[] buffer = reader.buffer();
+        int tripIdOffset = -1;
+        int tripIdLength = 0;
+        int date = today;
+        int relationship = 0;
+        long timestamp = 0;
+        int tripDelay = 0;
+
+        // First pass: trip descriptor and trip-level fields, which may follow the stop updates
+        reader.position(start);
+        while (reader.position() < end) {
+            final int tag = reader.readTag();
+            final int field = tag >>> 3;
+            if (field == TRIP_UPDATE_TRIP && (tag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                final int tripEnd = reader.readLength() + reader.position();
+                while (reader.position() < tripEnd) {
+                    final int tripTag = reader.readTag();
+                    final int tripField = tripTag >>> 3;
+                    if (tripField == TRIP_ID && (tripTag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                        tripIdLength = reader.readLength();
+                        tripIdOffset = reader.position();
+                        reader.position(tripIdOffset + tripIdLength);
+                    } else if (tripField == TRIP_START_DATE && (tripTag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                        final int length = reader.readLength();
+                        date = parseDate(buffer, reader.position(), length);
+                        reader.position(reader.position() + length);
+                    } else if (tripField == TRIP_SCHEDULE_RELATIONSHIP && (tripTag & 7) == ProtoReader.VARINT) {
+                        relationship = (int) reader.readVarint();
+                    } else {
+                        reader.skip(tripTag & 7);
+                    }
+                }
+            } else if (field == TRIP_UPDATE_TIMESTAMP && (tag & 7) == ProtoReader.VARINT) {
+                timestamp = reader.readVarint();
+            } else if (field == TRIP_UPDATE_DELAY && (tag & 7) == ProtoReader.VARINT) {
+                tripDelay = (int) reader.readVarint();
+            } else {
+                reader.skip(tag & 7);
+            }
+        }
+
+        final int trip = tripIdOffset < 0 ? -1 : timetable.tripIds().find(buffer, tripIdOffset, tripIdLength);
+        if (trip < 0) {
+            // ADDED/unscheduled trips are not in the static feed and cannot be indexed by stop
+            unknownTrips++;
+            return;
+        }
+
+        tripSeenCycle[trip] = cycle;
+        if (timestamp != 0 && tripTimestamps[trip] == timestamp) {
+            unchangedTrips++;
+            return;
+        }
+        tripTimestamps[trip] = timestamp;
+        appliedTrips++;
+        track(trip);
+
+        final int first = timetable.tripRowStart(trip);
+        final int last = timetable.tripRowEnd(trip);
+        if (relationship == TRIP_CANCELED) {
+            for (int position = first; position < last; position++) {
+                timetable.setDelay(timetable.tripRow(position), date, GtfsTimetable.SKIPPED);
+            }
+            tripMaxDelay[trip] = 0;
+            tripMinDelay[trip] = 0;
+            return;
+        }
+
+        // Second pass: stop time updates in stop_sequence order; each delay propagates downstream
+        int cursor = first;
+        int current = tripDelay;
+        int maxDelay = 0;
+        int minDelay = 0;
+        reader.position(start);
+        while (reader.position() < end) {
+            final int tag = reader.readTag();
+            if (tag >>> 3 != TRIP_UPDATE_STOP_TIME_UPDATE || (tag & 7) != ProtoReader.LENGTH_DELIMITED) {
+                reader.skip(tag & 7);
+                continue;
+            }
+
+            final int updateEnd = reader.readLength() + reader.position();
+            int sequence = -1;
+            int stop = -1;
+            int stopRelationship = 0;
+            boolean hasArrival = false;
+            boolean arrivalHasDelay = false;
+            int arrivalDelay = 0;
+            long arrivalTime = 0;
+            boolean hasDeparture = false;
+            boolean departureHasDelay = false;
+            int departureDelay = 0;
+            long departureTime = 0;
+
+            while (reader.position() < updateEnd) {
+                final int updateTag = reader.readTag();
+                final int updateField = updateTag >>> 3;
+                if (updateField == STOP_SEQUENCE && (updateTag & 7) == ProtoReader.VARINT) {
+                    sequence = (int) reader.readVarint();
+                } else if (updateField == STOP_ID && (updateTag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                    final int length = reader.readLength();
+                    stop = timetable.stopIds().find(buffer, reader.position(), length);
+                    reader.position(reader.position() + length);
+                } else if (updateField == STOP_SCHEDULE_RELATIONSHIP && (updateTag & 7) == ProtoReader.VARINT) {
+                    stopRelationship = (int) reader.readVarint();
+                } else if (updateField == STOP_ARRIVAL && (updateTag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                    readEvent();
+                    hasArrival = true;
+                    arrivalHasDelay = eventHasDelay;
+                    arrivalDelay = eventDelay;
+                    arrivalTime = eventTime;
+                } else if (updateField == STOP_DEPARTURE && (updateTag & 7) == ProtoReader.LENGTH_DELIMITED) {
+                    readEvent();
+                    hasDeparture = true;
+                    departureHasDelay = eventHasDelay;
+                    departureDelay = eventDelay;
+                    departureTime = eventTime;
+                } else {
+                    reader.skip(updateTag & 7);
+                }
+            }
+
+            final int position = locate(cursor, last, sequence, stop);
+            if (position < 0) {
+                continue;
+            }
+            final int row = timetable.tripRow(position);
+
+            for (; cursor < position; cursor++) {
+                timetable.setDelay(timetable.tripRow(cursor), date, current);
+            }
+
+            if (stopRelationship == STOP_SKIPPED) {
+                timetable.setDelay(row, date, GtfsTimetable.SKIPPED);
+            } else {
+                if (stopRelationship == STOP_NO_DATA) {
+                    current = 0;
+                } else if (hasDeparture) {
+                    current = resolveDelay(departureHasDelay, departureDelay, departureTime, row, date, current);
+                } else if (hasArrival) {
+                    current = resolveDelay(arrivalHasDelay, arrivalDelay, arrivalTime, row, date, current);
+                }
+                timetable.setDelay(row, date, current);
+                maxDelay = Math.max(maxDelay, current);
+                minDelay = Math.min(minDelay, current);
+            }
+            cursor = position + 1;
+        }
+
+        for (; cursor < last; cursor++) {
+            timetable.setDelay(timetable.tripRow(cursor), date, current);
+        }
+        tripMaxDelay[trip] = Math.max(maxDelay, current);
+        tripMinDelay[trip] = Math.min(minDelay, current);
+    }
+
+    private void readEvent() {
+        final int end = reader.readLength() + reader.position();
+        eventHasDelay = false;
+        eventDelay = 0;
+        eventTime = 0;
+        while (reader.position() < end) {
+            final int tag = reader.readTag();
+            final int field = tag >>> 3;
+            if (field == EVENT_DELAY && (tag & 7) == ProtoReader.VARINT) {
+                eventHasDelay = true;
+                eventDelay = (int) reader.readVarint();
+            } else if (field == EVENT_TIME && (tag & 7) == ProtoReader.VARINT) {
+                eventTime = reader.readVarint();
+            } else {
+                reader.skip(tag & 7);
+            }
+        }
+    }
+
+    private int resolveDelay(
+            final boolean hasDelay,
+            final int delay,
+            final long time,
+            final int row,
+            final int date,
+            final int fallback
+    ) {
+        if (hasDelay) {
+            return delay;
+        }
+        if (time != 0) {
+            return (int) (time - dayStart(date) - timetable.scheduledTime(row));
+        }
+        return fallback;
+    }
+
+    /**
+     * Position of the updated stop in the trip, searching forward from {@code from} by
+     * stop_sequence, or by stop ID when the update has no sequence. -1 if it is not in the trip.
+     */
+    private int locate(final int from, final int to, final int sequence, final int stop) {
+        for (int position = from; position < to; position++) {
+            final int row = timetable.tripRow(position);
+            if (sequence >= 0 ? timetable.sequence(row) == sequence : timetable.stopOf(row) == stop) {
+                return position;
+            }
+            if (sequence >= 0 && timetable.sequence(row) > sequence) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void track(final int trip) {
+        if (!tripTracked[trip]) {
+            tripTracked[trip] = true;
+            trackedTrips[trackedCount++] = trip;
+        }
+    }
+
+    /**
+     * Clears trips that left the feed and publishes the delay bounds queries scan with.
+     */
+    private void finishCycle() {
+        int maxDelay = 0;
+        int minDelay = 0;
+        int kept = 0;
+        for (int i = 0; i < trackedCount; i++) {
+            final int trip = trackedTrips[i];
+            if (tripSeenCycle[trip] != cycle) {
+                for (int position = timetable.tripRowStart(trip); position < timetable.tripRowEnd(trip); position++) {
+                    timetable.clearDelay(timetable.tripRow(position));
+                }
+                tripTimestamps[trip] = 0;
+                tripTracked[trip] = false;
+                clearedTrips++;
+                continue;
+            }
+            trackedTrips[kept++] = trip;
+            maxDelay = Math.max(maxDelay, tripMaxDelay[trip]);
+            minDelay = Math.min(minDelay, tripMinDelay[trip]);
+        }
+        trackedCount = kept;
+        timetable.realtimeApplied(maxDelay, minDelay);
+    }
+
+    private long dayStart(final int date) {
+        for (int i = 0; i < cachedDates.length; i++) {
+            if (cachedDates[i] == date) {
+                return cachedDayStarts[i];
+            }
+        }
+        final long start = timetable.serviceDayStart(LocalDate.of(date / 10_000, date / 100 % 100, date % 100));
+        cachedDates[cacheCursor] = date;
+        cachedDayStarts[cacheCursor] = start;
+        cacheCursor = (cacheCursor + 1) % cachedDates.length;
+        return start;
+    }
+
+    private static int parseDate(final byte[] buffer, final int offset, final int length) {
+        int date = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (buffer[i] >= '0' && buffer[i] <= '9') {
+                date = date * 10 + (buffer[i] - '0');
+            }
+        }
+        return date;
+    }
+}
@@ -0,0 +1,134 @@
+package com.unfinitas.transit.gtfs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls a GTFS-Realtime TripUpdates feed (an http(s)/file URL or a plain path) and applies it
+ * to the offline timetable, so realtime departures are served from memory.
+ * <p>
+ * Polls run on the poller's own thread rather than Spring's shared scheduler, and every fetch has
+ * connect and read timeouts, so a stalled feed endpoint only delays the next poll.
+ */
+@Component
+@Slf4j
+public class RealtimeFeedPoller {
+
+    private final StaticTimetableProvider staticTimetable;
+    private final String source;
+    private final Duration pollInterval;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private ScheduledExecutorService scheduler;
+    private byte[] buffer = new byte[1 << 20];
+    private RealtimeFeedIngestor ingestor;
+
+    public RealtimeFeedPoller(
+            final StaticTimetableProvider staticTimetable,
+            @Value("${tripmind.gtfs.realtime.url}") final String source,
+            @Value("${tripmind.gtfs.realtime.poll-interval}") final Duration pollInterval,
+            @Value("${tripmind.gtfs.realtime.connect-timeout}") final Duration connectTimeout,
+            @Value("${tripmind.gtfs.realtime.read-timeout}") final Duration readTimeout
+    ) {
+        this.staticTimetable = staticTimetable;
+        this.source = source;
+        this.pollInterval = pollInterval;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (source.isBlank()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "gtfs-realtime-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    void poll() {
+        final GtfsTimetable timetable = staticTimetable.timetable();
+        if (source.isBlank() || timetable == null) {
+            return;
+        }
+        if (ingestor == null || ingestor.timetable() != timetable) {
+            ingestor = new RealtimeFeedIngestor(timetable);
+        }
+
+        try {
+            final long fetchStarted = System.nanoTime();
+            final int length = read();
+            final long applyStarted = System.nanoTime();
+
+            if (!ingestor.apply(buffer, length)) {
+                log.debug("GTFS-RT feed unchanged since last poll");
+                return;
+            }
+
+            final long applyMicros = (System.nanoTime() - applyStarted) / 1_000;
+            log.info("Applied GTFS-RT feed in {} µs (fetch {} ms, {} bytes): {} entities, {} trips updated, "
+                            + "{} unchanged, {} unknown, {} cleared",
+                    applyMicros, (applyStarted - fetchStarted) / 1_000_000, length,
+                    ingestor.entityCount(), ingestor.appliedTrips(), ingestor.unchangedTrips(),
+                    ingestor.unknownTrips(), ingestor.clearedTrips());
+        } catch (final Exception e) {
+            log.warn("Failed to apply GTFS-RT feed {}: {}", source, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the whole feed into the reused buffer, growing it only when a feed is larger than any before.
+     */
+    private int read() throws IOException {
+        try (InputStream in = open()) {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                final int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    return length;
+                }
+                length += read;
+            }
+        }
+    }
+
+    private InputStream open() throws IOException {
+        if (source.contains("://") || source.startsWith("file:")) {
+            final URLConnection connection = URI.create(source).toURL().openConnection();
+            connection.setConnectTimeout((int) connectTimeout.toMillis());
+            // Bounds each read, so a feed that stops sending mid-body fails instead of hanging
+            connection.setReadTimeout((int) readTimeout.toMillis());
+            return connection.getInputStream();
+        }
+        return Files.newInputStream(Path.of(source));
+    }
+}
@@ -0,0 +1,78 @@
+package com.unfinitas.transit.gtfs;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which GTFS services run on which dates, from {@code calendar.txt} and {@code calendar_dates.txt}.
+ * Dates are {@code yyyymmdd} ints; the set of active services per date is computed once and reused.
+ */
+final class ServiceCalendar {
+
+    private final int[] startDates;
+    private final int[] endDates;
+    private final byte[] weekdays;
+    private final int[][] addedDates;
+    private final int[][] removedDates;
+    private final Map<Integer, BitSet> activeByDate = new ConcurrentHashMap<>();
+
+    /**
+     * @param weekdays bit {@code n} set means the service runs on ISO day-of-week {@code n + 1}
+     * @param addedDates sorted exception dates per service where service is added
+     * @param removedDates sorted exception dates per service where service is removed
+     */
+    ServiceCalendar(
+            final int[] startDates,
+            final int[] endDates,
+            final byte[] weekdays,
+            final int[][] addedDates,
+            final int[][] removedDates
+    ) {
+        this.startDates = startDates;
+        this.endDates = endDates;
+        this.weekdays = weekdays;
+        this.addedDates = addedDates;
+        this.removedDates = removedDates;
+    }
+
+    int size() {
+        return startDates.length;
+    }
+
+    /**
+     * Bytes held by the calendar's arrays, not counting the per-date cache.
+     */
+    long footprintBytes() {
+        long exceptions = 0;
+        for (int service = 0; service < size(); service++) {
+            exceptions += addedDates[service].length + removedDates[service].length;
+        }
+        return weekdays.length + (long) Integer.BYTES * (startDates.length + endDates.length + exceptions);
+    }
+
+    BitSet activeOn(final LocalDate date) {
+        return activeByDate.computeIfAbsent(toInt(date), key -> {
+            final BitSet active = new BitSet(size());
+            final int dayBit = 1 << (date.getDayOfWeek().getValue() - 1);
+            for (int service = 0; service < size(); service++) {
+                if (Arrays.binarySearch(removedDates[service], key) >= 0) {
+                    continue;
+                }
+                final boolean regular = key >= startDates[service]
+                        && key <= endDates[service]
+                        && (weekdays[service] & dayBit) != 0;
+                if (regular || Arrays.binarySearch(addedDates[service], key) >= 0) {
+                    active.set(service);
+                }
+            }
+            return active;
+        });
+    }
+
+    static int toInt(final LocalDate date) {
+        return date.getYear() * 10_000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+}
@@ -0,0 +1,101 @@
+package com.unfinitas.transit.gtfs;
+
+import com.unfinitas.transit.model.DepartureDto;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Offline timetable loaded from a local GTFS static feed. It answers from memory when Digitransit
+ * is unavailable, and instead of Digitransit either when {@code tripmind.gtfs.static.primary} is
+ * set (scheduled data) or while a GTFS-RT feed keeps it current. Without a configured feed it is
+ * simply never available.
+ */
+@Component
+@Slf4j
+public class StaticTimetableProvider {
+
+    private final String path;
+    private final String feedPrefix;
+    private final boolean primary;
+    private final Duration realtimeMaxAge;
+    private volatile GtfsTimetable timetable;
+
+    public StaticTimetableProvider(
+            @Value("${tripmind.gtfs.static.path}") final String path,
+            @Value("${tripmind.gtfs.static.feed-id}") final String feedId,
+            @Value("${tripmind.gtfs.static.primary}") final boolean primary,
+            @Value("${tripmind.gtfs.realtime.max-age}") final Duration realtimeMaxAge
+    ) {
+        this.path = path;
+        this.feedPrefix = feedId.isBlank() ? "" : feedId + ":";
+        this.primary = primary;
+        this.realtimeMaxAge = realtimeMaxAge;
+    }
+
+    @PostConstruct
+    public void loadInBackground() {
+        if (path.isBlank()) {
+            log.info("No GTFS static feed configured, offline timetable disabled");
+            return;
+        }
+        Thread.ofPlatform().name("gtfs-static-loader").daemon().start(this::load);
+    }
+
+    /**
+     * Whether departures for this stop should come from memory rather than from Digitransit.
+     */
+    public boolean servesFromMemory(final String stopId) {
+        final GtfsTimetable current = timetable;
+        return current != null
+                && current.hasStop(toFeedStopId(stopId))
+                && (primary || current.hasRealtime(realtimeMaxAge));
+    }
+
+    public boolean covers(final String stopId) {
+        final GtfsTimetable current = timetable;
+        return current != null && current.hasStop(toFeedStopId(stopId));
+    }
+
+    public List<DepartureDto> nextDepartures(final String stopId, final int limit) {
+        final GtfsTimetable current = timetable;
+        if (current == null) {
+            return List.of();
+        }
+        return current.nextDepartures(toFeedStopId(stopId), Instant.now(), limit);
+    }
+
+    GtfsTimetable timetable() {
+        return timetable;
+    }
+
+    /**
+     * Digitransit prefixes stop IDs with the feed ID ({@code tampere:0001}); the feed itself does not.
+     */
+    private String toFeedStopId(final String stopId) {
+        return !feedPrefix.isEmpty() && stopId.startsWith(feedPrefix) ? stopId.substring(feedPrefix.length()) : stopId;
+    }
+
+    private void load() {
+        try {
+            final long started = System.nanoTime();
+
+            final GtfsTimetable loaded = GtfsTimetableLoader.load(Path.of(path));
+
+            final long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+            timetable = loaded;
+
+            log.info("Loaded GTFS static feed {} in {} ms: {} stops, {} trips, {} stop times, ~{} MB in columns",
+                    path, elapsedMs, loaded.stopCount(), loaded.tripCount(), loaded.stopTimeCount(),
+                    loaded.footprintBytes() / (1024 * 1024));
+        } catch (final Exception e) {
+            log.error("Failed to load GTFS static feed {}", path, e);
+        }
+    }
+}
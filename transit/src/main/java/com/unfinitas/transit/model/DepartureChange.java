@@ -0,0 +1,10 @@
+package com.unfinitas.transit.model;
+
+public record DepartureChange(
+        Type type,
+        DepartureDto departure
+) {
+    public enum Type {
+        ADDED, REMOVED, DELAY_CHANGED
+    }
+}
@@ -4,5 +4,6 @@ import java.time.Instant;
 
 public record DepartureDto(
         String route,
-        Instant departureTime
+        Instant departureTime,
+        Instant scheduledTime
 ) { }
@@ -0,0 +1,17 @@
+package com.unfinitas.transit.model;
+
+import java.util.List;
+
+public record PrefetchStats(
+        List<HotStop> hotStops,
+        long requests,
+        long prefetchHits,
+        double prefetchHitRate,
+        long prefetches,
+        int budgetPerMinute
+) {
+    public record HotStop(
+            String stopId,
+            double score
+    ) { }
+}
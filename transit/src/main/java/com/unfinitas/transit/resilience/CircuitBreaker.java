@@ -0,0 +1,126 @@
+package com.unfinitas.transit.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker. It opens once the failure rate over the last {@code window} calls
+ * reaches the threshold, rejects calls while open, and after {@code openFor} lets a single probe
+ * through: the probe's outcome either closes the breaker or keeps it open for another period.
+ */
+@Slf4j
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final boolean[] failed;
+    private final int failureThreshold;
+    private final long openForNanos;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(final String name, final int window, final double failureRate, final Duration openFor) {
+        this.name = name;
+        this.failed = new boolean[window];
+        this.failureThreshold = Math.max(1, (int) Math.ceil(failureRate * window));
+        this.openForNanos = openFor.toNanos();
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Whether a call may go out now. A permitted call must end in exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onAbandoned()}.
+     */
+    synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openForNanos) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                yield true;
+            }
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield false;
+                }
+                probeInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            log.info("Circuit {} closed after a successful probe", name);
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (recorded == failed.length && failures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * The call was cancelled before it had an outcome; it counts neither way.
+     */
+    synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private void record(final boolean failure) {
+        if (recorded == failed.length && failed[next]) {
+            failures--;
+        }
+        failed[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % failed.length;
+        recorded = Math.min(recorded + 1, failed.length);
+    }
+
+    private void open() {
+        if (state != State.OPEN) {
+            log.warn("Circuit {} opened, failing fast for {} ms", name, openForNanos / 1_000_000);
+        }
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        probeInFlight = false;
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        probeInFlight = false;
+        Arrays.fill(failed, false);
+    }
+}
@@ -0,0 +1,42 @@
+package com.unfinitas.transit.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Latencies of the most recent successful calls in a fixed ring, for percentile estimates that
+ * follow the upstream as it speeds up or slows down.
+ */
+final class LatencyRecorder {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    LatencyRecorder(final int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(final long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * The given percentile of the recorded latencies, or {@code null} until {@code minSamples}
+     * calls have been seen and the estimate means something.
+     */
+    Duration percentile(final double percentile, final int minSamples) {
+        final long[] sorted;
+        synchronized (this) {
+            if (count < minSamples) {
+                return null;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.clamp(index, 0, sorted.length - 1)]);
+    }
+}
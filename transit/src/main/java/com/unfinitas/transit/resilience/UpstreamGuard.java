@@ -0,0 +1,116 @@
+package com.unfinitas.transit.resilience;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Latency budget for calls to one upstream. Each call
+ * <ul>
+ *   <li>is rejected up front while the circuit breaker is open,</li>
+ *   <li>takes a bulkhead permit, or is rejected when all permits are in use,</li>
+ *   <li>is hedged: if no answer arrived after the observed latency percentile, an identical
+ *       second request races the first and whichever answers first wins,</li>
+ *   <li>fails with a timeout once the deadline passes, hedge included.</li>
+ * </ul>
+ * Rejections and timeouts surface as errors, so callers keep a single fallback path.
+ * Only idempotent requests may be guarded, since hedging can send them twice.
+ */
+public final class UpstreamGuard {
+
+    private static final int LATENCY_SAMPLES = 512;
+
+    private final String name;
+    private final Duration timeout;
+    private final boolean hedging;
+    private final double hedgePercentile;
+    private final Duration hedgeMinDelay;
+    private final int hedgeMinSamples;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final LatencyRecorder latencies = new LatencyRecorder(LATENCY_SAMPLES);
+
+    public UpstreamGuard(
+            final String name,
+            final Duration timeout,
+            final boolean hedging,
+            final double hedgePercentile,
+            final Duration hedgeMinDelay,
+            final int hedgeMinSamples,
+            final CircuitBreaker circuitBreaker,
+            final int maxConcurrentCalls
+    ) {
+        this.name = name;
+        this.timeout = timeout;
+        this.hedging = hedging;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelay = hedgeMinDelay;
+        this.hedgeMinSamples = hedgeMinSamples;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+    }
+
+    public <T> Mono<T> call(final Supplier<Mono<T>> request) {
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquire()) {
+                return Mono.error(new UpstreamRejectedException("Circuit " + name + " is open"));
+            }
+            if (!bulkhead.tryAcquire()) {
+                circuitBreaker.onAbandoned();
+                return Mono.error(new UpstreamRejectedException("Bulkhead " + name + " is full"));
+            }
+
+            final Mono<T> primary = attempt(request);
+            final Duration hedgeAfter = hedgeDelay();
+            final Mono<T> raced = hedgeAfter == null
+                    ? primary
+                    : Mono.firstWithValue(primary, Mono.delay(hedgeAfter).flatMap(tick -> hedge(request)));
+
+            return raced
+                    .timeout(timeout)
+                    .doOnSuccess(value -> circuitBreaker.onSuccess())
+                    .doOnError(e -> circuitBreaker.onFailure())
+                    .doOnCancel(circuitBreaker::onAbandoned);
+        });
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    public int availablePermits() {
+        return bulkhead.availablePermits();
+    }
+
+    /**
+     * One request that already holds a bulkhead permit; the permit is returned however it ends.
+     */
+    private <T> Mono<T> attempt(final Supplier<Mono<T>> request) {
+        return Mono.defer(() -> {
+                    final long started = System.nanoTime();
+                    return request.get().doOnSuccess(value -> latencies.record(System.nanoTime() - started));
+                })
+                .doFinally(signal -> bulkhead.release());
+    }
+
+    /**
+     * The hedge only goes out if a permit is free; otherwise it stays silent and the primary decides.
+     */
+    private <T> Mono<T> hedge(final Supplier<Mono<T>> request) {
+        return bulkhead.tryAcquire() ? attempt(request) : Mono.empty();
+    }
+
+    private Duration hedgeDelay() {
+        if (!hedging) {
+            return null;
+        }
+        final Duration observed = latencies.percentile(hedgePercentile, hedgeMinSamples);
+        if (observed == null) {
+            return null;
+        }
+        final Duration delay = observed.compareTo(hedgeMinDelay) < 0 ? hedgeMinDelay : observed;
+        return delay.compareTo(timeout) < 0 ? delay : null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.unfinitas.transit.resilience;
+
+/**
+ * A call that was never sent because the circuit is open or the bulkhead is full.
+ */
+public class UpstreamRejectedException extends RuntimeException {
+
+    public UpstreamRejectedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,136 @@
+package com.unfinitas.transit.service;
+
+import com.unfinitas.transit.model.DepartureChange;
+import com.unfinitas.transit.model.DepartureDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.ConnectableFlux;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live departure boards. Every subscriber of a stop shares one upstream poller, which starts
+ * with the first subscriber and is cancelled when the last one leaves; each subscriber then
+ * receives only the departures that were added, removed or retimed since its previous event.
+ */
+@Service
+public class DepartureBoardService {
+
+    private final TransitService transitService;
+    private final Duration pollInterval;
+    private final int depth;
+
+    /**
+     * Boards with at least one subscriber. Joining and leaving a board both go through
+     * {@code compute}, so a subscriber can never join a board whose poller is being stopped.
+     */
+    private final Map<String, SharedBoard> boards = new ConcurrentHashMap<>();
+
+    public DepartureBoardService(
+            final TransitService transitService,
+            @Value("${tripmind.board.poll-interval}") final Duration pollInterval,
+            @Value("${tripmind.board.depth}") final int depth
+    ) {
+        this.transitService = transitService;
+        this.pollInterval = pollInterval;
+        this.depth = depth;
+    }
+
+    public Flux<DepartureChange> watch(final String stopId) {
+        return Flux.defer(() -> {
+            final SharedBoard board = boards.compute(stopId, (id, existing) -> {
+                final SharedBoard joined = existing != null ? existing : poll(id);
+                joined.subscribers++;
+                return joined;
+            });
+            final Map<DepartureKey, DepartureDto> seen = new HashMap<>();
+            return board.updates
+                    .concatMapIterable(departures -> diff(seen, departures))
+                    .doFinally(signal -> leave(stopId, board));
+        });
+    }
+
+    private SharedBoard poll(final String stopId) {
+        final ConnectableFlux<List<DepartureDto>> updates = Flux.interval(Duration.ZERO, pollInterval)
+                .onBackpressureDrop()
+                // Not through the departure cache, which would serve the same timeline for up to its
+                // realtime refresh interval
+                .concatMap(tick -> transitService.pollDepartures(stopId, depth)
+                        .onErrorResume(e -> Mono.empty()), 0)
+                .distinctUntilChanged()
+                // Late subscribers start from the latest board instead of waiting a poll interval
+                .replay(1);
+        return new SharedBoard(updates, updates.connect());
+    }
+
+    private void leave(final String stopId, final SharedBoard board) {
+        boards.computeIfPresent(stopId, (id, shared) -> {
+            if (shared != board || --shared.subscribers > 0) {
+                return shared;
+            }
+            shared.poller.dispose();
+            return null;
+        });
+    }
+
+    private static List<DepartureChange> diff(
+            final Map<DepartureKey, DepartureDto> seen,
+            final List<DepartureDto> board
+    ) {
+        final List<DepartureChange> changes = new ArrayList<>();
+        final Set<DepartureKey> current = new HashSet<>();
+
+        for (final DepartureDto departure : board) {
+            final DepartureKey key = new DepartureKey(departure.route(), departure.scheduledTime());
+            current.add(key);
+
+            final DepartureDto previous = seen.put(key, departure);
+            if (previous == null) {
+                changes.add(new DepartureChange(DepartureChange.Type.ADDED, departure));
+            } else if (!Objects.equals(previous.departureTime(), departure.departureTime())) {
+                changes.add(new DepartureChange(DepartureChange.Type.DELAY_CHANGED, departure));
+            }
+        }
+
+        seen.entrySet().removeIf(entry -> {
+            if (current.contains(entry.getKey())) {
+                return false;
+            }
+            changes.add(new DepartureChange(DepartureChange.Type.REMOVED, entry.getValue()));
+            return true;
+        });
+
+        return changes;
+    }
+
+    /**
+     * One stop's poller and how many subscribers it has; only touched inside {@code boards.compute}.
+     */
+    private static final class SharedBoard {
+        private final Flux<List<DepartureDto>> updates;
+        private final Disposable poller;
+        private int subscribers;
+
+        private SharedBoard(final Flux<List<DepartureDto>> updates, final Disposable poller) {
+            this.updates = updates;
+            this.poller = poller;
+        }
+    }
+
+    private record DepartureKey(
+            String route,
+            Instant scheduledTime
+    ) { }
+}
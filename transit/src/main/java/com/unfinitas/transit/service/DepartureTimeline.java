@@ -0,0 +1,75 @@
+package com.unfinitas.transit.service;
+
+import com.unfinitas.transit.model.DepartureDto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Departures of one stop, fetched once at a fixed depth and sorted by departure time.
+ * Any {@code limit} up to the depth is answered by slicing the departures that are still
+ * in the future, so past departures age out without touching the upstream.
+ */
+final class DepartureTimeline {
+
+    private final List<DepartureDto> departures;
+    private final boolean truncated;
+    private final boolean prefetched;
+
+    DepartureTimeline(final List<DepartureDto> departures, final int depth) {
+        this(departures, depth, false);
+    }
+
+    DepartureTimeline(final List<DepartureDto> departures, final int depth, final boolean prefetched) {
+        final List<DepartureDto> sorted = new ArrayList<>(departures);
+        sorted.sort(Comparator.comparing(DepartureDto::departureTime));
+        this.departures = List.copyOf(sorted);
+        this.truncated = departures.size() >= depth;
+        this.prefetched = prefetched;
+    }
+
+    List<DepartureDto> upcoming(final Instant now, final int limit) {
+        final int from = firstAfter(now);
+        final int to = Math.min(departures.size(), from + limit);
+        return departures.subList(from, to);
+    }
+
+    /**
+     * Whether the upstream may have more departures than this timeline holds, i.e. running
+     * out of upcoming entries means the timeline must be refetched rather than that the
+     * stop has no more service.
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Whether this timeline was loaded by the hot-stop prefetcher rather than by a request.
+     */
+    boolean isPrefetched() {
+        return prefetched;
+    }
+
+    /**
+     * The moment the last known departure leaves, after which the timeline has nothing to serve.
+     */
+    Instant lastDeparture() {
+        return departures.isEmpty() ? null : departures.getLast().departureTime();
+    }
+
+    private int firstAfter(final Instant now) {
+        int low = 0;
+        int high = departures.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (departures.get(mid).departureTime().isAfter(now)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
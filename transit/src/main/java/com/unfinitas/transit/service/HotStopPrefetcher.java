@@ -0,0 +1,105 @@
+package com.unfinitas.transit.service;
+
+import com.unfinitas.transit.model.PrefetchStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the most requested stops warm: shortly before a hot stop's timeline would go stale, it is
+ * reloaded in the background. Reloads are paid from a token bucket refilled at
+ * {@code tripmind.prefetch.budget-per-minute}, so prefetching never costs more upstream calls than
+ * that regardless of how many stops are hot.
+ */
+@Service
+@Slf4j
+public class HotStopPrefetcher {
+
+    private final TransitService transitService;
+    private final StopPopularityTracker popularity;
+    private final boolean enabled;
+    private final int topK;
+    private final Duration lead;
+    private final int budgetPerMinute;
+    private final double tokensPerNano;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final LongAdder prefetches = new LongAdder();
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    public HotStopPrefetcher(
+            final TransitService transitService,
+            final StopPopularityTracker popularity,
+            @Value("${tripmind.prefetch.enabled}") final boolean enabled,
+            @Value("${tripmind.prefetch.top-k}") final int topK,
+            @Value("${tripmind.prefetch.lead}") final Duration lead,
+            @Value("${tripmind.prefetch.budget-per-minute}") final int budgetPerMinute
+    ) {
+        this.transitService = transitService;
+        this.popularity = popularity;
+        this.enabled = enabled;
+        this.topK = topK;
+        this.lead = lead;
+        this.budgetPerMinute = budgetPerMinute;
+        this.tokensPerNano = budgetPerMinute / (double) Duration.ofMinutes(1).toNanos();
+        this.tokens = budgetPerMinute;
+    }
+
+    @Scheduled(fixedDelayString = "${tripmind.prefetch.interval}")
+    public void prefetchHotStops() {
+        if (!enabled) {
+            return;
+        }
+        refill();
+
+        // Hottest first, so a short budget goes to the stops most likely to be asked for next
+        for (final PrefetchStats.HotStop hot : popularity.hottest(topK)) {
+            if (tokens < 1) {
+                log.debug("Prefetch budget exhausted for this round");
+                return;
+            }
+            final String stopId = hot.stopId();
+            if (inFlight.contains(stopId) || transitService.untilStale(stopId).compareTo(lead) > 0) {
+                continue;
+            }
+
+            tokens--;
+            inFlight.add(stopId);
+            prefetches.increment();
+            transitService.prefetch(stopId)
+                    .doFinally(signal -> inFlight.remove(stopId))
+                    .subscribe(
+                            ignored -> { },
+                            e -> log.debug("Prefetch of stop {} failed: {}", stopId, e.getMessage())
+                    );
+        }
+    }
+
+    public PrefetchStats stats() {
+        final List<PrefetchStats.HotStop> hotStops = popularity.hottest(topK);
+        final long requests = popularity.requests();
+        final long hits = popularity.prefetchHits();
+        return new PrefetchStats(
+                hotStops,
+                requests,
+                hits,
+                requests == 0 ? 0 : (double) hits / requests,
+                prefetches.sum(),
+                budgetPerMinute
+        );
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(budgetPerMinute, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,89 @@
+package com.unfinitas.transit.service;
+
+import com.unfinitas.transit.model.PrefetchStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stop request frequency as exponentially decaying counters (half-life configurable), plus
+ * how many requests were answered by a timeline the prefetcher loaded.
+ */
+@Component
+public class StopPopularityTracker {
+
+    private static final double FORGET_BELOW = 0.01;
+
+    private final double decayPerNano;
+    private final Map<String, DecayingCounter> counters = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder prefetchHits = new LongAdder();
+
+    public StopPopularityTracker(@Value("${tripmind.prefetch.half-life}") final Duration halfLife) {
+        this.decayPerNano = Math.log(2) / halfLife.toNanos();
+    }
+
+    void recordRequest(final String stopId, final boolean servedByPrefetch) {
+        counters.computeIfAbsent(stopId, id -> new DecayingCounter()).increment(System.nanoTime(), decayPerNano);
+        requests.increment();
+        if (servedByPrefetch) {
+            prefetchHits.increment();
+        }
+    }
+
+    /**
+     * The {@code k} most requested stops right now, hottest first. Stops whose score has decayed
+     * to almost nothing are forgotten on the way, which keeps the map bounded by recent traffic.
+     */
+    List<PrefetchStats.HotStop> hottest(final int k) {
+        final long now = System.nanoTime();
+        final PriorityQueue<PrefetchStats.HotStop> top =
+                new PriorityQueue<>(Comparator.comparingDouble(PrefetchStats.HotStop::score));
+
+        counters.entrySet().removeIf(entry -> {
+            final double score = entry.getValue().value(now, decayPerNano);
+            if (score < FORGET_BELOW) {
+                return true;
+            }
+            top.add(new PrefetchStats.HotStop(entry.getKey(), score));
+            if (top.size() > k) {
+                top.poll();
+            }
+            return false;
+        });
+
+        final List<PrefetchStats.HotStop> hottest = new ArrayList<>(top);
+        hottest.sort(Comparator.comparingDouble(PrefetchStats.HotStop::score).reversed());
+        return hottest;
+    }
+
+    long requests() {
+        return requests.sum();
+    }
+
+    long prefetchHits() {
+        return prefetchHits.sum();
+    }
+
+    private static final class DecayingCounter {
+        private double score;
+        private long updatedAt = System.nanoTime();
+
+        synchronized void increment(final long now, final double decayPerNano) {
+            score = value(now, decayPerNano) + 1;
+            updatedAt = now;
+        }
+
+        synchronized double value(final long now, final double decayPerNano) {
+            return score * Math.exp(-decayPerNano * (now - updatedAt));
+        }
+    }
+}
@@ -1,68 +1,222 @@
 package com.unfinitas.transit.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
 import com.unfinitas.transit.client.DigitransitClient;
 import com.unfinitas.transit.client.LocationClient;
 import com.unfinitas.transit.model.DepartureDto;
 import com.unfinitas.transit.model.LocationSearchResult;
 import com.unfinitas.transit.model.NextDeparturesResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 public class TransitService {
 
-    private static final Duration CACHE_TTL = Duration.ofSeconds(10);
     private final LocationClient locationClient;
     private final DigitransitClient digitransitClient;
-    private final Map<String, CachedEntry> cache = new ConcurrentHashMap<>();
+    private final StopPopularityTracker popularity;
+    private final int depth;
+    private final Duration realtimeRefresh;
 
-    public TransitService(final LocationClient locationClient, final DigitransitClient digitransitClient) {
+    /**
+     * Stop name to resolved stop. The catalog rarely changes, so names are kept far longer than departures.
+     */
+    private final AsyncLoadingCache<String, LocationSearchResult> stops;
+
+    /**
+     * Per-stop departure timelines. Caffeine runs at most one load per stop and keeps serving
+     * a timeline while a single background reload picks up realtime changes; a timeline
+     * expires once its last departure has left rather than after a fixed TTL.
+     */
+    private final AsyncLoadingCache<String, DepartureTimeline> timelines;
+
+    public TransitService(
+            final LocationClient locationClient,
+            final DigitransitClient digitransitClient,
+            final StopPopularityTracker popularity,
+            @Value("${tripmind.cache.departures.max-size}") final long maxSize,
+            @Value("${tripmind.cache.departures.depth}") final int depth,
+            @Value("${tripmind.cache.departures.realtime-refresh}") final Duration realtimeRefresh,
+            @Value("${tripmind.cache.departures.max-ttl}") final Duration maxTtl,
+            @Value("${tripmind.cache.departures.empty-ttl}") final Duration emptyTtl,
+            @Value("${tripmind.cache.stops.max-size}") final long stopsMaxSize,
+            @Value("${tripmind.cache.stops.expire-after}") final Duration stopsExpireAfter
+    ) {
         this.locationClient = locationClient;
         this.digitransitClient = digitransitClient;
+        this.popularity = popularity;
+        this.depth = depth;
+        this.realtimeRefresh = realtimeRefresh;
+        this.stops = Caffeine.newBuilder()
+                .maximumSize(stopsMaxSize)
+                .expireAfterWrite(stopsExpireAfter)
+                .buildAsync((stopName, executor) -> locationClient.resolveStopByName(stopName).toFuture());
+        this.timelines = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(realtimeRefresh)
+                .expireAfter(new TimelineExpiry(maxTtl, emptyTtl))
+                .buildAsync(new TimelineLoader());
     }
 
-    public NextDeparturesResponse getNextDepartures(final String stopName, final int limit) {
-        final String cacheKey = stopName.toLowerCase() + ":" + limit;
-        final CachedEntry cached = cache.get(cacheKey);
+    public Mono<NextDeparturesResponse> getNextDepartures(final String stopName, final int limit) {
+        return Mono.fromFuture(() -> stops.get(stopName.toLowerCase()), true)
+                .flatMap(stop -> getDeparturesByStopId(stop.stopId(), limit)
+                        .map(departures -> new NextDeparturesResponse(
+                                stop.name(),
+                                stop.id(),
+                                departures
+                        )))
+                .defaultIfEmpty(new NextDeparturesResponse(stopName, null, List.of()));
+    }
 
-        if (cached != null && !cached.isExpired()) {
-            return cached.response();
-        }
+    public Mono<List<DepartureDto>> getDeparturesByStopId(final String stopId, final int limit) {
+        final int wanted = Math.min(limit, depth);
+        return Mono.fromFuture(() -> timelines.get(stopId), true)
+                .flatMap(timeline -> {
+                    popularity.recordRequest(stopId, timeline.isPrefetched());
+                    final List<DepartureDto> upcoming = timeline.upcoming(Instant.now(), wanted);
+                    if (upcoming.size() >= wanted || !timeline.isTruncated()) {
+                        return Mono.just(upcoming);
+                    }
 
-        final LocationSearchResult stop = locationClient.resolveStopByName(stopName);
-        if (stop == null) {
-            final NextDeparturesResponse empty = new NextDeparturesResponse(stopName, null, List.of());
-            cache.put(cacheKey, new CachedEntry(Instant.now(), empty));
-            return empty;
-        }
+                    // The timeline ran short because its head departed; refetch (still one load per stop)
+                    return Mono.fromFuture(() -> timelines.synchronous().refresh(stopId), true)
+                            .map(refreshed -> refreshed.upcoming(Instant.now(), wanted));
+                });
+    }
 
-        final List<DepartureDto> departures = digitransitClient.fetchNextDepartures(stop.stopId(), limit);
+    public Mono<Map<String, List<DepartureDto>>> getDeparturesByStopIds(final List<String> stopIds, final int limit) {
+        final int wanted = Math.min(limit, depth);
+        return Mono.fromFuture(() -> timelines.getAll(stopIds), true)
+                .map(loaded -> {
+                    final Instant now = Instant.now();
+                    final Map<String, List<DepartureDto>> result = new LinkedHashMap<>();
+                    for (final String stopId : stopIds) {
+                        final DepartureTimeline timeline = loaded.get(stopId);
+                        if (timeline == null) {
+                            // Caffeine leaves out keys the bulk load returned nothing for
+                            result.put(stopId, List.of());
+                            continue;
+                        }
+                        popularity.recordRequest(stopId, timeline.isPrefetched());
+                        result.put(stopId, timeline.upcoming(now, wanted));
+                    }
+                    return result;
+                });
+    }
 
-        final NextDeparturesResponse response = new NextDeparturesResponse(
-                stop.name(),
-                stop.id(),
-                departures
-        );
+    /**
+     * The stop's upcoming departures straight from the upstream, for a live board polling on its own
+     * schedule. The fresh timeline replaces the cached one, so chats benefit from it too, but the poll
+     * is not counted as a request: an open board must not make its stop look hot to the prefetcher.
+     */
+    Mono<List<DepartureDto>> pollDepartures(final String stopId, final int limit) {
+        final int wanted = Math.min(limit, depth);
+        return digitransitClient.fetchNextDepartures(stopId, depth)
+                .map(departures -> {
+                    final DepartureTimeline timeline = new DepartureTimeline(departures, depth);
+                    timelines.put(stopId, CompletableFuture.completedFuture(timeline));
+                    return timeline.upcoming(Instant.now(), wanted);
+                });
+    }
 
-        cache.put(cacheKey, new CachedEntry(Instant.now(), response));
-        return response;
+    /**
+     * How long the cached timeline of a stop stays fresh: until Caffeine would reload it on the
+     * next read or drop it, whichever comes first. Zero when the stop is not cached at all.
+     */
+    Duration untilStale(final String stopId) {
+        final Policy<String, DepartureTimeline> policy = timelines.synchronous().policy();
+        final Duration untilExpiry = policy.expireVariably()
+                .flatMap(expiry -> expiry.getExpiresAfter(stopId))
+                .orElse(Duration.ZERO);
+        final Duration untilRefresh = policy.refreshAfterWrite()
+                .flatMap(refresh -> refresh.ageOf(stopId))
+                .map(realtimeRefresh::minus)
+                .orElse(untilExpiry);
+        return untilRefresh.compareTo(untilExpiry) < 0 ? untilRefresh : untilExpiry;
     }
 
-    public List<DepartureDto> getDeparturesByStopId(final String stopId, final int limit) {
-        return digitransitClient.fetchNextDepartures(stopId, limit);
+    /**
+     * Loads a fresh timeline for the stop ahead of demand and swaps it into the cache, so the next
+     * request neither waits for the upstream nor is served a stale timeline while it reloads.
+     */
+    Mono<Void> prefetch(final String stopId) {
+        return digitransitClient.fetchNextDepartures(stopId, depth)
+                .doOnNext(departures -> timelines.put(stopId,
+                        CompletableFuture.completedFuture(new DepartureTimeline(departures, depth, true))))
+                .then();
     }
 
-    private record CachedEntry(
-            Instant createdAt,
-            NextDeparturesResponse response
-    ) {
-        boolean isExpired() {
-            return Instant.now().isAfter(createdAt.plus(CACHE_TTL));
+    /**
+     * Loads misses through the batching client without blocking; {@code asyncLoadAll} keeps a
+     * multi-stop lookup to one upstream call.
+     */
+    private class TimelineLoader implements AsyncCacheLoader<String, DepartureTimeline> {
+
+        @Override
+        public CompletableFuture<DepartureTimeline> asyncLoad(final String stopId, final Executor executor) {
+            return digitransitClient.fetchNextDepartures(stopId, depth)
+                    .map(departures -> new DepartureTimeline(departures, depth))
+                    .toFuture();
+        }
+
+        @Override
+        public CompletableFuture<Map<String, DepartureTimeline>> asyncLoadAll(
+                final Set<? extends String> stopIds,
+                final Executor executor
+        ) {
+            return digitransitClient.fetchNextDepartures(List.copyOf(stopIds), depth)
+                    .map(loaded -> {
+                        final Map<String, DepartureTimeline> result = new LinkedHashMap<>();
+                        loaded.forEach((stopId, departures) -> result.put(stopId, new DepartureTimeline(departures, depth)));
+                        return result;
+                    })
+                    .toFuture();
+        }
+    }
+
+    private record TimelineExpiry(
+            Duration maxTtl,
+            Duration emptyTtl
+    ) implements Expiry<String, DepartureTimeline> {
+
+        @Override
+        public long expireAfterCreate(final String stopId, final DepartureTimeline timeline, final long currentTime) {
+            final Instant last = timeline.lastDeparture();
+            if (last == null) {
+                return emptyTtl.toNanos();
+            }
+            final Duration untilLast = Duration.between(Instant.now(), last);
+            if (untilLast.isNegative()) {
+                return 0;
+            }
+            return Math.min(untilLast.toNanos(), maxTtl.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(final String stopId, final DepartureTimeline timeline,
+                                      final long currentTime, final long currentDuration) {
+            return expireAfterCreate(stopId, timeline, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(final String stopId, final DepartureTimeline timeline,
+                                    final long currentTime, final long currentDuration) {
+            return currentDuration;
         }
     }
 }
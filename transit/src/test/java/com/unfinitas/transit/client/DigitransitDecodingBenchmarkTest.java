@@ -0,0 +1,115 @@
+package com.unfinitas.transit.client;
+
+import com.unfinitas.transit.model.DepartureDto;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation and throughput of {@link DigitransitResponseDecoder} against the record tree it
+ * replaced, on one-stop responses of 5, 50 and 500 stoptimes. Each run prints its numbers; the
+ * test only asserts that both paths agree and the decoder allocates less.
+ */
+class DigitransitDecodingBenchmarkTest {
+
+    private static final Duration WARMUP = Duration.ofMillis(300);
+    private static final Duration MEASURE = Duration.ofMillis(500);
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final DigitransitResponseDecoder decoder = new DigitransitResponseDecoder();
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Test
+    void decodesWithLessAllocationThanTheRecordTree() {
+        for (final int stoptimes : new int[]{5, 50, 500}) {
+            final byte[] body = response(stoptimes);
+            final Function<byte[], List<DepartureDto>> streaming =
+                    bytes -> decoder.decode(new ByteArrayInputStream(bytes), 1).getFirst();
+            final Function<byte[], List<DepartureDto>> recordTree = this::decodeRecordTree;
+            assertEquals(recordTree.apply(body), streaming.apply(body));
+
+            final Result tree = measure(recordTree, body);
+            final Result decoded = measure(streaming, body);
+            System.out.printf("%3d stoptimes (%6d bytes): record tree %s; decoder %s%n",
+                    stoptimes, body.length, tree, decoded);
+
+            assertTrue(decoded.bytesPerOp() < tree.bytesPerOp(), stoptimes + " stoptimes");
+        }
+    }
+
+    private static Result measure(final Function<byte[], List<DepartureDto>> decode, final byte[] body) {
+        run(decode, body, WARMUP);
+        final long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        final long start = System.nanoTime();
+        final long ops = run(decode, body, MEASURE);
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Result(allocated / ops, ops * 1_000_000_000.0 / elapsed);
+    }
+
+    private static long run(final Function<byte[], List<DepartureDto>> decode, final byte[] body, final Duration duration) {
+        final long end = System.nanoTime() + duration.toNanos();
+        long ops = 0;
+        int sink = 0;
+        while (System.nanoTime() < end) {
+            sink += decode.apply(body).size();
+            ops++;
+        }
+        assertTrue(sink > 0);
+        return ops;
+    }
+
+    /**
+     * The previous path: bind the whole response to records, then map the stoptimes.
+     */
+    private List<DepartureDto> decodeRecordTree(final byte[] body) {
+        final TreeResponse response = jsonMapper.readValue(body, TreeResponse.class);
+        return response.data().get("s0").stoptimesWithoutPatterns().stream()
+                .map(st -> new DepartureDto(
+                        st.trip() != null ? st.trip().routeShortName() : "?",
+                        Instant.ofEpochSecond(st.serviceDay() + st.realtimeDeparture()),
+                        Instant.ofEpochSecond(st.serviceDay() + st.scheduledDeparture())))
+                .toList();
+    }
+
+    private static byte[] response(final int stoptimes) {
+        final List<String> rows = new ArrayList<>();
+        for (int i = 0; i < stoptimes; i++) {
+            rows.add("""
+                    {"serviceDay": 1715720400, "realtimeDeparture": %d, "scheduledDeparture": %d,
+                     "trip": {"routeShortName": "%d"}}""".formatted(28_800 + i * 60 + 30, 28_800 + i * 60, i % 40));
+        }
+        return """
+                {"data": {"s0": {"name": "Keskustori H", "stoptimesWithoutPatterns": [%s]}}}
+                """.formatted(String.join(",", rows)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Result(long bytesPerOp, double opsPerSecond) {
+        @Override
+        public String toString() {
+            return "%d B/op, %.0f ops/s".formatted(bytesPerOp, opsPerSecond);
+        }
+    }
+
+    private record TreeResponse(Map<String, TreeStop> data) { }
+
+    private record TreeStop(String name, List<TreeStoptime> stoptimesWithoutPatterns) { }
+
+    private record TreeStoptime(long serviceDay, int realtimeDeparture, int scheduledDeparture, TreeTrip trip) { }
+
+    private record TreeTrip(String routeShortName) { }
+}
@@ -0,0 +1,83 @@
+package com.unfinitas.transit.client;
+
+import com.unfinitas.transit.model.DepartureDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DigitransitResponseDecoderTest {
+
+    private final DigitransitResponseDecoder decoder = new DigitransitResponseDecoder();
+
+    @Test
+    void decodesEachStopInAliasOrder() throws IOException {
+        final List<List<DepartureDto>> departures = decode("departures-two-stops.json", 2);
+
+        assertEquals(List.of(
+                departure("3", "2024-05-15T05:04:00Z", "2024-05-15T05:03:00Z"),
+                departure("1", "2024-05-15T05:10:00Z", "2024-05-15T05:10:00Z")
+        ), departures.get(0));
+        // Past midnight the departure seconds run beyond one day from the service day
+        assertEquals(List.of(
+                departure("13", "2024-05-15T21:02:00Z", "2024-05-15T21:01:00Z")
+        ), departures.get(1));
+    }
+
+    @Test
+    void leavesAStopTheResponseHasNoDataForAsNull() throws IOException {
+        final List<List<DepartureDto>> departures = decode("departures-unknown-stop.json", 2);
+
+        assertEquals(List.of(), departures.get(0));
+        assertNull(departures.get(1));
+    }
+
+    @Test
+    void readsFieldsInAnyOrderAndSkipsTheOnesNotAskedFor() throws IOException {
+        final List<List<DepartureDto>> departures = decode("departures-missing-trip.json", 1);
+
+        assertEquals(List.of(
+                departure("?", "2024-05-15T05:04:00Z", "2024-05-15T05:03:00Z"),
+                departure(null, "2024-05-15T05:11:00Z", "2024-05-15T05:10:00Z")
+        ), departures.getFirst());
+    }
+
+    @Test
+    void ignoresAliasesThatWereNotRequested() {
+        final List<List<DepartureDto>> departures = decode("""
+                {"data": {"s0": {"stoptimesWithoutPatterns": []}, "s2": {"stoptimesWithoutPatterns": []},
+                          "s01x": {}, "stop": {}}}
+                """);
+
+        assertEquals(Arrays.asList(List.of(), null), departures);
+    }
+
+    @Test
+    void answersNothingForAResponseWithoutData() {
+        assertEquals(Arrays.asList(null, null), decode("""
+                {"errors": [{"message": "Unauthorized"}]}
+                """));
+    }
+
+    private List<List<DepartureDto>> decode(final String response, final int stops) throws IOException {
+        try (InputStream body = getClass().getResourceAsStream("/digitransit/" + response)) {
+            return decoder.decode(body, stops);
+        }
+    }
+
+    private List<List<DepartureDto>> decode(final String body) {
+        return decoder.decode(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 2);
+    }
+
+    private static DepartureDto departure(final String route, final String time, final String scheduled) {
+        return new DepartureDto(route, Instant.parse(time), Instant.parse(scheduled));
+    }
+}
@@ -0,0 +1,90 @@
+package com.unfinitas.transit.controller;
+
+import com.unfinitas.transit.model.DepartureDto;
+import com.unfinitas.transit.model.NextDeparturesResponse;
+import com.unfinitas.transit.service.DepartureBoardService;
+import com.unfinitas.transit.service.HotStopPrefetcher;
+import com.unfinitas.transit.service.TransitService;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransitControllerTest {
+
+    private static final List<DepartureDto> DEPARTURES = List.of(
+            new DepartureDto("3", Instant.parse("2024-05-15T08:04:00Z"), Instant.parse("2024-05-15T08:03:00Z"))
+    );
+
+    private final TransitService transitService = mock(TransitService.class);
+    private final WebTestClient client = WebTestClient
+            .bindToController(new TransitController(
+                    transitService, mock(DepartureBoardService.class), mock(HotStopPrefetcher.class)))
+            .build();
+
+    @Test
+    void answersOnceTheUpstreamDoes() {
+        // Nothing waits on the upstream: the departures are written when its Mono completes
+        when(transitService.getDeparturesByStopId("0001", 3))
+                .thenReturn(Mono.delay(Duration.ofMillis(100)).thenReturn(DEPARTURES));
+
+        final List<DepartureDto> departures = client.get().uri("/api/transit/departures?stopId=0001&limit=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<DepartureDto>>() { })
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(DEPARTURES, departures);
+    }
+
+    @Test
+    void answersTheNextDeparturesOfANamedStop() {
+        when(transitService.getNextDepartures("Keskustori", 5))
+                .thenReturn(Mono.just(new NextDeparturesResponse("Keskustori H", "0001", DEPARTURES)));
+
+        client.get().uri("/api/transit/next?stopName=Keskustori")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(NextDeparturesResponse.class)
+                .isEqualTo(new NextDeparturesResponse("Keskustori H", "0001", DEPARTURES));
+    }
+
+    @Test
+    void answersSeveralStopsInOneResponse() {
+        when(transitService.getDeparturesByStopIds(List.of("0001", "0002"), 1))
+                .thenReturn(Mono.just(Map.of("0001", DEPARTURES, "0002", List.of())));
+
+        final Map<String, List<DepartureDto>> boards = client.get()
+                .uri("/api/transit/departures/batch?stopIds=0001,0002&limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<Map<String, List<DepartureDto>>>() { })
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(Map.of("0001", DEPARTURES, "0002", List.of()), boards);
+    }
+
+    @Test
+    void rejectsANegativeLimitWithoutCallingTheService() {
+        client.get().uri("/api/transit/departures?stopId=0001&limit=-1").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/transit/next?stopName=Keskustori&limit=-1").exchange().expectStatus().isBadRequest();
+
+        verify(transitService, never()).getDeparturesByStopId(anyString(), anyInt());
+        verify(transitService, never()).getNextDepartures(anyString(), anyInt());
+    }
+}
@@ -0,0 +1,130 @@
+package com.unfinitas.transit.gtfs;
+
+import com.unfinitas.transit.model.DepartureDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtfsTimetableTest {
+
+    @TempDir
+    Path feed;
+
+    private GtfsTimetable timetable;
+
+    @BeforeEach
+    void load() throws IOException {
+        write("agency.txt", """
+                agency_id,agency_name,agency_url,agency_timezone
+                1,Test,https://example.com,UTC
+                """);
+        write("stops.txt", """
+                stop_id,stop_name
+                A,Alpha
+                B,Beta
+                C,Gamma
+                """);
+        write("routes.txt", """
+                route_id,route_short_name,route_long_name
+                R1,1,Day line
+                R2,,Night
+                """);
+        // Runs every day of 2024 except Thursday 16 May
+        write("calendar.txt", """
+                service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date
+                WEEK,1,1,1,1,1,1,1,20240101,20241231
+                """);
+        write("calendar_dates.txt", """
+                service_id,date,exception_type
+                WEEK,20240516,2
+                """);
+        write("trips.txt", """
+                route_id,service_id,trip_id
+                R1,WEEK,T1
+                R1,WEEK,T2
+                R2,WEEK,T3
+                """);
+        // Out of order on purpose; the loader groups rows by stop and sorts them by time
+        write("stop_times.txt", """
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T2,08:30:00,08:30:00,A,1
+                T3,25:10:00,25:10:00,A,1
+                T1,08:10:00,08:10:00,B,2
+                T1,08:00:00,08:00:00,A,1
+                """);
+        timetable = GtfsTimetableLoader.load(feed);
+    }
+
+    @Test
+    void groupsStopTimesByStop() {
+        assertEquals(3, timetable.stopCount());
+        assertEquals(3, timetable.tripCount());
+        assertEquals(4, timetable.stopTimeCount());
+        assertTrue(timetable.hasStop("C"));
+        assertFalse(timetable.hasStop("D"));
+        assertTrue(timetable.footprintBytes() > 0);
+    }
+
+    @Test
+    void returnsTheNextDeparturesInTimeOrder() {
+        final List<DepartureDto> departures = timetable.nextDepartures("A", Instant.parse("2024-05-15T07:00:00Z"), 2);
+
+        assertEquals(List.of(
+                departure("1", "2024-05-15T08:00:00Z"),
+                departure("1", "2024-05-15T08:30:00Z")
+        ), departures);
+    }
+
+    @Test
+    void takesTimesPastMidnightFromTheServiceDay() {
+        final List<DepartureDto> departures = timetable.nextDepartures("A", Instant.parse("2024-05-15T07:00:00Z"), 10);
+
+        // 25:10 on Wednesday's service is 01:10 on Thursday; Thursday's own service is removed
+        assertEquals(List.of(
+                departure("1", "2024-05-15T08:00:00Z"),
+                departure("1", "2024-05-15T08:30:00Z"),
+                departure("Night", "2024-05-16T01:10:00Z")
+        ), departures);
+    }
+
+    @Test
+    void includesYesterdaysServiceStillRunning() {
+        final List<DepartureDto> departures = timetable.nextDepartures("A", Instant.parse("2024-05-15T00:30:00Z"), 1);
+
+        assertEquals(List.of(departure("Night", "2024-05-15T01:10:00Z")), departures);
+    }
+
+    @Test
+    void skipsRemovedServiceDates() {
+        final List<DepartureDto> departures = timetable.nextDepartures("A", Instant.parse("2024-05-16T07:00:00Z"), 1);
+
+        assertEquals(List.of(departure("1", "2024-05-17T08:00:00Z")), departures);
+    }
+
+    @Test
+    void answersNothingForUnknownOrUnservedStopsOrNoLimit() {
+        final Instant after = Instant.parse("2024-05-15T07:00:00Z");
+
+        assertEquals(List.of(), timetable.nextDepartures("D", after, 3));
+        assertEquals(List.of(), timetable.nextDepartures("C", after, 3));
+        assertEquals(List.of(), timetable.nextDepartures("A", after, 0));
+    }
+
+    private void write(final String name, final String content) throws IOException {
+        Files.writeString(feed.resolve(name), content);
+    }
+
+    private static DepartureDto departure(final String route, final String time) {
+        return new DepartureDto(route, Instant.parse(time), Instant.parse(time));
+    }
+}
@@ -0,0 +1,56 @@
+package com.unfinitas.transit.gtfs;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProtoReaderTest {
+
+    private final ProtoReader reader = new ProtoReader();
+
+    @Test
+    void readsMultiByteVarints() {
+        reader.reset(new byte[]{(byte) 0xAC, 0x02, 0x01});
+
+        assertEquals(300, reader.readVarint());
+        assertEquals(1, reader.readVarint());
+        assertEquals(3, reader.position());
+    }
+
+    @Test
+    void readsNegativeInt32AsTenByteVarint() {
+        reader.reset(new ProtoWriter().varint(1, -60).toByteArray());
+
+        final int tag = reader.readTag();
+        assertEquals(1, tag >>> 3);
+        assertEquals(ProtoReader.VARINT, tag & 7);
+        assertEquals(-60, (int) reader.readVarint());
+    }
+
+    @Test
+    void skipsEveryWireTypeToTheNextField() {
+        final byte[] message = new ProtoWriter()
+                .varint(1, 1L << 40)
+                .fixed64(2, -1L)
+                .string(3, "skipped")
+                .fixed32(4, 7)
+                .varint(5, 42)
+                .toByteArray();
+        reader.reset(message);
+
+        for (int field = 1; field <= 4; field++) {
+            final int tag = reader.readTag();
+            assertEquals(field, tag >>> 3);
+            reader.skip(tag & 7);
+        }
+        assertEquals(5, reader.readTag() >>> 3);
+        assertEquals(42, reader.readVarint());
+        assertEquals(message.length, reader.position());
+    }
+
+    @Test
+    void rejectsGroupWireTypes() {
+        assertThrows(IllegalStateException.class, () -> reader.skip(3));
+    }
+}
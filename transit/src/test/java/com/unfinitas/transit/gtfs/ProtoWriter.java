@@ -0,0 +1,65 @@
+package com.unfinitas.transit.gtfs;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds protobuf wire-format bytes field by field, for feeding {@link ProtoReader} in tests.
+ */
+final class ProtoWriter {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    ProtoWriter varint(final int field, final long value) {
+        tag(field, ProtoReader.VARINT);
+        writeVarint(value);
+        return this;
+    }
+
+    ProtoWriter string(final int field, final String value) {
+        return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    ProtoWriter message(final int field, final ProtoWriter message) {
+        return bytes(field, message.toByteArray());
+    }
+
+    ProtoWriter fixed64(final int field, final long value) {
+        tag(field, ProtoReader.FIXED64);
+        for (int i = 0; i < 8; i++) {
+            out.write((int) (value >>> (8 * i)));
+        }
+        return this;
+    }
+
+    ProtoWriter fixed32(final int field, final int value) {
+        tag(field, ProtoReader.FIXED32);
+        for (int i = 0; i < 4; i++) {
+            out.write(value >>> (8 * i));
+        }
+        return this;
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private ProtoWriter bytes(final int field, final byte[] value) {
+        tag(field, ProtoReader.LENGTH_DELIMITED);
+        writeVarint(value.length);
+        out.writeBytes(value);
+        return this;
+    }
+
+    private void tag(final int field, final int wireType) {
+        writeVarint(((long) field << 3) | wireType);
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
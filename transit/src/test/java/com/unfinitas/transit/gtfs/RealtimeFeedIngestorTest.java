@@ -0,0 +1,215 @@
+package com.unfinitas.transit.gtfs;
+
+import com.unfinitas.transit.model.DepartureDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RealtimeFeedIngestorTest {
+
+    private static final String SERVICE_DATE = "20240515";
+    private static final Instant MORNING = Instant.parse("2024-05-15T07:00:00Z");
+
+    // Field numbers from gtfs-realtime.proto
+    private static final int HEADER = 1;
+    private static final int ENTITY = 2;
+    private static final int HEADER_TIMESTAMP = 3;
+    private static final int ENTITY_ID = 1;
+    private static final int ENTITY_TRIP_UPDATE = 3;
+    private static final int TRIP = 1;
+    private static final int STOP_TIME_UPDATE = 2;
+    private static final int TRIP_UPDATE_TIMESTAMP = 4;
+    private static final int TRIP_ID = 1;
+    private static final int START_DATE = 3;
+    private static final int TRIP_RELATIONSHIP = 4;
+    private static final int STOP_SEQUENCE = 1;
+    private static final int DEPARTURE = 3;
+    private static final int STOP_RELATIONSHIP = 5;
+    private static final int EVENT_DELAY = 1;
+    private static final int EVENT_TIME = 2;
+
+    @TempDir
+    Path feed;
+
+    private GtfsTimetable timetable;
+    private RealtimeFeedIngestor ingestor;
+    private long feedTimestamp;
+
+    @BeforeEach
+    void load() throws IOException {
+        write("agency.txt", """
+                agency_id,agency_name,agency_url,agency_timezone
+                1,Test,https://example.com,UTC
+                """);
+        write("stops.txt", """
+                stop_id,stop_name
+                A,Alpha
+                B,Beta
+                C,Gamma
+                """);
+        write("routes.txt", """
+                route_id,route_short_name,route_long_name
+                R1,1,
+                R2,2,
+                """);
+        write("calendar.txt", """
+                service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date
+                WEEK,1,1,1,1,1,1,1,20240101,20241231
+                """);
+        write("trips.txt", """
+                route_id,service_id,trip_id
+                R1,WEEK,T1
+                R2,WEEK,T2
+                """);
+        write("stop_times.txt", """
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T1,08:00:00,08:00:00,A,1
+                T1,08:10:00,08:10:00,B,2
+                T1,08:20:00,08:20:00,C,3
+                T2,08:05:00,08:05:00,A,1
+                """);
+        timetable = GtfsTimetableLoader.load(feed);
+        ingestor = new RealtimeFeedIngestor(timetable);
+    }
+
+    @Test
+    void propagatesAStopDelayDownstream() {
+        apply(tripUpdate("T1", 0, stopUpdate(2).message(DEPARTURE, new ProtoWriter().varint(EVENT_DELAY, 120))));
+
+        assertEquals(1, ingestor.appliedTrips());
+        assertTrue(timetable.hasRealtime(Duration.ofMinutes(1)));
+        assertEquals(departure("1", "08:00", "08:00"), first("A"));
+        assertEquals(departure("1", "08:12", "08:10"), first("B"));
+        assertEquals(departure("1", "08:22", "08:20"), first("C"));
+    }
+
+    @Test
+    void readsDelaysGivenAsAbsoluteTimes() {
+        final long departs = Instant.parse("2024-05-15T08:13:00Z").getEpochSecond();
+        apply(tripUpdate("T1", 0, stopUpdate(2).message(DEPARTURE, new ProtoWriter().varint(EVENT_TIME, departs))));
+
+        assertEquals(departure("1", "08:13", "08:10"), first("B"));
+        assertEquals(departure("1", "08:23", "08:20"), first("C"));
+    }
+
+    @Test
+    void reordersDeparturesByDelay() {
+        apply(tripUpdate("T1", 0, stopUpdate(1).message(DEPARTURE, new ProtoWriter().varint(EVENT_DELAY, 600))));
+
+        assertEquals(List.of(
+                departure("2", "08:05", "08:05"),
+                departure("1", "08:10", "08:00")
+        ), timetable.nextDepartures("A", MORNING, 2));
+    }
+
+    @Test
+    void dropsCanceledTrips() {
+        apply(tripUpdate("T1", 3));
+
+        assertEquals(departure("2", "08:05", "08:05"), first("A"));
+        // Only the service date in the update is canceled
+        assertEquals(Instant.parse("2024-05-16T08:20:00Z"), first("C").departureTime());
+    }
+
+    @Test
+    void dropsSkippedStopsOnly() {
+        apply(tripUpdate("T1", 0, stopUpdate(2).varint(STOP_RELATIONSHIP, 1)));
+
+        assertEquals(Instant.parse("2024-05-16T08:10:00Z"), first("B").departureTime());
+        assertEquals(departure("1", "08:20", "08:20"), first("C"));
+    }
+
+    @Test
+    void skipsTripsWhoseTimestampIsUnchanged() {
+        final ProtoWriter update = tripUpdate("T1", 0, stopUpdate(2).message(DEPARTURE, new ProtoWriter().varint(EVENT_DELAY, 60)))
+                .varint(TRIP_UPDATE_TIMESTAMP, 1_000);
+        apply(update);
+        apply(update);
+
+        assertEquals(0, ingestor.appliedTrips());
+        assertEquals(1, ingestor.unchangedTrips());
+        assertEquals(departure("1", "08:11", "08:10"), first("B"));
+    }
+
+    @Test
+    void skipsAFeedWithAnUnchangedHeaderTimestamp() {
+        final byte[] message = feedMessage(42, tripUpdate("T1", 3));
+
+        assertTrue(ingestor.apply(message, message.length));
+        assertFalse(ingestor.apply(message, message.length));
+    }
+
+    @Test
+    void clearsTripsThatLeaveTheFeed() {
+        apply(tripUpdate("T1", 0, stopUpdate(2).message(DEPARTURE, new ProtoWriter().varint(EVENT_DELAY, 120))));
+        apply();
+
+        assertEquals(1, ingestor.clearedTrips());
+        assertEquals(departure("1", "08:20", "08:20"), first("C"));
+    }
+
+    @Test
+    void countsTripsMissingFromTheStaticFeed() {
+        apply(tripUpdate("EXTRA", 1));
+
+        assertEquals(1, ingestor.entityCount());
+        assertEquals(1, ingestor.unknownTrips());
+        assertEquals(0, ingestor.appliedTrips());
+    }
+
+    private void apply(final ProtoWriter... tripUpdates) {
+        final byte[] message = feedMessage(++feedTimestamp, tripUpdates);
+        assertTrue(ingestor.apply(message, message.length));
+    }
+
+    private static byte[] feedMessage(final long timestamp, final ProtoWriter... tripUpdates) {
+        final ProtoWriter message = new ProtoWriter()
+                .message(HEADER, new ProtoWriter().string(1, "2.0").varint(HEADER_TIMESTAMP, timestamp));
+        for (int i = 0; i < tripUpdates.length; i++) {
+            message.message(ENTITY, new ProtoWriter()
+                    .string(ENTITY_ID, "e" + i)
+                    .message(ENTITY_TRIP_UPDATE, tripUpdates[i]));
+        }
+        return message.toByteArray();
+    }
+
+    private static ProtoWriter tripUpdate(final String tripId, final int relationship, final ProtoWriter... stopUpdates) {
+        final ProtoWriter update = new ProtoWriter().message(TRIP, new ProtoWriter()
+                .string(TRIP_ID, tripId)
+                .string(START_DATE, SERVICE_DATE)
+                .varint(TRIP_RELATIONSHIP, relationship));
+        for (final ProtoWriter stopUpdate : stopUpdates) {
+            update.message(STOP_TIME_UPDATE, stopUpdate);
+        }
+        return update;
+    }
+
+    private static ProtoWriter stopUpdate(final int sequence) {
+        return new ProtoWriter().varint(STOP_SEQUENCE, sequence);
+    }
+
+    private DepartureDto first(final String stopId) {
+        return timetable.nextDepartures(stopId, MORNING, 1).getFirst();
+    }
+
+    private static DepartureDto departure(final String route, final String departs, final String scheduled) {
+        return new DepartureDto(route,
+                Instant.parse("2024-05-15T" + departs + ":00Z"),
+                Instant.parse("2024-05-15T" + scheduled + ":00Z"));
+    }
+
+    private void write(final String name, final String content) throws IOException {
+        Files.writeString(feed.resolve(name), content);
+    }
+}
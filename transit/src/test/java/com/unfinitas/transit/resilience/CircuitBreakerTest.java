@@ -0,0 +1,104 @@
+package com.unfinitas.transit.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    @Test
+    void staysClosedUntilTheWindowIsFull() {
+        final CircuitBreaker breaker = new CircuitBreaker("test", 4, 0.5, Duration.ofMinutes(1));
+
+        call(breaker, true);
+        call(breaker, true);
+        call(breaker, true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void opensOnceTheFailureRateIsReached() {
+        final CircuitBreaker breaker = new CircuitBreaker("test", 4, 0.5, Duration.ofMinutes(1));
+
+        call(breaker, false);
+        call(breaker, true);
+        call(breaker, false);
+        call(breaker, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void forgetsFailuresThatLeaveTheWindow() {
+        final CircuitBreaker breaker = new CircuitBreaker("test", 4, 0.5, Duration.ofMinutes(1));
+
+        call(breaker, true);
+        call(breaker, false);
+        call(breaker, false);
+        call(breaker, false);
+        call(breaker, false);
+        call(breaker, true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void letsOneProbeThroughAfterTheOpenPeriodAndClosesWhenItSucceeds() {
+        final CircuitBreaker breaker = open(Duration.ZERO);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void reopensForAnotherPeriodWhenTheProbeFails() throws InterruptedException {
+        final CircuitBreaker breaker = open(Duration.ofMillis(50));
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void anAbandonedProbeMakesRoomForAnother() {
+        final CircuitBreaker breaker = open(Duration.ZERO);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onAbandoned();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private static CircuitBreaker open(final Duration openFor) {
+        final CircuitBreaker breaker = new CircuitBreaker("test", 2, 0.5, openFor);
+        call(breaker, true);
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+
+    private static void call(final CircuitBreaker breaker, final boolean fails) {
+        assertTrue(breaker.tryAcquire());
+        if (fails) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.unfinitas.transit.resilience;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UpstreamGuardTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(2);
+
+    @Test
+    void rejectsCallsWithoutSendingThemWhileTheCircuitIsOpen() {
+        final UpstreamGuard guard = guard(Duration.ofSeconds(1), false, 10, 2);
+        final AtomicInteger sent = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                sent.incrementAndGet();
+                return Mono.error(new IllegalStateException("upstream down"));
+            }).block(WAIT));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, guard.circuitState());
+        assertThrows(UpstreamRejectedException.class, () -> guard.call(() -> {
+            sent.incrementAndGet();
+            return Mono.just("sent");
+        }).block(WAIT));
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    void rejectsCallsBeyondTheBulkheadAndReturnsPermitsWhenCallsEnd() throws InterruptedException {
+        final UpstreamGuard guard = guard(Duration.ofSeconds(10), false, 10, 1);
+
+        final Disposable inFlight = guard.call(Mono::never).subscribe();
+        assertEquals(0, guard.availablePermits());
+        assertThrows(UpstreamRejectedException.class, () -> guard.call(() -> Mono.just("second")).block(WAIT));
+
+        inFlight.dispose();
+        assertPermitsReturn(guard, 1);
+        assertEquals("third", guard.call(() -> Mono.just("third")).block(WAIT));
+    }
+
+    @Test
+    void timesOutAtTheDeadline() throws InterruptedException {
+        final UpstreamGuard guard = guard(Duration.ofMillis(50), false, 10, 1);
+
+        final String result = guard.call(Mono::<String>never)
+                .onErrorResume(TimeoutException.class, e -> Mono.just("timed out"))
+                .block(WAIT);
+
+        assertEquals("timed out", result);
+        assertPermitsReturn(guard, 1);
+    }
+
+    @Test
+    void hedgesASlowCallOnceEnoughLatenciesAreKnown() throws InterruptedException {
+        final UpstreamGuard guard = guard(Duration.ofSeconds(1), true, 10, 2);
+        for (int i = 0; i < 3; i++) {
+            guard.call(() -> Mono.just("warm-up")).block(WAIT);
+        }
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final String result = guard.call(() -> attempts.incrementAndGet() == 1
+                ? Mono.<String>never()
+                : Mono.just("hedge")).block(WAIT);
+
+        assertEquals("hedge", result);
+        assertEquals(2, attempts.get());
+        // The losing primary is cancelled and gives its permit back
+        assertPermitsReturn(guard, 2);
+    }
+
+    @Test
+    void doesNotHedgeWithoutEnoughSamples() {
+        final UpstreamGuard guard = guard(Duration.ofSeconds(1), true, 10, 2);
+        guard.call(() -> Mono.just("warm-up")).block(WAIT);
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final String result = guard.call(() -> {
+            attempts.incrementAndGet();
+            return Mono.just("slow").delayElement(Duration.ofMillis(100));
+        }).block(WAIT);
+
+        assertEquals("slow", result);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void skipsTheHedgeWhenNoPermitIsFree() {
+        final UpstreamGuard guard = guard(Duration.ofMillis(200), true, 10, 1);
+        for (int i = 0; i < 3; i++) {
+            guard.call(() -> Mono.just("warm-up")).block(WAIT);
+        }
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final String result = guard.call(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.just("primary").delayElement(Duration.ofMillis(50));
+                })
+                .block(WAIT);
+
+        assertEquals("primary", result);
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * Permits come back in {@code doFinally}, which may run just after the caller got its result.
+     */
+    private static void assertPermitsReturn(final UpstreamGuard guard, final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + WAIT.toNanos();
+        while (guard.availablePermits() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, guard.availablePermits());
+    }
+
+    /**
+     * A guard that hedges after {@code hedgeMinDelay} once 3 calls were seen, over a breaker
+     * that opens when both of the last 2 calls failed.
+     */
+    private static UpstreamGuard guard(
+            final Duration timeout,
+            final boolean hedging,
+            final long hedgeMinDelayMillis,
+            final int maxConcurrent
+    ) {
+        return new UpstreamGuard(
+                "test",
+                timeout,
+                hedging,
+                0.5,
+                Duration.ofMillis(hedgeMinDelayMillis),
+                3,
+                new CircuitBreaker("test", 2, 1.0, Duration.ofMinutes(1)),
+                maxConcurrent
+        );
+    }
+}
@@ -0,0 +1,106 @@
+package com.unfinitas.transit.service;
+
+import com.unfinitas.transit.model.DepartureChange;
+import com.unfinitas.transit.model.DepartureDto;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DepartureBoardServiceTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(2);
+    private static final Instant EIGHT = Instant.parse("2024-05-15T08:00:00Z");
+
+    private final TransitService transitService = mock(TransitService.class);
+    private final DepartureBoardService boards = new DepartureBoardService(transitService, Duration.ofMillis(10), 10);
+
+    @Test
+    void sendsOnlyWhatChangedBetweenPolls() {
+        final DepartureDto three = departure("3", 0, 0);
+        final DepartureDto eight = departure("8", 5, 5);
+        final DepartureDto threeLate = departure("3", 0, 2);
+        final DepartureDto one = departure("1", 10, 10);
+        when(transitService.pollDepartures("0001", 10)).thenReturn(
+                Mono.just(List.of(three, eight)),
+                Mono.just(List.of(threeLate, eight)),
+                Mono.just(List.of(threeLate, one))
+        );
+
+        final List<DepartureChange> changes = boards.watch("0001").take(5).collectList().block(WAIT);
+
+        assertEquals(List.of(
+                new DepartureChange(DepartureChange.Type.ADDED, three),
+                new DepartureChange(DepartureChange.Type.ADDED, eight),
+                new DepartureChange(DepartureChange.Type.DELAY_CHANGED, threeLate),
+                new DepartureChange(DepartureChange.Type.ADDED, one),
+                new DepartureChange(DepartureChange.Type.REMOVED, eight)
+        ), changes);
+    }
+
+    @Test
+    void startsALateSubscriberFromTheLatestBoard() {
+        final DepartureDto three = departure("3", 0, 0);
+        when(transitService.pollDepartures("0001", 10)).thenReturn(Mono.just(List.of(three)));
+        final DepartureBoardService slow = new DepartureBoardService(transitService, Duration.ofMinutes(1), 10);
+
+        final Sinks.One<DepartureChange> firstEvent = Sinks.one();
+        final Disposable first = slow.watch("0001").subscribe(firstEvent::tryEmitValue);
+        try {
+            firstEvent.asMono().block(WAIT);
+
+            // The next poll is a minute away, so only the replayed board can answer in time
+            assertEquals(new DepartureChange(DepartureChange.Type.ADDED, three), slow.watch("0001").blockFirst(WAIT));
+        } finally {
+            first.dispose();
+        }
+    }
+
+    @Test
+    void keepsPollingAfterAFailedPoll() {
+        final DepartureDto three = departure("3", 0, 0);
+        when(transitService.pollDepartures("0001", 10)).thenReturn(
+                Mono.error(new IllegalStateException("upstream down")),
+                Mono.just(List.of(three))
+        );
+
+        assertEquals(new DepartureChange(DepartureChange.Type.ADDED, three), boards.watch("0001").blockFirst(WAIT));
+    }
+
+    @Test
+    void sharesOnePollerAndBypassesTheDepartureCache() {
+        when(transitService.pollDepartures("0001", 10)).thenReturn(Mono.just(List.of(departure("3", 0, 0))));
+        final DepartureBoardService slow = new DepartureBoardService(transitService, Duration.ofMinutes(1), 10);
+
+        final Disposable first = slow.watch("0001").subscribe();
+        try {
+            slow.watch("0001").blockFirst(WAIT);
+        } finally {
+            first.dispose();
+        }
+
+        verify(transitService, times(1)).pollDepartures("0001", 10);
+        verify(transitService, never()).getDeparturesByStopId(anyString(), anyInt());
+    }
+
+    private static DepartureDto departure(final String route, final int scheduledMinute, final int departureMinute) {
+        return new DepartureDto(
+                route,
+                EIGHT.plus(Duration.ofMinutes(departureMinute)),
+                EIGHT.plus(Duration.ofMinutes(scheduledMinute))
+        );
+    }
+}
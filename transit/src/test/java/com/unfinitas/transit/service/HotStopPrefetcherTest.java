@@ -0,0 +1,130 @@
+package com.unfinitas.transit.service;
+
+import com.unfinitas.transit.client.DigitransitClient;
+import com.unfinitas.transit.client.LocationClient;
+import com.unfinitas.transit.model.PrefetchStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.unfinitas.transit.service.TransitServiceTest.departures;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotStopPrefetcherTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(2);
+    private static final int DEPTH = 5;
+
+    private final DigitransitClient digitransitClient = mock(DigitransitClient.class);
+    private final StopPopularityTracker popularity = new StopPopularityTracker(Duration.ofMinutes(10));
+    private final TransitService transitService = new TransitService(
+            mock(LocationClient.class),
+            digitransitClient,
+            popularity,
+            100,
+            DEPTH,
+            Duration.ofSeconds(30),
+            Duration.ofMinutes(30),
+            Duration.ofMinutes(1),
+            100,
+            Duration.ofHours(1)
+    );
+
+    @BeforeEach
+    void stubs() {
+        when(digitransitClient.fetchNextDepartures(anyString(), anyInt())).thenReturn(Mono.just(departures(1, 2)));
+    }
+
+    @Test
+    void ranksStopsByRecentRequests() {
+        request("0001", 3);
+        request("0002", 1);
+        request("0003", 2);
+
+        assertEquals(List.of("0001", "0003"), stopIds(popularity.hottest(2)));
+        assertEquals(6, popularity.requests());
+    }
+
+    @Test
+    void forgetsStopsNobodyAsksForAnyMore() throws InterruptedException {
+        final StopPopularityTracker shortMemory = new StopPopularityTracker(Duration.ofMillis(1));
+        shortMemory.recordRequest("0001", false);
+        Thread.sleep(50);
+
+        assertEquals(List.of(), shortMemory.hottest(10));
+    }
+
+    @Test
+    void reloadsHotStopsCloseToGoingStale() {
+        request("0001", 2);
+
+        // Every cached timeline is within a minute of its 30-second refresh
+        prefetcher(true, Duration.ofMinutes(1), 10).prefetchHotStops();
+
+        verify(digitransitClient, times(2)).fetchNextDepartures("0001", DEPTH);
+        request("0001", 1);
+        final PrefetchStats stats = prefetcher(true, Duration.ofMinutes(1), 10).stats();
+        assertEquals(1, stats.prefetchHits());
+        assertEquals(3, stats.requests());
+    }
+
+    @Test
+    void leavesStopsThatStayFreshPastTheLead() {
+        request("0001", 2);
+
+        prefetcher(true, Duration.ofSeconds(1), 10).prefetchHotStops();
+
+        verify(digitransitClient, times(1)).fetchNextDepartures("0001", DEPTH);
+    }
+
+    @Test
+    void spendsAtMostTheBudgetOnTheHottestStops() {
+        popularity.recordRequest("0001", false);
+        popularity.recordRequest("0002", false);
+        popularity.recordRequest("0002", false);
+        popularity.recordRequest("0003", false);
+        popularity.recordRequest("0003", false);
+        popularity.recordRequest("0003", false);
+
+        final HotStopPrefetcher prefetcher = prefetcher(true, Duration.ofMinutes(1), 2);
+        prefetcher.prefetchHotStops();
+
+        verify(digitransitClient).fetchNextDepartures("0003", DEPTH);
+        verify(digitransitClient).fetchNextDepartures("0002", DEPTH);
+        verify(digitransitClient, never()).fetchNextDepartures("0001", DEPTH);
+        assertEquals(2, prefetcher.stats().prefetches());
+    }
+
+    @Test
+    void prefetchesNothingWhenDisabled() {
+        popularity.recordRequest("0001", false);
+
+        prefetcher(false, Duration.ofMinutes(1), 10).prefetchHotStops();
+
+        verify(digitransitClient, never()).fetchNextDepartures(anyString(), anyInt());
+    }
+
+    private HotStopPrefetcher prefetcher(final boolean enabled, final Duration lead, final int budgetPerMinute) {
+        return new HotStopPrefetcher(transitService, popularity, enabled, 3, lead, budgetPerMinute);
+    }
+
+    private void request(final String stopId, final int times) {
+        for (int i = 0; i < times; i++) {
+            transitService.getDeparturesByStopId(stopId, 1).block(WAIT);
+        }
+    }
+
+    private static List<String> stopIds(final List<PrefetchStats.HotStop> hotStops) {
+        return hotStops.stream().map(PrefetchStats.HotStop::stopId).toList();
+    }
+}
@@ -0,0 +1,157 @@
+package com.unfinitas.transit.service;
+
+import com.unfinitas.transit.client.DigitransitClient;
+import com.unfinitas.transit.client.LocationClient;
+import com.unfinitas.transit.model.DepartureDto;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransitServiceTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(2);
+    private static final int DEPTH = 5;
+
+    private final LocationClient locationClient = mock(LocationClient.class);
+    private final DigitransitClient digitransitClient = mock(DigitransitClient.class);
+    private final StopPopularityTracker popularity = mock(StopPopularityTracker.class);
+
+    @Test
+    void loadsAStopOnceForConcurrentRequests() {
+        final CompletableFuture<List<DepartureDto>> upstream = new CompletableFuture<>();
+        when(digitransitClient.fetchNextDepartures("0001", DEPTH)).thenReturn(Mono.fromFuture(upstream));
+        final TransitService service = service(Duration.ofSeconds(30));
+
+        final CompletableFuture<List<DepartureDto>> first = service.getDeparturesByStopId("0001", 2).toFuture();
+        final CompletableFuture<List<DepartureDto>> second = service.getDeparturesByStopId("0001", 3).toFuture();
+        upstream.complete(departures(1, 2, 3));
+
+        assertEquals(routes("1", "2"), routes(first.join()));
+        assertEquals(routes("1", "2", "3"), routes(second.join()));
+        verify(digitransitClient, times(1)).fetchNextDepartures("0001", DEPTH);
+    }
+
+    @Test
+    void servesTheStaleTimelineWhileItReloads() throws InterruptedException {
+        final CompletableFuture<List<DepartureDto>> reload = new CompletableFuture<>();
+        when(digitransitClient.fetchNextDepartures("0001", DEPTH))
+                .thenReturn(Mono.just(departures(1)), Mono.fromFuture(reload));
+        final TransitService service = service(Duration.ofMillis(50));
+
+        assertEquals(routes("1"), routes(service.getDeparturesByStopId("0001", 1).block(WAIT)));
+        Thread.sleep(100);
+
+        // Past the refresh interval the cached timeline is answered at once and reloaded behind it
+        assertEquals(routes("1"), routes(service.getDeparturesByStopId("0001", 1).block(WAIT)));
+        verify(digitransitClient, timeout(WAIT.toMillis()).times(2)).fetchNextDepartures("0001", DEPTH);
+        reload.complete(departures(2));
+        assertEquals(routes("2"), routes(service.getDeparturesByStopId("0001", 1).block(WAIT)));
+    }
+
+    @Test
+    void answersAnyLimitFromOneFetch() {
+        when(digitransitClient.fetchNextDepartures("0001", DEPTH)).thenReturn(Mono.just(departures(3, 1, 2)));
+        final TransitService service = service(Duration.ofSeconds(30));
+
+        assertEquals(routes("1"), routes(service.getDeparturesByStopId("0001", 1).block(WAIT)));
+        assertEquals(routes("1", "2", "3"), routes(service.getDeparturesByStopId("0001", 10).block(WAIT)));
+        verify(digitransitClient, times(1)).fetchNextDepartures(anyString(), eq(DEPTH));
+    }
+
+    @Test
+    void skipsDeparturesThatHaveLeft() {
+        when(digitransitClient.fetchNextDepartures("0001", DEPTH)).thenReturn(Mono.just(departures(-2, -1, 1)));
+        final TransitService service = service(Duration.ofSeconds(30));
+
+        assertEquals(routes("1"), routes(service.getDeparturesByStopId("0001", 3).block(WAIT)));
+    }
+
+    @Test
+    void refetchesATruncatedTimelineThatRanShort() {
+        when(digitransitClient.fetchNextDepartures("0001", DEPTH))
+                .thenReturn(Mono.just(departures(-3, -2, -1, 1, 2)), Mono.just(departures(1, 2, 3, 4, 5)));
+        final TransitService service = service(Duration.ofSeconds(30));
+
+        assertEquals(routes("1", "2", "3", "4"), routes(service.getDeparturesByStopId("0001", 4).block(WAIT)));
+        verify(digitransitClient, times(2)).fetchNextDepartures("0001", DEPTH);
+    }
+
+    @Test
+    void answersSeveralStopsWithOneBulkLoad() {
+        when(digitransitClient.fetchNextDepartures(List.of("0001", "0002"), DEPTH))
+                .thenReturn(Mono.just(Map.of("0001", departures(1, 2))));
+        final TransitService service = service(Duration.ofSeconds(30));
+
+        final Map<String, List<DepartureDto>> boards = service.getDeparturesByStopIds(List.of("0001", "0002"), 1).block(WAIT);
+
+        assertEquals(routes("1"), routes(boards.get("0001")));
+        assertEquals(List.of(), boards.get("0002"));
+        verify(digitransitClient, times(0)).fetchNextDepartures(anyString(), eq(DEPTH));
+    }
+
+    @Test
+    void pollsTheUpstreamWithoutCountingARequest() {
+        when(digitransitClient.fetchNextDepartures("0001", DEPTH))
+                .thenReturn(Mono.just(departures(1, 2)), Mono.just(departures(2, 3)));
+        final TransitService service = service(Duration.ofSeconds(30));
+
+        assertEquals(routes("1"), routes(service.getDeparturesByStopId("0001", 1).block(WAIT)));
+        assertEquals(routes("2", "3"), routes(service.pollDepartures("0001", 10).block(WAIT)));
+
+        // The poll replaced the cached timeline
+        assertEquals(routes("2"), routes(service.getDeparturesByStopId("0001", 1).block(WAIT)));
+        verify(digitransitClient, times(2)).fetchNextDepartures("0001", DEPTH);
+        verify(popularity, times(2)).recordRequest("0001", false);
+    }
+
+    private TransitService service(final Duration realtimeRefresh) {
+        return new TransitService(
+                locationClient,
+                digitransitClient,
+                popularity,
+                100,
+                DEPTH,
+                realtimeRefresh,
+                Duration.ofMinutes(30),
+                Duration.ofMinutes(1),
+                100,
+                Duration.ofHours(1)
+        );
+    }
+
+    /**
+     * One departure per offset, in minutes from now, on a route named after the offset.
+     */
+    static List<DepartureDto> departures(final int... minutesFromNow) {
+        final Instant now = Instant.now();
+        return Arrays.stream(minutesFromNow)
+                .mapToObj(minutes -> {
+                    final Instant time = now.plus(Duration.ofMinutes(minutes));
+                    return new DepartureDto(String.valueOf(minutes), time, time);
+                })
+                .toList();
+    }
+
+    private static List<String> routes(final String... routes) {
+        return List.of(routes);
+    }
+
+    private static List<String> routes(final List<DepartureDto> departures) {
+        return departures.stream().map(DepartureDto::route).toList();
+    }
+}